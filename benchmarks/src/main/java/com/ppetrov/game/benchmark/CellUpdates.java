@@ -0,0 +1,23 @@
+package com.ppetrov.game.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary result of a benchmark, reported by JMH as cell updates per second
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class CellUpdates {
+
+    public long cellUpdates;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        this.cellUpdates = 0;
+    }
+
+}
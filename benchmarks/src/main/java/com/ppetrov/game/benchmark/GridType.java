@@ -0,0 +1,56 @@
+package com.ppetrov.game.benchmark;
+
+import com.ppetrov.game.model.BitGrid;
+import com.ppetrov.game.model.ByteGrid;
+import com.ppetrov.game.model.CellGrid;
+import com.ppetrov.game.model.Grid;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.Rules;
+
+import java.util.Random;
+
+/**
+ * Storages of cells compared by the benchmarks
+ */
+public enum GridType {
+
+    CELL {
+        @Override
+        Grid createGrid(int width, int height) {
+            return new CellGrid(width, height);
+        }
+    },
+    BYTE {
+        @Override
+        Grid createGrid(int width, int height) {
+            return new ByteGrid(width, height);
+        }
+    },
+    BIT {
+        @Override
+        Grid createGrid(int width, int height) {
+            return new BitGrid(width, height);
+        }
+    };
+
+    public static final long SEED = 42;
+
+    abstract Grid createGrid(int width, int height);
+
+    /**
+     * Create a square map filled from a fixed seed, so that every run measures the same field.
+     * Generations rules need a state plane, other grids are refused for them instead of being replaced
+     * by a byte grid, so JMH drops these combinations rather than reporting byte grid numbers under their names.
+     *
+     * @throws IllegalArgumentException if the rules have dying states and the grid has no state plane
+     */
+    public Map createMap(int size, double density, Rules rules) {
+        if (rules.getStates() > 2 && this != BYTE) {
+            throw new IllegalArgumentException("Rules " + rules + " need a byte grid instead of " + this);
+        }
+        Map map = new Map(createGrid(size, size));
+        map.fillRandomly(new Random(SEED), density);
+        return map;
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.ppetrov.game.benchmark;
+
+import com.ppetrov.game.model.Cell;
+import com.ppetrov.game.model.Grid;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.RuleTemplate;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of creating and copying maps, which is mostly allocation
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapBenchmark {
+
+    @Param({"64", "256", "1024", "4096"})
+    public int size;
+
+    @Param({"CELL", "BYTE", "BIT"})
+    public GridType grid;
+
+    private Map map;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.map = this.grid.createMap(this.size, Map.DEFAULT_DENSITY, RuleTemplate.DEFAULT.getRules());
+        this.random = new Random(GridType.SEED);
+    }
+
+    /**
+     * Random map of the default kind, as it is created by the game
+     */
+    @Benchmark
+    public Map create(CellUpdates updates) {
+        updates.cellUpdates += (long) this.size * this.size;
+        return new Map(this.size, this.size);
+    }
+
+    @Benchmark
+    public Cell[][] getField(CellUpdates updates) {
+        updates.cellUpdates += (long) this.size * this.size;
+        return this.map.getField();
+    }
+
+    @Benchmark
+    public Grid copy(CellUpdates updates) {
+        updates.cellUpdates += (long) this.size * this.size;
+        return this.map.getGrid().copy();
+    }
+
+    @Benchmark
+    public Map fillRandomly(CellUpdates updates) {
+        updates.cellUpdates += (long) this.size * this.size;
+        this.map.fillRandomly(this.random, Map.DEFAULT_DENSITY);
+        return this.map;
+    }
+
+}
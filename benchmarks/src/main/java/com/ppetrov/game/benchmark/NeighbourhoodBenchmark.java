@@ -0,0 +1,54 @@
+package com.ppetrov.game.benchmark;
+
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.RuleTemplate;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting neighbours cell by cell through {@link Map#getNeighbourhood(int, int)},
+ * without the word-parallel kernels used for stepping
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NeighbourhoodBenchmark {
+
+    private static final int CENTRE = 1 << 4;
+
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    @Param({"0.1", "0.25", "0.5"})
+    public double density;
+
+    @Param({"CELL", "BYTE", "BIT"})
+    public GridType grid;
+
+    private Map map;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.map = this.grid.createMap(this.size, this.density, RuleTemplate.DEFAULT.getRules());
+    }
+
+    /**
+     * @return sum of neighbour counts of all cells
+     */
+    @Benchmark
+    public long countNeighbours(CellUpdates updates) {
+        long sum = 0;
+        for (int row = 0; row < this.size; row++) {
+            for (int column = 0; column < this.size; column++) {
+                sum += Integer.bitCount(this.map.getNeighbourhood(row, column) & ~CENTRE);
+            }
+        }
+        updates.cellUpdates += (long) this.size * this.size;
+        return sum;
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.ppetrov.game.benchmark;
+
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.MapBuffer;
+import com.ppetrov.game.model.RuleTemplate;
+import com.ppetrov.game.model.Rules;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of one generation for every rule template, size and density of the field.
+ * Two maps are flipped by {@link MapBuffer}, so only the stepping itself is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NextStateBenchmark {
+
+    @Param({"64", "256", "1024", "4096"})
+    public int size;
+
+    @Param({"0.1", "0.25", "0.5"})
+    public double density;
+
+    @Param
+    public RuleTemplate template;
+
+    @Param({"CELL", "BYTE", "BIT"})
+    public GridType grid;
+
+    private Rules rules;
+    private MapBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.rules = this.template.getRules();
+        this.buffer = new MapBuffer(this.grid.createMap(this.size, this.density, this.rules));
+    }
+
+    @Benchmark
+    public Map nextState(CellUpdates updates) {
+        updates.cellUpdates += (long) this.size * this.size;
+        return this.buffer.step(this.rules);
+    }
+
+    /**
+     * Stepping which allocates a new map for every generation, as the game did before double buffering
+     */
+    @Benchmark
+    public Map nextStateAllocating(CellUpdates updates) {
+        updates.cellUpdates += (long) this.size * this.size;
+        return this.rules.nextState(this.buffer.getCurrent());
+    }
+
+}
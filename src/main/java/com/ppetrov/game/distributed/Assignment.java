@@ -0,0 +1,74 @@
+package com.ppetrov.game.distributed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Assignment tells a {@link BandWorker} which rows of the field it owns, how to run them
+ * and where its southern neighbour listens for halo rows.
+ */
+class Assignment {
+
+    final int band;
+    final int width;
+    final int height;
+    final int fromRow;
+    final int toRow;
+    final String rule;
+    final double density;
+    final long seed;
+    final long generations;
+    final int halo;
+    final long reportInterval;
+    final int threads;
+    final String southHost;
+    final int southPort;
+
+    Assignment(int band, int width, int height, int fromRow, int toRow,
+               String rule, double density, long seed, long generations, int halo, long reportInterval,
+               int threads, String southHost, int southPort) {
+        this.band = band;
+        this.width = width;
+        this.height = height;
+        this.fromRow = fromRow;
+        this.toRow = toRow;
+        this.rule = rule;
+        this.density = density;
+        this.seed = seed;
+        this.generations = generations;
+        this.halo = halo;
+        this.reportInterval = reportInterval;
+        this.threads = threads;
+        this.southHost = southHost;
+        this.southPort = southPort;
+    }
+
+    void write(DataOutput output) throws IOException {
+        output.writeInt(this.band);
+        output.writeInt(this.width);
+        output.writeInt(this.height);
+        output.writeInt(this.fromRow);
+        output.writeInt(this.toRow);
+        output.writeUTF(this.rule);
+        output.writeDouble(this.density);
+        output.writeLong(this.seed);
+        output.writeLong(this.generations);
+        output.writeInt(this.halo);
+        output.writeLong(this.reportInterval);
+        output.writeInt(this.threads);
+        output.writeUTF(this.southHost);
+        output.writeInt(this.southPort);
+    }
+
+    static Assignment read(DataInput input) throws IOException {
+        return new Assignment(input.readInt(), input.readInt(), input.readInt(), input.readInt(), input.readInt(),
+                input.readUTF(), input.readDouble(), input.readLong(), input.readLong(), input.readInt(),
+                input.readLong(), input.readInt(), input.readUTF(), input.readInt());
+    }
+
+    int getRows() {
+        return this.toRow - this.fromRow;
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.ppetrov.game.distributed;
+
+import com.ppetrov.game.model.BitGrid;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.MapBuffer;
+import com.ppetrov.game.model.ParallelStepper;
+import com.ppetrov.game.model.Rules;
+import com.ppetrov.game.model.Stepper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Random;
+
+/**
+ * BandWorker runs a band of whole rows of a field assigned by a {@link Coordinator}.
+ * The band is kept with halos of rows of its neighbours above and below it, the field wraps around
+ * horizontally inside of the band and vertically through the neighbours.
+ * <p>
+ * Every generation the valid part of the halos shrinks by a row, so after exchanging halos of n rows
+ * a band runs n generations on its own. Rows of the halos are calculated too, which costs
+ * 2n rows per generation and keeps the stepping the same as for a whole field.
+ * <p>
+ * Cells of the band are filled from the same random sequence as the whole field of a headless run,
+ * so the coordinator reports the same population and hash as {@code HeadlessRunner} with the same options.
+ */
+public class BandWorker {
+
+    private final Assignment assignment;
+
+    BandWorker(Assignment assignment) {
+        this.assignment = assignment;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2 || !"--coordinator".equals(args[0]) || args[1].lastIndexOf(':') < 0) {
+            System.err.println("Usage: BandWorker --coordinator <host>:<port>");
+            System.exit(2);
+            return;
+        }
+        String host = args[1].substring(0, args[1].lastIndexOf(':'));
+        try {
+            int port = Integer.parseInt(args[1].substring(args[1].lastIndexOf(':') + 1));
+            connect(new InetSocketAddress(host, port));
+        } catch (NumberFormatException e) {
+            System.err.println("Unexpected port of the coordinator: " + args[1]);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Register at the coordinator, connect to the neighbours and run the assigned band
+     */
+    static void connect(InetSocketAddress coordinatorAddress) throws IOException {
+        try (SocketChannel coordinator = SocketChannel.open(coordinatorAddress);
+             ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress(0))) {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(coordinator)));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(coordinator)));
+            output.writeInt(Coordinator.PROTOCOL_VERSION);
+            output.writeInt(((InetSocketAddress) server.getLocalAddress()).getPort());
+            output.flush();
+
+            Assignment assignment = Assignment.read(input);
+            SocketChannel south = SocketChannel.open(new InetSocketAddress(assignment.southHost, assignment.southPort));
+            SocketChannel north = server.accept();
+            north.socket().setTcpNoDelay(true);
+            south.socket().setTcpNoDelay(true);
+            try (HaloExchange exchange = new HaloExchange(north, south, assignment.halo, assignment.width)) {
+                new BandWorker(assignment).run(exchange, output);
+            }
+        }
+    }
+
+    /**
+     * Run all generations and write reports of the generation, population and hash of the band
+     */
+    void run(HaloExchange exchange, DataOutputStream reports) throws IOException {
+        Rules rules = Rules.parse(this.assignment.rule);
+        int halo = this.assignment.halo;
+        int rows = this.assignment.getRows();
+        Map map = new Map(new BitGrid(this.assignment.width, rows + 2 * halo));
+        fill(map);
+
+        MapBuffer buffer = new MapBuffer(map);
+        long generations = this.assignment.generations;
+        long interval = this.assignment.reportInterval > 0 ? this.assignment.reportInterval : Long.MAX_VALUE;
+        ParallelStepper parallelStepper = this.assignment.threads > 1
+                ? new ParallelStepper(this.assignment.threads, ParallelStepper.DEFAULT_STRIPE_HEIGHT)
+                : null;
+        try {
+            Stepper stepper = parallelStepper != null ? parallelStepper : Rules::nextState;
+            report(reports, 0, buffer.getCurrent());
+
+            long generation = 0;
+            while (generation < generations) {
+                exchange.exchange((BitGrid) buffer.getCurrent().getGrid(), halo, generation);
+                long batch = Math.min(halo, Math.min(generations - generation, interval - generation % interval));
+                for (long i = 0; i < batch; i++) {
+                    buffer.step(rules, stepper);
+                }
+                generation += batch;
+                if (generation % interval == 0 || generation == generations) {
+                    report(reports, generation, buffer.getCurrent());
+                }
+            }
+        } finally {
+            if (parallelStepper != null) {
+                parallelStepper.close();
+            }
+        }
+    }
+
+    private void fill(Map map) {
+        Random random = new Random(this.assignment.seed);
+        long skipped = (long) this.assignment.fromRow * this.assignment.width;
+        for (long cell = 0; cell < skipped; cell++) {
+            random.nextDouble();
+        }
+        for (int row = 0; row < this.assignment.getRows(); row++) {
+            for (int column = 0; column < this.assignment.width; column++) {
+                map.setCell(this.assignment.halo + row, column, random.nextDouble() < this.assignment.density);
+            }
+        }
+    }
+
+    private void report(DataOutputStream reports, long generation, Map map) throws IOException {
+        int fromRow = this.assignment.halo;
+        int toRow = fromRow + this.assignment.getRows();
+        long population = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            for (int column = 0; column < map.getWidth(); column++) {
+                population += map.isSet(row, column) ? 1 : 0;
+            }
+        }
+        reports.writeLong(generation);
+        reports.writeLong(population);
+        reports.writeLong(map.getStateHash(fromRow, toRow, this.assignment.fromRow));
+        reports.flush();
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.ppetrov.game.distributed;
+
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.RuleTemplate;
+import com.ppetrov.game.model.Rules;
+
+/**
+ * Command line options of {@link Coordinator}
+ */
+class ClusterOptions {
+
+    static final int DEFAULT_SIZE = 1024;
+    static final int DEFAULT_WORKERS = 2;
+    static final int DEFAULT_HALO = 16;
+
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: Coordinator [options]",
+            "  --workers <count>       amount of bands, each run by a worker JVM, " + DEFAULT_WORKERS + " by default",
+            "  --local <true|false>    whether workers should be started on this machine, true by default,",
+            "                          otherwise they are started by hand with BandWorker --coordinator <host>:<port>",
+            "  --port <number>         port to wait for workers on, any free one by default",
+            "  --width <cells>         width of the field, " + DEFAULT_SIZE + " by default",
+            "  --height <cells>        height of the field, equal to the width by default",
+            "  --density <0..1>        probability of a random cell to be alive, " + Map.DEFAULT_DENSITY + " by default",
+            "  --seed <number>         seed of the random field, a new one by default",
+            "  --rule <rule|template>  rule string like B36/S23 or a template name like HIGH_LIFE, Life by default,",
+            "                          Generations and Larger than Life rules are not supported",
+            "  --generations <count>   amount of generations to run, 1000 by default",
+            "  --halo <rows>           rows exchanged with neighbours at once, also the amount of generations",
+            "                          between exchanges, " + DEFAULT_HALO + " by default",
+            "  --report-interval <generations>  generations between reports of population and hash,",
+            "                          only the first and the last generation by default",
+            "  --threads <count>       amount of threads of a worker, processors divided between local workers by default"
+    );
+
+    int workers = DEFAULT_WORKERS;
+    boolean local = true;
+    int port;
+    int width = DEFAULT_SIZE;
+    int height = -1;
+    double density = Map.DEFAULT_DENSITY;
+    long seed = System.nanoTime();
+    Rules rules = RuleTemplate.DEFAULT.getRules();
+    long generations = 1000;
+    int halo = DEFAULT_HALO;
+    long reportInterval;
+    int threads = -1;
+
+    /**
+     * @throws IllegalArgumentException if an option is unknown or its value is wrong
+     */
+    static ClusterOptions parse(String[] args) {
+        ClusterOptions options = new ClusterOptions();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Option " + args[i] + " has no value");
+            }
+            options.set(args[i], args[i + 1]);
+        }
+
+        if (options.height < 0) {
+            options.height = options.width;
+        }
+        if (options.threads < 0) {
+            options.threads = options.local
+                    ? Math.max(1, Runtime.getRuntime().availableProcessors() / options.workers)
+                    : Runtime.getRuntime().availableProcessors();
+        }
+        if (options.workers < 1) {
+            throw new IllegalArgumentException("Amount of workers should be positive: " + options.workers);
+        } else if (options.width < 1) {
+            throw new IllegalArgumentException("Size of the field should be positive: " + options.width);
+        } else if (options.halo < 1) {
+            throw new IllegalArgumentException("Halo should be at least 1 row: " + options.halo);
+        } else if (options.height / options.workers < options.halo) {
+            throw new IllegalArgumentException("Bands of " + options.height / options.workers
+                    + " rows are lower than the halo of " + options.halo + " rows");
+        } else if (options.generations < 0) {
+            throw new IllegalArgumentException("Amount of generations should not be negative: " + options.generations);
+        } else if (options.reportInterval < 0) {
+            throw new IllegalArgumentException("Report interval should not be negative: " + options.reportInterval);
+        } else if (options.threads < 1) {
+            throw new IllegalArgumentException("Amount of threads should be positive: " + options.threads);
+        } else if (options.rules.getStates() > 2) {
+            throw new IllegalArgumentException("Generations rules are not supported: " + options.rules);
+        } else if (options.rules.getRange() > 1) {
+            throw new IllegalArgumentException("Larger than Life rules are not supported: " + options.rules);
+        }
+        return options;
+    }
+
+    private void set(String option, String value) {
+        try {
+            switch (option) {
+                case "--workers":
+                    this.workers = Integer.parseInt(value);
+                    break;
+                case "--local":
+                    this.local = Boolean.parseBoolean(value);
+                    break;
+                case "--port":
+                    this.port = Integer.parseInt(value);
+                    break;
+                case "--width":
+                    this.width = Integer.parseInt(value);
+                    break;
+                case "--height":
+                    this.height = Integer.parseInt(value);
+                    break;
+                case "--density":
+                    this.density = Double.parseDouble(value);
+                    break;
+                case "--seed":
+                    this.seed = Long.parseLong(value);
+                    break;
+                case "--rule":
+                    this.rules = parseRules(value);
+                    break;
+                case "--generations":
+                    this.generations = Long.parseLong(value);
+                    break;
+                case "--halo":
+                    this.halo = Integer.parseInt(value);
+                    break;
+                case "--report-interval":
+                    this.reportInterval = Long.parseLong(value);
+                    break;
+                case "--threads":
+                    this.threads = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unexpected value of " + option + ": " + value, e);
+        }
+    }
+
+    private static Rules parseRules(String value) {
+        for (RuleTemplate template : RuleTemplate.values()) {
+            if (template.name().equalsIgnoreCase(value)) {
+                return template.getRules();
+            }
+        }
+        return Rules.parse(value);
+    }
+
+}
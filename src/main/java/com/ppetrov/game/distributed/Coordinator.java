@@ -0,0 +1,184 @@
+package com.ppetrov.game.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinator runs a field split into horizontal bands of whole rows on several {@link BandWorker} JVMs,
+ * so the field and the work are not limited by one process. Workers are started on this machine
+ * or connect from other ones, every worker exchanges halo rows directly with the workers of the bands
+ * above and below its own one.
+ * <p>
+ * Workers report the population and the hash of their bands, and the coordinator prints their sums:
+ * the hash of a band is the XOR of the keys of its cells at their places in the whole field,
+ * so the hashes of the bands add up to the one of the whole field.
+ */
+public class Coordinator {
+
+    static final int PROTOCOL_VERSION = 1;
+
+    private static final long WORKER_EXIT_SECONDS = 10;
+
+    private final ClusterOptions options;
+
+    Coordinator(ClusterOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        ClusterOptions options;
+        try {
+            options = ClusterOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(ClusterOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            new Coordinator(options).run(System.out);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    void run(PrintStream out) throws IOException {
+        List<Process> processes = new ArrayList<>();
+        List<Worker> workers = new ArrayList<>();
+        try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress(this.options.port))) {
+            int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+            out.println("rule: " + this.options.rules);
+            out.println("size: " + this.options.width + "x" + this.options.height);
+            out.println("workers: " + this.options.workers + ", port " + port);
+            out.println("halo: " + this.options.halo);
+            for (int i = 0; this.options.local && i < this.options.workers; i++) {
+                processes.add(launchWorker(port));
+            }
+
+            for (int i = 0; i < this.options.workers; i++) {
+                workers.add(new Worker(server.accept()));
+            }
+            for (int band = 0; band < workers.size(); band++) {
+                Worker south = workers.get((band + 1) % workers.size());
+                DataOutputStream output = workers.get(band).output;
+                createAssignment(band, south).write(output);
+                output.flush();
+            }
+
+            collectReports(workers, out);
+        } finally {
+            for (Worker worker : workers) {
+                worker.channel.close();
+            }
+            stopWorkers(processes);
+        }
+    }
+
+    private void collectReports(List<Worker> workers, PrintStream out) throws IOException {
+        long start = System.nanoTime();
+        long generation;
+        long population;
+        long hash;
+        do {
+            generation = -1;
+            population = 0;
+            hash = 0;
+            for (Worker worker : workers) {
+                long reported = worker.input.readLong();
+                if (generation >= 0 && reported != generation) {
+                    throw new IOException("Worker reported generation " + reported + " instead of " + generation);
+                }
+                generation = reported;
+                population += worker.input.readLong();
+                hash ^= worker.input.readLong();
+            }
+
+            if (generation == 0) {
+                out.println("initial population: " + population);
+                start = System.nanoTime();
+            } else if (generation < this.options.generations) {
+                out.printf("generation: %d population: %d hash: %016x%n", generation, population, hash);
+            }
+        } while (generation < this.options.generations);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double generationsPerSecond = seconds > 0 ? generation / seconds : 0;
+        out.println("generations: " + generation);
+        out.printf("seconds: %.3f%n", seconds);
+        out.printf("generations per second: %.1f%n", generationsPerSecond);
+        out.printf("cell updates per second: %.3e%n", generationsPerSecond * this.options.width * this.options.height);
+        out.println("population: " + population);
+        out.printf("hash: %016x%n", hash);
+    }
+
+    private Assignment createAssignment(int band, Worker south) {
+        int workers = this.options.workers;
+        int fromRow = (int) ((long) this.options.height * band / workers);
+        int toRow = (int) ((long) this.options.height * (band + 1) / workers);
+        return new Assignment(band, this.options.width, this.options.height, fromRow, toRow,
+                this.options.rules.toString(), this.options.density, this.options.seed,
+                this.options.generations, this.options.halo, this.options.reportInterval, this.options.threads,
+                south.host, south.haloPort);
+    }
+
+    /**
+     * Start a worker JVM with the same Java and class path as this one, its output goes to the output of this one
+     */
+    private static Process launchWorker(int port) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                BandWorker.class.getName(), "--coordinator", "localhost:" + port)
+                .inheritIO()
+                .start();
+    }
+
+    private static void stopWorkers(List<Process> processes) {
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(WORKER_EXIT_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Control connection of a registered worker
+     */
+    private static class Worker {
+        final SocketChannel channel;
+        final DataInputStream input;
+        final DataOutputStream output;
+        final String host;
+        final int haloPort;
+
+        Worker(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            this.output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            int version = this.input.readInt();
+            if (version != PROTOCOL_VERSION) {
+                throw new IOException("Worker speaks protocol " + version + " instead of " + PROTOCOL_VERSION);
+            }
+            this.haloPort = this.input.readInt();
+            this.host = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+        }
+    }
+
+}
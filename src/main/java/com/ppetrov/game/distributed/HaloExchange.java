@@ -0,0 +1,122 @@
+package com.ppetrov.game.distributed;
+
+import com.ppetrov.game.model.BitGrid;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * HaloExchange swaps halo rows of a band with its northern and southern neighbours.
+ * Both channels are non-blocking and served by one selector, so a band writes to and reads from
+ * both neighbours at once and bands can't deadlock on full socket buffers.
+ * <p>
+ * A message is the generation it belongs to followed by the words of the rows, see {@link BitGrid#writeRows}.
+ * Rows are written straight into direct buffers which the channels send without another copy.
+ * With a single band both channels are the two ends of one connection to itself.
+ */
+class HaloExchange implements Closeable {
+
+    private final Selector selector;
+    private final Side north;
+    private final Side south;
+
+    /**
+     * @param north channel to the band above
+     * @param south channel to the band below
+     * @param rows  amount of halo rows sent in each direction
+     * @param width width of the field
+     */
+    HaloExchange(SocketChannel north, SocketChannel south, int rows, int width) throws IOException {
+        int wordsPerRow = (width + Long.SIZE - 1) / Long.SIZE;
+        int bytes = Long.BYTES + rows * wordsPerRow * Long.BYTES;
+        this.selector = Selector.open();
+        this.north = new Side(north, bytes);
+        this.south = new Side(south, bytes);
+    }
+
+    /**
+     * Send the own rows next to the neighbours and receive their rows into the halos of the grid
+     *
+     * @param grid       band with a halo above and below its own rows
+     * @param rows       height of a halo
+     * @param generation generation of the rows, the neighbours must be at the same one
+     */
+    void exchange(BitGrid grid, int rows, long generation) throws IOException {
+        int height = grid.getHeight();
+        this.north.prepare(grid, rows, 2 * rows, generation);
+        this.south.prepare(grid, height - 2 * rows, height - rows, generation);
+
+        while (!this.north.isDone() || !this.south.isDone()) {
+            this.selector.select();
+            for (SelectionKey key : this.selector.selectedKeys()) {
+                Side side = (Side) key.attachment();
+                if (key.isValid() && key.isWritable()) {
+                    side.channel.write(side.output);
+                }
+                if (key.isValid() && key.isReadable() && side.channel.read(side.input) < 0) {
+                    throw new IOException("Neighbour closed the halo connection at generation " + generation);
+                }
+                side.updateInterest();
+            }
+            this.selector.selectedKeys().clear();
+        }
+
+        this.north.finish(grid, 0, rows, generation);
+        this.south.finish(grid, height - rows, height, generation);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.selector.close();
+        this.north.channel.close();
+        this.south.channel.close();
+    }
+
+    private class Side {
+        final SocketChannel channel;
+        final ByteBuffer output;
+        final ByteBuffer input;
+        final SelectionKey key;
+
+        Side(SocketChannel channel, int bytes) throws IOException {
+            this.channel = channel;
+            this.output = ByteBuffer.allocateDirect(bytes);
+            this.input = ByteBuffer.allocateDirect(bytes);
+            channel.configureBlocking(false);
+            this.key = channel.register(HaloExchange.this.selector, 0, this);
+        }
+
+        void prepare(BitGrid grid, int fromRow, int toRow, long generation) {
+            this.output.clear();
+            this.output.putLong(generation);
+            grid.writeRows(this.output.asLongBuffer(), fromRow, toRow);
+            this.output.position(this.output.capacity());
+            this.output.flip();
+            this.input.clear();
+            updateInterest();
+        }
+
+        boolean isDone() {
+            return !this.output.hasRemaining() && !this.input.hasRemaining();
+        }
+
+        void updateInterest() {
+            this.key.interestOps((this.output.hasRemaining() ? SelectionKey.OP_WRITE : 0)
+                    | (this.input.hasRemaining() ? SelectionKey.OP_READ : 0));
+        }
+
+        void finish(BitGrid grid, int fromRow, int toRow, long generation) throws IOException {
+            this.input.flip();
+            long received = this.input.getLong();
+            if (received != generation) {
+                throw new IOException("Neighbour sent generation " + received + " instead of " + generation);
+            }
+            grid.readRows(this.input.asLongBuffer(), fromRow, toRow);
+        }
+    }
+
+}
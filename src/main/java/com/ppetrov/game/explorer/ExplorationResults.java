@@ -0,0 +1,179 @@
+package com.ppetrov.game.explorer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classes of a range of outer totalistic rules, see {@link RuleExplorer#getRules(int)} for their numbering.
+ * <p>
+ * Results are saved as a little-endian header:
+ * <pre>
+ * int    magic, "GOLR"
+ * short  version, {@link #VERSION}
+ * short  amount of soups per rule
+ * int    size of a soup
+ * int    amount of generations
+ * long   seed
+ * double density
+ * int    first rule
+ * int    amount of rules
+ * </pre>
+ * followed by a byte per rule, which is the ordinal of its {@link RuleClass}.
+ */
+public class ExplorationResults {
+
+    public static final int MAGIC = 'G' | 'O' << 8 | 'L' << 16 | 'R' << 24;
+    public static final short VERSION = 1;
+
+    private static final int HEADER_SIZE = 40;
+
+    private final int soups;
+    private final int size;
+    private final int generations;
+    private final long seed;
+    private final double density;
+    private final int from;
+    private final byte[] classes;
+
+    /**
+     * @param from    number of the first rule
+     * @param classes ordinals of classes of the rules starting from the first one
+     */
+    public ExplorationResults(int soups, int size, int generations, long seed, double density, int from, byte[] classes) {
+        this.soups = soups;
+        this.size = size;
+        this.generations = generations;
+        this.seed = seed;
+        this.density = density;
+        this.from = from;
+        this.classes = classes;
+    }
+
+    public int getSoups() {
+        return this.soups;
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public int getGenerations() {
+        return this.generations;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    public double getDensity() {
+        return this.density;
+    }
+
+    public int getFrom() {
+        return this.from;
+    }
+
+    /**
+     * @return number after the last rule
+     */
+    public int getTo() {
+        return this.from + this.classes.length;
+    }
+
+    /**
+     * @param rule number of a rule from {@link #getFrom()} inclusive to {@link #getTo()} exclusive
+     */
+    public RuleClass getRuleClass(int rule) {
+        return RuleClass.values()[this.classes[rule - this.from]];
+    }
+
+    /**
+     * @return numbers of rules of the class
+     */
+    public List<Integer> getRules(RuleClass ruleClass) {
+        List<Integer> rules = new ArrayList<>();
+        for (int i = 0; i < this.classes.length; i++) {
+            if (this.classes[i] == ruleClass.ordinal()) {
+                rules.add(this.from + i);
+            }
+        }
+        return rules;
+    }
+
+    public int count(RuleClass ruleClass) {
+        int count = 0;
+        for (byte value : this.classes) {
+            count += value == ruleClass.ordinal() ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Write the results into a temporary file next to the path and move it over the path
+     */
+    public void write(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + this.classes.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) this.soups)
+                .putInt(this.size).putInt(this.generations).putLong(this.seed).putDouble(this.density)
+                .putInt(this.from).putInt(this.classes.length).put(this.classes);
+        buffer.flip();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @throws IOException if the file can't be read or is not a file of results
+     */
+    public static ExplorationResults read(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("File is not a file of exploration results: " + path);
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of exploration results: " + path);
+        }
+
+        int soups = buffer.getShort();
+        int size = buffer.getInt();
+        int generations = buffer.getInt();
+        long seed = buffer.getLong();
+        double density = buffer.getDouble();
+        int from = buffer.getInt();
+        int count = buffer.getInt();
+        if (count < 0 || buffer.remaining() != count) {
+            throw new IOException("Exploration results are truncated: " + path);
+        }
+
+        byte[] classes = new byte[count];
+        buffer.get(classes);
+        for (byte value : classes) {
+            if (value < 0 || value >= RuleClass.values().length) {
+                throw new IOException("Unknown rule class " + value + " in " + path);
+            }
+        }
+        return new ExplorationResults(soups, size, generations, seed, density, from, classes);
+    }
+
+}
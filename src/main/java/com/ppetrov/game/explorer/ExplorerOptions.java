@@ -0,0 +1,121 @@
+package com.ppetrov.game.explorer;
+
+import com.ppetrov.game.model.Map;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Command line options of {@link RuleExplorer}
+ */
+class ExplorerOptions {
+
+    static final int DEFAULT_SIZE = 64;
+    static final int DEFAULT_SOUPS = 4;
+    static final int DEFAULT_GENERATIONS = 500;
+
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: RuleExplorer [options]",
+            "  --output <file>         file to write the classes of rules to",
+            "  --input <file>          file of classes written before, to list rules without exploring them",
+            "  --list <class>          print rules of a class: dies, stable, oscillating, chaotic or exploding",
+            "  --from <rule>           number of the first rule, 0 by default",
+            "  --to <rule>             number after the last rule, " + RuleExplorer.RULES + " by default",
+            "  --size <cells>          width and height of a soup, " + DEFAULT_SIZE + " by default",
+            "  --soups <count>         amount of soups per rule, " + DEFAULT_SOUPS + " by default",
+            "  --generations <count>   amount of generations to run a soup, " + DEFAULT_GENERATIONS + " by default",
+            "  --density <0..1>        probability of a cell of a soup to be alive, " + Map.DEFAULT_DENSITY + " by default",
+            "  --seed <number>         seed of soups, 0 by default",
+            "  --threads <count>       amount of threads, all processors by default"
+    );
+
+    Path output;
+    Path input;
+    RuleClass list;
+    int from;
+    int to = RuleExplorer.RULES;
+    int size = DEFAULT_SIZE;
+    int soups = DEFAULT_SOUPS;
+    int generations = DEFAULT_GENERATIONS;
+    double density = Map.DEFAULT_DENSITY;
+    long seed;
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @throws IllegalArgumentException if an option is unknown or its value is wrong
+     */
+    static ExplorerOptions parse(String[] args) {
+        ExplorerOptions options = new ExplorerOptions();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Option " + args[i] + " has no value");
+            }
+            options.set(args[i], args[i + 1]);
+        }
+
+        if (options.from < 0 || options.to > RuleExplorer.RULES || options.from >= options.to) {
+            throw new IllegalArgumentException("Rules should be a range inside of 0.." + RuleExplorer.RULES
+                    + ": " + options.from + ".." + options.to);
+        } else if (options.size < 3) {
+            throw new IllegalArgumentException("Size of a soup should be at least 3: " + options.size);
+        } else if (options.soups < 1 || options.soups > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Amount of soups should be from 1 to " + Short.MAX_VALUE + ": " + options.soups);
+        } else if (options.generations < 1) {
+            throw new IllegalArgumentException("Amount of generations should be positive: " + options.generations);
+        } else if (options.threads < 1) {
+            throw new IllegalArgumentException("Amount of threads should be positive: " + options.threads);
+        }
+        return options;
+    }
+
+    private void set(String option, String value) {
+        try {
+            switch (option) {
+                case "--output":
+                    this.output = Paths.get(value);
+                    break;
+                case "--input":
+                    this.input = Paths.get(value);
+                    break;
+                case "--list":
+                    this.list = RuleClass.valueOf(value.toUpperCase(Locale.ROOT));
+                    break;
+                case "--from":
+                    this.from = Integer.parseInt(value);
+                    break;
+                case "--to":
+                    this.to = Integer.parseInt(value);
+                    break;
+                case "--size":
+                    this.size = Integer.parseInt(value);
+                    break;
+                case "--soups":
+                    this.soups = Integer.parseInt(value);
+                    break;
+                case "--generations":
+                    this.generations = Integer.parseInt(value);
+                    break;
+                case "--density":
+                    this.density = Double.parseDouble(value);
+                    break;
+                case "--seed":
+                    this.seed = Long.parseLong(value);
+                    break;
+                case "--threads":
+                    this.threads = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unexpected value of " + option + ": " + value, e);
+        } catch (IllegalArgumentException e) {
+            if (e.getMessage() != null && e.getMessage().startsWith("Unknown option")) {
+                throw e;
+            }
+            throw new IllegalArgumentException("Unexpected value of " + option + ": " + value, e);
+        }
+    }
+
+}
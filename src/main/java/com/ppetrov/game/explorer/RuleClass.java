@@ -0,0 +1,33 @@
+package com.ppetrov.game.explorer;
+
+/**
+ * RuleClass is the fate of random soups under a rule, from the quietest to the busiest
+ */
+public enum RuleClass {
+
+    /**
+     * All cells die
+     */
+    DIES,
+
+    /**
+     * Soups settle into still lifes
+     */
+    STABLE,
+
+    /**
+     * Soups settle into oscillators with periods up to the window of the explorer
+     */
+    OSCILLATING,
+
+    /**
+     * Soups keep changing without growing much
+     */
+    CHAOTIC,
+
+    /**
+     * Soups keep changing and their population grows at least twice
+     */
+    EXPLODING
+
+}
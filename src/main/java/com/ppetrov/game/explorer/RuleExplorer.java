@@ -0,0 +1,206 @@
+package com.ppetrov.game.explorer;
+
+import com.ppetrov.game.model.BitGrid;
+import com.ppetrov.game.model.ChangeCounter;
+import com.ppetrov.game.model.CycleDetector;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.MapBuffer;
+import com.ppetrov.game.model.Rules;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * RuleExplorer runs random soups under every outer totalistic rule and classifies the rules by their fate.
+ * A rule is numbered by its born counts in bits 0-8 and survives counts in bits 9-17, so there are 2^18 of them.
+ * <p>
+ * Ranges of rules are split into tasks of a fork-join pool, so idle threads steal work from busy ones.
+ * Every thread keeps its own pair of bit-packed boards, which are refilled for every soup.
+ * A soup runs until it dies or repeats itself, watched by its population and state hash,
+ * and a rule gets the class of the majority of its soups.
+ */
+public class RuleExplorer {
+
+    public static final int RULES = 1 << 18;
+
+    static final int TASK_RULES = 16;
+    static final int CYCLE_WINDOW = 32;
+    static final int EXPLODING_GROWTH = 2;
+
+    private static final int COUNTS = 9;
+
+    private final ExplorerOptions options;
+    private final ThreadLocal<Board> boards;
+
+    RuleExplorer(ExplorerOptions options) {
+        this.options = options;
+        this.boards = ThreadLocal.withInitial(() -> new Board(options.size));
+    }
+
+    public static void main(String[] args) {
+        ExplorerOptions options;
+        try {
+            options = ExplorerOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(ExplorerOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            new RuleExplorer(options).run(System.out);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @param rule number of a rule from 0 to {@link #RULES}
+     */
+    public static Rules getRules(int rule) {
+        return new Rules(getCounts(rule), getCounts(rule >>> COUNTS));
+    }
+
+    private static int[] getCounts(int mask) {
+        return IntStream.range(0, COUNTS).filter(count -> (mask & (1 << count)) != 0).toArray();
+    }
+
+    ExplorationResults run(PrintStream out) throws IOException {
+        ExplorationResults results;
+        if (this.options.input != null) {
+            results = ExplorationResults.read(this.options.input);
+        } else {
+            long start = System.nanoTime();
+            results = explore();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            int rules = results.getTo() - results.getFrom();
+            out.println("rules: " + results.getFrom() + ".." + results.getTo());
+            out.printf("seconds: %.3f%n", seconds);
+            out.printf("rules per second: %.1f%n", rules / seconds);
+        }
+
+        for (RuleClass ruleClass : RuleClass.values()) {
+            out.println(ruleClass.name().toLowerCase() + ": " + results.count(ruleClass));
+        }
+        if (this.options.output != null) {
+            results.write(this.options.output);
+        }
+        if (this.options.list != null) {
+            for (int rule : results.getRules(this.options.list)) {
+                out.println(getRules(rule));
+            }
+        }
+        return results;
+    }
+
+    ExplorationResults explore() {
+        byte[] classes = new byte[this.options.to - this.options.from];
+        ForkJoinPool pool = new ForkJoinPool(this.options.threads);
+        try {
+            pool.invoke(new RangeTask(classes, this.options.from, this.options.to));
+        } finally {
+            pool.shutdown();
+        }
+        return new ExplorationResults(this.options.soups, this.options.size, this.options.generations,
+                this.options.seed, this.options.density, this.options.from, classes);
+    }
+
+    RuleClass classify(int rule, Board board) {
+        Rules rules = getRules(rule);
+        int[] votes = new int[RuleClass.values().length];
+        for (int soup = 0; soup < this.options.soups; soup++) {
+            votes[board.run(rules, getSeed(rule, soup), this.options.density, this.options.generations).ordinal()]++;
+        }
+
+        int winner = 0;
+        for (int i = 1; i < votes.length; i++) {
+            if (votes[i] >= votes[winner]) {
+                winner = i;
+            }
+        }
+        return RuleClass.values()[winner];
+    }
+
+    private long getSeed(int rule, int soup) {
+        long z = this.options.seed + ((long) rule * this.options.soups + soup) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        return z ^ (z >>> 31);
+    }
+
+    private class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] classes;
+        private final int from;
+        private final int to;
+
+        RangeTask(byte[] classes, int from, int to) {
+            this.classes = classes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > TASK_RULES) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new RangeTask(this.classes, this.from, middle), new RangeTask(this.classes, middle, this.to));
+                return;
+            }
+
+            Board board = RuleExplorer.this.boards.get();
+            for (int rule = this.from; rule < this.to; rule++) {
+                this.classes[rule - RuleExplorer.this.options.from] = (byte) classify(rule, board).ordinal();
+            }
+        }
+
+    }
+
+    /**
+     * Board is a pair of maps reused by one thread for all of its soups
+     */
+    static class Board implements ChangeCounter {
+
+        private final MapBuffer buffer;
+        private final CycleDetector cycleDetector = new CycleDetector(CYCLE_WINDOW);
+        private final Random random = new Random();
+        private long population;
+
+        Board(int size) {
+            this.buffer = new MapBuffer(new Map(new BitGrid(size, size)));
+        }
+
+        RuleClass run(Rules rules, long seed, double density, int generations) {
+            this.random.setSeed(seed);
+            Map map = this.buffer.getCurrent();
+            map.fillRandomly(this.random, density);
+            long initial = map.getPopulation();
+            this.population = initial;
+            this.cycleDetector.reset();
+            this.cycleDetector.observe(map.getStateHash());
+
+            for (int generation = 0; generation < generations; generation++) {
+                map = this.buffer.step(rules, this);
+                if (this.population == 0) {
+                    return RuleClass.DIES;
+                } else if (this.cycleDetector.observe(map.getStateHash()) && this.cycleDetector.getPeriod() > 0) {
+                    return this.cycleDetector.getPeriod() == 1 ? RuleClass.STABLE : RuleClass.OSCILLATING;
+                }
+            }
+            return this.population >= EXPLODING_GROWTH * initial ? RuleClass.EXPLODING : RuleClass.CHAOTIC;
+        }
+
+        @Override
+        public void addChanges(long births, long deaths) {
+            this.population += births - deaths;
+        }
+
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.ppetrov.game.headless;
+
+import com.ppetrov.game.io.PatternFiles;
+import com.ppetrov.game.io.Snapshot;
+import com.ppetrov.game.io.SnapshotFiles;
+import com.ppetrov.game.model.Cycle;
+import com.ppetrov.game.model.CycleDetector;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.MapBuffer;
+import com.ppetrov.game.model.ParallelStepper;
+import com.ppetrov.game.model.Rules;
+import com.ppetrov.game.model.Stepper;
+import com.ppetrov.game.model.TileStepper;
+import com.ppetrov.game.model.metrics.SimulationMetrics;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HeadlessRunner runs a field for a fixed amount of generations as fast as possible,
+ * without JavaFX and timer ticks, and prints the speed and the final state.
+ * It can stop earlier when the field settles into a still life or an oscillator.
+ * Steps are recorded by {@link SimulationMetrics} published over JMX, so long runs can be watched.
+ * A field run with the same options and seed always ends with the same population and hash.
+ */
+public class HeadlessRunner {
+
+    private final RunnerOptions options;
+
+    HeadlessRunner(RunnerOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        RunnerOptions options;
+        try {
+            options = RunnerOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(RunnerOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            new HeadlessRunner(options).run(System.out);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return the last generation
+     */
+    Map run(PrintStream out) throws IOException {
+        Snapshot initial = this.options.createSnapshot();
+        Rules rules = initial.getRules();
+        Map map = initial.getMap();
+        out.println("rule: " + rules);
+        out.println("size: " + map.getWidth() + "x" + map.getHeight());
+        out.println("initial generation: " + initial.getGeneration());
+        out.println("initial population: " + map.getPopulation());
+
+        SimulationMetrics metrics = new SimulationMetrics();
+        metrics.register("headless");
+
+        MapBuffer buffer = new MapBuffer(map);
+        long start = System.nanoTime();
+        long generations;
+        if (this.options.threads == 1) {
+            generations = run(buffer, initial, new TileStepper(), metrics, out);
+        } else {
+            try (ParallelStepper stepper = new ParallelStepper(this.options.threads, ParallelStepper.DEFAULT_STRIPE_HEIGHT)) {
+                generations = run(buffer, initial, stepper, metrics, out);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Map last = buffer.getCurrent();
+        double generationsPerSecond = generations / seconds;
+        out.println("generations: " + generations);
+        out.printf("seconds: %.3f%n", seconds);
+        out.printf("generations per second: %.1f%n", generationsPerSecond);
+        out.printf("cell updates per second: %.3e%n", generationsPerSecond * last.getWidth() * last.getHeight());
+        out.println("population: " + last.getPopulation());
+        out.println("births: " + metrics.getBirths());
+        out.println("deaths: " + metrics.getDeaths());
+        out.printf("step time p50/p99/max, us: %.1f/%.1f/%.1f%n",
+                metrics.getStepMicrosP50(), metrics.getStepMicrosP99(), metrics.getStepMicrosMax());
+        out.printf("hash: %016x%n", last.getStateHash());
+
+        Snapshot snapshot = new Snapshot(last, rules, initial.getGeneration() + generations);
+        if (this.options.output != null && SnapshotFiles.isSnapshot(this.options.output)) {
+            SnapshotFiles.write(this.options.output, snapshot);
+        } else if (this.options.output != null) {
+            PatternFiles.write(this.options.output, last, rules);
+        }
+        if (this.options.checkpoint != null) {
+            SnapshotFiles.write(this.options.checkpoint, snapshot);
+        }
+        return last;
+    }
+
+    /**
+     * @return amount of generations run
+     */
+    private long run(MapBuffer buffer, Snapshot initial, Stepper stepper, SimulationMetrics metrics, PrintStream out)
+            throws IOException {
+        long interval = TimeUnit.SECONDS.toNanos(this.options.checkpointInterval);
+        long lastCheckpoint = System.nanoTime();
+        CycleDetector cycleDetector = this.options.stopOnCycle > 0 ? new CycleDetector(this.options.stopOnCycle) : null;
+        for (long generation = 1; generation <= this.options.generations; generation++) {
+            long stepStart = System.nanoTime();
+            buffer.step(initial.getRules(), stepper, metrics);
+            metrics.recordStep(initial.getGeneration() + generation, buffer.getCurrent(), System.nanoTime() - stepStart);
+
+            if (cycleDetector != null && cycleDetector.observe(buffer.getCurrent().getStateHash())) {
+                out.println("cycle: " + new Cycle(initial.getGeneration() + generation, cycleDetector.getPeriod()));
+                return generation;
+            }
+
+            if (this.options.checkpoint != null && System.nanoTime() - lastCheckpoint >= interval
+                    && generation < this.options.generations) {
+                long number = initial.getGeneration() + generation;
+                SnapshotFiles.write(this.options.checkpoint, new Snapshot(buffer.getCurrent(), initial.getRules(), number));
+                out.println("checkpoint: " + number);
+                lastCheckpoint = System.nanoTime();
+            }
+        }
+        return this.options.generations;
+    }
+
+}
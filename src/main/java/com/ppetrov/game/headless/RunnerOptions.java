@@ -0,0 +1,234 @@
+package com.ppetrov.game.headless;
+
+import com.ppetrov.game.io.Pattern;
+import com.ppetrov.game.io.PatternFiles;
+import com.ppetrov.game.io.Snapshot;
+import com.ppetrov.game.io.SnapshotFiles;
+import com.ppetrov.game.model.BitGrid;
+import com.ppetrov.game.model.ByteGrid;
+import com.ppetrov.game.model.CellGrid;
+import com.ppetrov.game.model.Grid;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.OffHeapGrid;
+import com.ppetrov.game.model.RuleTemplate;
+import com.ppetrov.game.model.Rules;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Command line options of {@link HeadlessRunner}
+ */
+class RunnerOptions {
+
+    static final int DEFAULT_SIZE = 1024;
+    static final long DEFAULT_CHECKPOINT_INTERVAL = 300;
+
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: HeadlessRunner [options]",
+            "  --pattern <file>        RLE or plaintext pattern placed in the centre of the field,",
+            "                          or a " + SnapshotFiles.EXTENSION + " snapshot to continue, a random field by default",
+            "  --width <cells>         width of the field, " + DEFAULT_SIZE + " or the width of the pattern by default",
+            "  --height <cells>        height of the field, equal to the width or the height of the pattern by default",
+            "  --density <0..1>        probability of a random cell to be alive, " + Map.DEFAULT_DENSITY + " by default",
+            "  --seed <number>         seed of a random field, a new one by default",
+            "  --rule <rule|template>  rule string like B36/S23 or R5,C0,M1,S34..58,B34..45,NM",
+            "                          or a template name like HIGH_LIFE, rule of the pattern or Life by default",
+            "  --max-age <generations> age of death of alive cells on byte and cell grids, no limit by default",
+            "  --generations <count>   amount of generations to run, 1000 by default",
+            "  --stop-on-cycle <period>  stop when the field repeats itself with a period up to this one,",
+            "                          like 1 for still lifes, 0 to never stop by default",
+            "  --threads <count>       amount of threads, all processors by default",
+            "  --grid <bit|byte|cell|off-heap>  storage of cells, bit by default, Generations rules always use byte,",
+            "                          off-heap keeps bits outside of the Java heap for fields larger than it",
+            "  --grid-file <file>      file to map an off-heap field to instead of direct memory, it is overwritten",
+            "  --output <file>         file to write the last generation to, as RLE, plaintext or a snapshot",
+            "  --checkpoint <file>     snapshot overwritten while running and after the last generation",
+            "  --checkpoint-interval <seconds>  time between checkpoints, " + DEFAULT_CHECKPOINT_INTERVAL + " by default"
+    );
+
+    Path pattern;
+    Path output;
+    Path checkpoint;
+    long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    int width = -1;
+    int height = -1;
+    double density = Map.DEFAULT_DENSITY;
+    long seed = System.nanoTime();
+    Rules rules;
+    int maxAge = Integer.MAX_VALUE;
+    long generations = 1000;
+    int stopOnCycle;
+    int threads = Runtime.getRuntime().availableProcessors();
+    String grid = "bit";
+    Path gridFile;
+
+    /**
+     * @throws IllegalArgumentException if an option is unknown or its value is wrong
+     */
+    static RunnerOptions parse(String[] args) {
+        RunnerOptions options = new RunnerOptions();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Option " + args[i] + " has no value");
+            }
+            options.set(args[i], args[i + 1]);
+        }
+
+        if (options.pattern == null && options.width < 0) {
+            options.width = DEFAULT_SIZE;
+        }
+        if (options.height < 0) {
+            options.height = options.width;
+        }
+        if (options.generations < 0) {
+            throw new IllegalArgumentException("Amount of generations should not be negative: " + options.generations);
+        } else if (options.checkpointInterval < 0) {
+            throw new IllegalArgumentException("Checkpoint interval should not be negative: " + options.checkpointInterval);
+        } else if (options.stopOnCycle < 0) {
+            throw new IllegalArgumentException("Cycle period should not be negative: " + options.stopOnCycle);
+        } else if (options.threads < 1) {
+            throw new IllegalArgumentException("Amount of threads should be positive: " + options.threads);
+        }
+        return options;
+    }
+
+    /**
+     * Read the pattern or the snapshot, or fill a random field
+     *
+     * @return initial field with rules to run it, rules of the options take precedence over the ones of the file
+     */
+    Snapshot createSnapshot() throws IOException {
+        if (this.pattern != null && SnapshotFiles.isSnapshot(this.pattern)
+                && "off-heap".equals(this.grid) && (this.rules == null || this.rules.getStates() <= 2)) {
+            Snapshot read = SnapshotFiles.readOffHeap(this.pattern, this.gridFile);
+            Rules rules = this.rules != null ? this.rules : read.getRules();
+            return new Snapshot(read.getMap(), rules.withMaxAge(this.maxAge), read.getGeneration());
+        } else if (this.pattern != null && SnapshotFiles.isSnapshot(this.pattern)) {
+            Snapshot read = SnapshotFiles.read(this.pattern);
+            Rules rules = this.rules != null ? this.rules : read.getRules();
+            return new Snapshot(convert(read.getMap(), rules), rules.withMaxAge(this.maxAge), read.getGeneration());
+        } else if (this.pattern != null) {
+            Pattern read = PatternFiles.read(this.pattern, Math.max(this.width, 0), Math.max(this.height, 0));
+            Rules rules = this.rules != null ? this.rules : read.getRules(RuleTemplate.DEFAULT.getRules());
+            return new Snapshot(convert(read.getMap(), rules), rules.withMaxAge(this.maxAge), 0);
+        }
+
+        Rules rules = this.rules != null ? this.rules : RuleTemplate.DEFAULT.getRules();
+        Map map = new Map(createGrid(this.width, this.height, rules));
+        map.fillRandomly(new Random(this.seed), this.density);
+        return new Snapshot(map, rules.withMaxAge(this.maxAge), 0);
+    }
+
+    /**
+     * @return map with the grid chosen by the options, which is the same map if it already has one
+     */
+    private Map convert(Map map, Rules rules) throws IOException {
+        Grid grid = createGrid(map.getWidth(), map.getHeight(), rules);
+        if (grid.getClass() == map.getGrid().getClass()) {
+            return map;
+        }
+        for (int row = 0; row < map.getHeight(); row++) {
+            for (int column = 0; column < map.getWidth(); column++) {
+                grid.setCell(row, column, map.getGrid().getCell(row, column));
+                grid.setState(row, column, map.getState(row, column));
+            }
+        }
+        return new Map(grid);
+    }
+
+    private Grid createGrid(int width, int height, Rules rules) throws IOException {
+        if (rules.getStates() > 2) {
+            return new ByteGrid(width, height);
+        }
+        switch (this.grid) {
+            case "bit":
+                return new BitGrid(width, height);
+            case "byte":
+                return new ByteGrid(width, height);
+            case "cell":
+                return new CellGrid(width, height);
+            case "off-heap":
+                return this.gridFile != null ? OffHeapGrid.map(this.gridFile, width, height) : new OffHeapGrid(width, height);
+            default:
+                throw new IllegalArgumentException("Unknown grid: " + this.grid);
+        }
+    }
+
+    private void set(String option, String value) {
+        try {
+            switch (option) {
+                case "--pattern":
+                    this.pattern = Paths.get(value);
+                    break;
+                case "--output":
+                    this.output = Paths.get(value);
+                    break;
+                case "--checkpoint":
+                    this.checkpoint = Paths.get(value);
+                    break;
+                case "--checkpoint-interval":
+                    this.checkpointInterval = Long.parseLong(value);
+                    break;
+                case "--width":
+                    this.width = parseSize(value);
+                    break;
+                case "--height":
+                    this.height = parseSize(value);
+                    break;
+                case "--density":
+                    this.density = Double.parseDouble(value);
+                    break;
+                case "--seed":
+                    this.seed = Long.parseLong(value);
+                    break;
+                case "--rule":
+                    this.rules = parseRules(value);
+                    break;
+                case "--max-age":
+                    this.maxAge = Integer.parseInt(value);
+                    break;
+                case "--generations":
+                    this.generations = Long.parseLong(value);
+                    break;
+                case "--stop-on-cycle":
+                    this.stopOnCycle = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    this.threads = Integer.parseInt(value);
+                    break;
+                case "--grid":
+                    this.grid = value.toLowerCase(Locale.ROOT);
+                    break;
+                case "--grid-file":
+                    this.gridFile = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unexpected value of " + option + ": " + value, e);
+        }
+    }
+
+    private static int parseSize(String value) {
+        int size = Integer.parseInt(value);
+        if (size < 1) {
+            throw new IllegalArgumentException("Size of the field should be positive: " + size);
+        }
+        return size;
+    }
+
+    private static Rules parseRules(String value) {
+        for (RuleTemplate template : RuleTemplate.values()) {
+            if (template.name().equalsIgnoreCase(value)) {
+                return template.getRules();
+            }
+        }
+        return Rules.parse(value);
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.ppetrov.game.io;
+
+import com.ppetrov.game.model.BitGrid;
+import com.ppetrov.game.model.ByteGrid;
+import com.ppetrov.game.model.Grid;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.Rules;
+
+/**
+ * Pattern is a field read from a pattern file together with the rules written in it
+ */
+public class Pattern {
+
+    private final Map map;
+    private final Rules rules;
+
+    /**
+     * @param rules rules of the pattern or null if the file has none
+     */
+    public Pattern(Map map, Rules rules) {
+        this.map = map;
+        this.rules = rules;
+    }
+
+    public Map getMap() {
+        return this.map;
+    }
+
+    /**
+     * @return rules of the pattern or null if the file has none
+     */
+    public Rules getRules() {
+        return this.rules;
+    }
+
+    public Rules getRules(Rules defaultRules) {
+        return this.rules != null ? this.rules : defaultRules;
+    }
+
+    /**
+     * Create a grid of a field big enough for both the pattern and the requested size,
+     * it keeps one bit per cell unless the rules have dying states
+     */
+    static Grid createGrid(int width, int height, Rules rules) {
+        return rules != null && rules.getStates() > 2
+                ? new ByteGrid(width, height)
+                : new BitGrid(width, height);
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.ppetrov.game.io;
+
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.Rules;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reading and writing of pattern files, the format is chosen by the extension:
+ * .cells and .txt are plaintext, anything else is RLE
+ */
+public final class PatternFiles {
+
+    private PatternFiles() {
+    }
+
+    public static Pattern read(Path path) throws IOException {
+        return read(path, 0, 0);
+    }
+
+    /**
+     * @param minWidth  width of the field, a wider pattern makes it wider
+     * @param minHeight height of the field, a higher pattern makes it higher
+     */
+    public static Pattern read(Path path, int minWidth, int minHeight) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return isPlaintext(path)
+                    ? new PlaintextReader(reader, minWidth, minHeight).read()
+                    : new RleReader(reader, minWidth, minHeight).read();
+        }
+    }
+
+    public static void write(Path path, Map map, Rules rules) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            if (isPlaintext(path)) {
+                new PlaintextWriter(writer).write(map);
+            } else {
+                new RleWriter(writer).write(map, rules);
+            }
+        }
+    }
+
+    private static boolean isPlaintext(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".cells") || name.endsWith(".txt");
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.ppetrov.game.io;
+
+import com.ppetrov.game.model.Grid;
+import com.ppetrov.game.model.Map;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * PlaintextReader decodes patterns in the plaintext format of the LifeWiki,
+ * where ! starts a comment line, . is a dead cell and O or * is an alive one.
+ * The format has no header with the size, so rows are kept as bits until the end of the text,
+ * which takes one bit per cell. Rules are not a part of the format.
+ */
+public class PlaintextReader {
+
+    private final BufferedReader reader;
+    private final int minWidth;
+    private final int minHeight;
+
+    /**
+     * @param minWidth  width of the field, a wider pattern makes it wider
+     * @param minHeight height of the field, a higher pattern makes it higher
+     */
+    public PlaintextReader(Reader reader, int minWidth, int minHeight) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.minWidth = minWidth;
+        this.minHeight = minHeight;
+    }
+
+    public PlaintextReader(Reader reader) {
+        this(reader, 0, 0);
+    }
+
+    /**
+     * Read the pattern and place it in the centre of the field
+     *
+     * @throws IOException if the text can't be read or it is not a valid pattern
+     */
+    public Pattern read() throws IOException {
+        List<BitSet> rows = new ArrayList<>();
+        int width = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = this.reader.readLine()) != null) {
+            lineNumber++;
+            if (line.startsWith("!")) {
+                continue;
+            }
+
+            BitSet row = new BitSet();
+            for (int column = 0; column < line.length(); column++) {
+                char character = line.charAt(column);
+                if (character == 'O' || character == '*') {
+                    row.set(column);
+                } else if (character != '.' && !Character.isWhitespace(character)) {
+                    throw new IOException("Unexpected '" + character + "' at line " + lineNumber);
+                }
+            }
+            rows.add(row);
+            width = Math.max(width, row.length());
+        }
+
+        Grid grid = Pattern.createGrid(Math.max(width, this.minWidth), Math.max(rows.size(), this.minHeight), null);
+        int top = (grid.getHeight() - rows.size()) / 2;
+        int left = (grid.getWidth() - width) / 2;
+        for (int row = 0; row < rows.size(); row++) {
+            BitSet cells = rows.get(row);
+            for (int column = cells.nextSetBit(0); column >= 0; column = cells.nextSetBit(column + 1)) {
+                grid.setAlive(top + row, left + column, true);
+            }
+        }
+        return new Pattern(new Map(grid), null);
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.ppetrov.game.io;
+
+import com.ppetrov.game.model.Map;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * PlaintextWriter writes a field in the plaintext format read by {@link PlaintextReader},
+ * dead cells at the end of a row are omitted and dying states are written as dead cells
+ */
+public class PlaintextWriter {
+
+    private final Writer writer;
+
+    public PlaintextWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public void write(Map map) throws IOException {
+        char[] line = new char[map.getWidth()];
+        for (int row = 0; row < map.getHeight(); row++) {
+            int end = 0;
+            for (int column = 0; column < map.getWidth(); column++) {
+                boolean alive = map.isSet(row, column);
+                line[column] = alive ? 'O' : '.';
+                end = alive ? column + 1 : end;
+            }
+            this.writer.write(line, 0, end);
+            this.writer.write('\n');
+        }
+        this.writer.flush();
+    }
+
+}
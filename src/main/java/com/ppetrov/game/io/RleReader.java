@@ -0,0 +1,190 @@
+package com.ppetrov.game.io;
+
+import com.ppetrov.game.model.Grid;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.Rules;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * RleReader decodes patterns in the run length encoded format used by Golly and the LifeWiki.
+ * Runs are decoded straight into the grid of the field while the text is read,
+ * so only the field itself is kept in memory, whatever the size of the file is.
+ * <p>
+ * Cells are written as b or . for dead cells, o for alive ones,
+ * and A to X, followed by pA to yO, for states of Generations rules, where A is alive.
+ * The rule takes the rest of the header line, as rules of Larger than Life are separated by commas themselves.
+ */
+public class RleReader {
+
+    static final int LETTERS = 24;
+
+    private final BufferedReader reader;
+    private final int minWidth;
+    private final int minHeight;
+
+    private int line;
+
+    /**
+     * @param minWidth  width of the field, a wider pattern makes it wider
+     * @param minHeight height of the field, a higher pattern makes it higher
+     */
+    public RleReader(Reader reader, int minWidth, int minHeight) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.minWidth = minWidth;
+        this.minHeight = minHeight;
+    }
+
+    public RleReader(Reader reader) {
+        this(reader, 0, 0);
+    }
+
+    /**
+     * Read the pattern and place it in the centre of the field
+     *
+     * @throws IOException if the text can't be read or it is not a valid pattern
+     */
+    public Pattern read() throws IOException {
+        Rules rules = null;
+        String header;
+        while ((header = readLine()) != null && (header.isEmpty() || header.startsWith("#"))) {
+            if (header.startsWith("#r")) {
+                rules = parseRules(header.substring(2));
+            }
+        }
+        if (header == null) {
+            throw error("Header with the size of the pattern is missing");
+        }
+
+        int rule = header.indexOf("rule");
+        if (rule >= 0) {
+            int value = header.indexOf('=', rule);
+            if (value < 0) {
+                throw error("Unexpected header entry '" + header.substring(rule) + "'");
+            }
+            rules = parseRules(header.substring(value + 1));
+            header = header.substring(0, rule);
+        }
+
+        int width = -1;
+        int height = -1;
+        for (String pair : header.split(",")) {
+            if (pair.trim().isEmpty()) {
+                continue;
+            }
+            String[] keyValue = pair.split("=", 2);
+            if (keyValue.length != 2) {
+                throw error("Unexpected header entry '" + pair.trim() + "'");
+            }
+            String key = keyValue[0].trim();
+            String value = keyValue[1].trim();
+            if (key.equals("x")) {
+                width = parseSize(value);
+            } else if (key.equals("y")) {
+                height = parseSize(value);
+            }
+        }
+        if (width < 0 || height < 0) {
+            throw error("Header should specify x and y");
+        }
+
+        Grid grid = Pattern.createGrid(Math.max(width, this.minWidth), Math.max(height, this.minHeight), rules);
+        decode(grid, (grid.getHeight() - height) / 2, (grid.getWidth() - width) / 2, width, height);
+        return new Pattern(new Map(grid), rules);
+    }
+
+    private void decode(Grid grid, int top, int left, int width, int height) throws IOException {
+        int row = 0;
+        int column = 0;
+        int count = 0;
+        int character;
+        this.line++;
+        while ((character = this.reader.read()) != -1 && character != '!') {
+            if (character >= '0' && character <= '9') {
+                count = count * 10 + character - '0';
+                if (count > Math.max(width, height)) {
+                    throw error("Run of " + count + " is longer than the pattern");
+                }
+                continue;
+            } else if (character == '\n') {
+                this.line++;
+                continue;
+            } else if (Character.isWhitespace(character)) {
+                continue;
+            }
+
+            int run = count == 0 ? 1 : count;
+            count = 0;
+            if (character == '$') {
+                row += run;
+                column = 0;
+                continue;
+            }
+
+            int state = getState(character, character >= 'p' && character <= 'y' ? this.reader.read() : -1);
+            if (row >= height || column + run > width) {
+                throw error("Cells are out of the declared size " + width + "x" + height);
+            }
+            if (state != 0) {
+                for (int i = 0; i < run; i++) {
+                    grid.setState(top + row, left + column + i, state);
+                }
+            }
+            column += run;
+        }
+    }
+
+    /**
+     * @param letter letter following a prefix of states after X
+     */
+    private int getState(int character, int letter) throws IOException {
+        if (character == 'b' || character == '.') {
+            return 0;
+        } else if (character == 'o') {
+            return 1;
+        } else if (character >= 'A' && character <= 'X') {
+            return character - 'A' + 1;
+        } else if (letter >= 'A' && letter <= 'X') {
+            int state = LETTERS + (character - 'p') * LETTERS + letter - 'A' + 1;
+            if (state < Rules.MAX_STATES) {
+                return state;
+            }
+        }
+        throw error("Unexpected '" + (char) character + "'");
+    }
+
+    /**
+     * Parse a rule ignoring the bounded grid suffix of Golly, like :T100,100
+     */
+    private Rules parseRules(String rule) throws IOException {
+        try {
+            return Rules.parse(rule.split(":")[0].trim());
+        } catch (IllegalArgumentException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    private int parseSize(String value) throws IOException {
+        try {
+            int size = Integer.parseInt(value);
+            if (size >= 0) {
+                return size;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw error("Unexpected size '" + value + "'");
+    }
+
+    private String readLine() throws IOException {
+        String line = this.reader.readLine();
+        this.line++;
+        return line != null ? line.trim() : null;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at line " + this.line);
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.ppetrov.game.io;
+
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.Rules;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * RleWriter encodes a field in the run length encoded format read by {@link RleReader}.
+ * Rows are encoded one by one, dead cells at the end of a row and empty rows
+ * are merged into runs, and lines are wrapped at {@link #LINE_LENGTH} characters.
+ */
+public class RleWriter {
+
+    public static final int LINE_LENGTH = 70;
+
+    private final Writer writer;
+
+    private int lineLength;
+
+    public RleWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * @param rules rules written to the header, Generations rules make states written as letters
+     */
+    public void write(Map map, Rules rules) throws IOException {
+        boolean letters = rules.getStates() > 2;
+        this.writer.write("x = " + map.getWidth() + ", y = " + map.getHeight() + ", rule = " + rules + "\n");
+        this.lineLength = 0;
+
+        int lastRow = 0;
+        for (int row = 0; row < map.getHeight(); row++) {
+            int end = map.getWidth();
+            while (end > 0 && map.getState(row, end - 1) == 0) {
+                end--;
+            }
+            if (end == 0) {
+                continue;
+            }
+            if (row > lastRow) {
+                writeRun(row - lastRow, "$");
+            }
+            lastRow = row;
+
+            int column = 0;
+            while (column < end) {
+                int state = map.getState(row, column);
+                int start = column;
+                while (column < end && map.getState(row, column) == state) {
+                    column++;
+                }
+                writeRun(column - start, getCells(state, letters));
+            }
+        }
+        writeRun(1, "!");
+        this.writer.write('\n');
+        this.writer.flush();
+    }
+
+    private void writeRun(int run, String cells) throws IOException {
+        String token = run == 1 ? cells : run + cells;
+        if (this.lineLength + token.length() > LINE_LENGTH) {
+            this.writer.write('\n');
+            this.lineLength = 0;
+        }
+        this.writer.write(token);
+        this.lineLength += token.length();
+    }
+
+    /**
+     * States of Generations rules are written as A to X, and as pA to yO after X
+     */
+    private static String getCells(int state, boolean letters) {
+        if (!letters) {
+            return state == 1 ? "o" : "b";
+        } else if (state == 0) {
+            return ".";
+        } else if (state <= RleReader.LETTERS) {
+            return String.valueOf((char) ('A' + state - 1));
+        }
+        int extended = state - RleReader.LETTERS - 1;
+        return String.valueOf((char) ('p' + extended / RleReader.LETTERS))
+                + (char) ('A' + extended % RleReader.LETTERS);
+    }
+
+}
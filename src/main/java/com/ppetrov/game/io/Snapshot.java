@@ -0,0 +1,33 @@
+package com.ppetrov.game.io;
+
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.Rules;
+
+/**
+ * Snapshot is a running field saved together with its rules and the number of its generation
+ */
+public class Snapshot {
+
+    private final Map map;
+    private final Rules rules;
+    private final long generation;
+
+    public Snapshot(Map map, Rules rules, long generation) {
+        this.map = map;
+        this.rules = rules;
+        this.generation = generation;
+    }
+
+    public Map getMap() {
+        return this.map;
+    }
+
+    public Rules getRules() {
+        return this.rules;
+    }
+
+    public long getGeneration() {
+        return this.generation;
+    }
+
+}
@@ -0,0 +1,310 @@
+package com.ppetrov.game.io;
+
+import com.ppetrov.game.model.BitGrid;
+import com.ppetrov.game.model.ByteGrid;
+import com.ppetrov.game.model.Grid;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.OffHeapGrid;
+import com.ppetrov.game.model.Rules;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary snapshots of a field, written and read through memory-mapped files,
+ * so that saving a bit-packed or byte grid is a bulk copy of its arrays.
+ * <p>
+ * All numbers are little-endian. A snapshot starts with a header:
+ * <pre>
+ * int    magic, "GOLS"
+ * short  version, {@link #VERSION}
+ * short  flags, {@link #STATES} and {@link #AGES}
+ * int    width
+ * int    height
+ * long   generation
+ * short  length of the rule in bytes
+ * byte[] rule in UTF-8, padded with zeros to a multiple of 8 bytes from the start of the file
+ * </pre>
+ * followed by planes of cells, all of them row by row:
+ * liveness packed 64 cells per long word with every row starting with a new word,
+ * then states of Generations rules and ages of cells, a byte per cell, if their flags are set.
+ */
+public final class SnapshotFiles {
+
+    public static final String EXTENSION = ".gols";
+
+    public static final int MAGIC = 'G' | 'O' << 8 | 'L' << 16 | 'S' << 24;
+    public static final short VERSION = 1;
+
+    public static final short STATES = 1;
+    public static final short AGES = 1 << 1;
+
+    private static final int HEADER_SIZE = 26;
+    private static final long MAX_CHUNK_SIZE = 1 << 30;
+
+    private SnapshotFiles() {
+    }
+
+    /**
+     * Write the snapshot into a temporary file next to the path, force it to the disk and move it over the path,
+     * so that a crash while saving leaves the previous snapshot untouched.
+     * The temporary file is deleted if writing fails.
+     * Bit-packed grids are saved without ages, other grids are saved with ages saturated at 255.
+     */
+    public static void write(Path path, Snapshot snapshot) throws IOException {
+        Map map = snapshot.getMap();
+        Grid grid = map.getGrid();
+        int width = map.getWidth();
+        int height = map.getHeight();
+        byte[] rule = snapshot.getRules().toString().getBytes(StandardCharsets.UTF_8);
+        boolean ages = !(grid instanceof BitGrid || grid instanceof OffHeapGrid);
+        short flags = (short) ((snapshot.getRules().getStates() > 2 ? STATES : 0) | (ages ? AGES : 0));
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long position = getPlanesOffset(rule.length);
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, position);
+            header.putInt(MAGIC).putShort(VERSION).putShort(flags)
+                    .putInt(width).putInt(height).putLong(snapshot.getGeneration())
+                    .putShort((short) rule.length).put(rule);
+            header.force();
+
+            long liveRowSize = (long) getWordsPerRow(width) * Long.BYTES;
+            position = mapRows(channel, FileChannel.MapMode.READ_WRITE, position, height, liveRowSize,
+                    (buffer, fromRow, toRow) -> writeLiveness(grid, buffer, fromRow, toRow));
+            if ((flags & STATES) != 0) {
+                position = mapRows(channel, FileChannel.MapMode.READ_WRITE, position, height, width,
+                        (buffer, fromRow, toRow) -> writeStates(grid, buffer, fromRow, toRow));
+            }
+            if ((flags & AGES) != 0) {
+                mapRows(channel, FileChannel.MapMode.READ_WRITE, position, height, width,
+                        (buffer, fromRow, toRow) -> writeAges(grid, buffer, fromRow, toRow));
+            }
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Read a snapshot into a bit-packed grid, or into a byte grid if it has states or ages
+     *
+     * @throws IOException if the file can't be read or it is not a valid snapshot
+     */
+    public static Snapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, path);
+            int width = header.width;
+            int height = header.height;
+            boolean bytes = (header.flags & (STATES | AGES)) != 0;
+            BitGrid liveness = new BitGrid(width, height);
+            ByteGrid grid = bytes ? new ByteGrid(width, height) : null;
+            long position = mapRows(channel, FileChannel.MapMode.READ_ONLY, header.planesOffset, height,
+                    header.liveRowSize, (buffer, fromRow, toRow) -> liveness.readRows(buffer.asLongBuffer(), fromRow, toRow));
+            if ((header.flags & STATES) != 0) {
+                position = mapRows(channel, FileChannel.MapMode.READ_ONLY, position, height, width,
+                        (buffer, fromRow, toRow) -> grid.readStates(buffer, fromRow, toRow));
+            } else if (bytes) {
+                copyLiveness(liveness, grid);
+            }
+            if ((header.flags & AGES) != 0) {
+                mapRows(channel, FileChannel.MapMode.READ_ONLY, position, height, width,
+                        (buffer, fromRow, toRow) -> grid.readAges(buffer, fromRow, toRow));
+            }
+            return new Snapshot(new Map(bytes ? grid : liveness), header.rules, header.generation);
+        }
+    }
+
+    /**
+     * Read a snapshot into an off-heap grid, so that fields larger than the heap can be continued.
+     * Rows are copied from the mapped snapshot into the grid without passing through the heap, ages are dropped.
+     *
+     * @param gridFile file to map the grid to, it is overwritten, or null to keep the grid in direct memory
+     * @throws IOException if the file can't be read, it is not a valid snapshot or it has states of Generations rules
+     */
+    public static Snapshot readOffHeap(Path path, Path gridFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, path);
+            if ((header.flags & STATES) != 0) {
+                throw new IOException("Snapshot " + path + " has states of Generations rules, an off-heap grid can't keep them");
+            }
+            OffHeapGrid grid = gridFile != null
+                    ? OffHeapGrid.map(gridFile, header.width, header.height)
+                    : new OffHeapGrid(header.width, header.height);
+            mapRows(channel, FileChannel.MapMode.READ_ONLY, header.planesOffset, header.height, header.liveRowSize,
+                    (buffer, fromRow, toRow) -> grid.readRows(buffer.asLongBuffer(), fromRow, toRow));
+            return new Snapshot(new Map(grid), header.rules, header.generation);
+        }
+    }
+
+    private static Header readHeader(FileChannel channel, Path path) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            throw new IOException("File is too short to be a snapshot: " + path);
+        }
+        ByteBuffer buffer = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("File is not a snapshot: " + path);
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version + " of snapshot " + path);
+        }
+        Header header = new Header();
+        header.flags = buffer.getShort();
+        header.width = buffer.getInt();
+        header.height = buffer.getInt();
+        header.generation = buffer.getLong();
+        int ruleLength = buffer.getShort() & 0xFFFF;
+        if (header.width < 1 || header.height < 1 || header.generation < 0) {
+            throw new IOException("Snapshot " + path + " is corrupted");
+        }
+
+        header.liveRowSize = (long) getWordsPerRow(header.width) * Long.BYTES;
+        header.planesOffset = getPlanesOffset(ruleLength);
+        long size = header.planesOffset + header.liveRowSize * header.height
+                + ((header.flags & STATES) != 0 ? (long) header.width * header.height : 0)
+                + ((header.flags & AGES) != 0 ? (long) header.width * header.height : 0);
+        if (channel.size() != size) {
+            throw new IOException("Snapshot " + path + " should take " + size + " bytes, but it takes " + channel.size());
+        }
+
+        byte[] rule = new byte[ruleLength];
+        map(channel, FileChannel.MapMode.READ_ONLY, HEADER_SIZE, ruleLength).get(rule);
+        try {
+            header.rules = Rules.parse(new String(rule, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Snapshot " + path + " has a wrong rule: " + e.getMessage(), e);
+        }
+        return header;
+    }
+
+    /**
+     * @return whether the file is a snapshot judging by its extension
+     */
+    public static boolean isSnapshot(Path path) {
+        return path.getFileName().toString().toLowerCase().endsWith(EXTENSION);
+    }
+
+    private static void writeLiveness(Grid grid, ByteBuffer buffer, int fromRow, int toRow) {
+        if (grid instanceof BitGrid) {
+            ((BitGrid) grid).writeRows(buffer.asLongBuffer(), fromRow, toRow);
+            return;
+        } else if (grid instanceof OffHeapGrid) {
+            ((OffHeapGrid) grid).writeRows(buffer.asLongBuffer(), fromRow, toRow);
+            return;
+        }
+        for (int row = fromRow; row < toRow; row++) {
+            long word = 0;
+            for (int column = 0; column < grid.getWidth(); column++) {
+                word |= grid.isAlive(row, column) ? 1L << (column % Long.SIZE) : 0;
+                if (column % Long.SIZE == Long.SIZE - 1 || column == grid.getWidth() - 1) {
+                    buffer.putLong(word);
+                    word = 0;
+                }
+            }
+        }
+    }
+
+    private static void writeStates(Grid grid, ByteBuffer buffer, int fromRow, int toRow) {
+        if (grid instanceof ByteGrid) {
+            ((ByteGrid) grid).writeStates(buffer, fromRow, toRow);
+            return;
+        }
+        for (int row = fromRow; row < toRow; row++) {
+            for (int column = 0; column < grid.getWidth(); column++) {
+                buffer.put((byte) grid.getState(row, column));
+            }
+        }
+    }
+
+    private static void writeAges(Grid grid, ByteBuffer buffer, int fromRow, int toRow) {
+        if (grid instanceof ByteGrid) {
+            ((ByteGrid) grid).writeAges(buffer, fromRow, toRow);
+            return;
+        }
+        for (int row = fromRow; row < toRow; row++) {
+            for (int column = 0; column < grid.getWidth(); column++) {
+                buffer.put((byte) Math.min(grid.getAge(row, column), ByteGrid.MAX_AGE));
+            }
+        }
+    }
+
+    private static void copyLiveness(BitGrid source, ByteGrid target) {
+        for (int row = 0; row < source.getHeight(); row++) {
+            for (int column = 0; column < source.getWidth(); column++) {
+                if (source.isAlive(row, column)) {
+                    target.setState(row, column, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Map a plane of rows in chunks, a mapped buffer can't be bigger than 2 GB.
+     * Written chunks are forced to the disk before the next one is mapped.
+     *
+     * @return position after the plane
+     */
+    private static long mapRows(FileChannel channel, FileChannel.MapMode mode, long position,
+                                int height, long rowSize, RowsAccess access) throws IOException {
+        int rowsPerChunk = (int) Math.max(1, Math.min(height, MAX_CHUNK_SIZE / rowSize));
+        for (int fromRow = 0; fromRow < height; fromRow += rowsPerChunk) {
+            int toRow = Math.min(fromRow + rowsPerChunk, height);
+            MappedByteBuffer buffer = map(channel, mode, position + fromRow * rowSize, (toRow - fromRow) * rowSize);
+            access.access(buffer, fromRow, toRow);
+            if (mode == FileChannel.MapMode.READ_WRITE) {
+                buffer.force();
+            }
+        }
+        return position + height * rowSize;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long size)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(mode, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static long getPlanesOffset(int ruleLength) {
+        return (HEADER_SIZE + ruleLength + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+    }
+
+    private static int getWordsPerRow(int width) {
+        return (width + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    private static class Header {
+        short flags;
+        int width;
+        int height;
+        long generation;
+        Rules rules;
+        long planesOffset;
+        long liveRowSize;
+    }
+
+    private interface RowsAccess {
+
+        void access(ByteBuffer buffer, int fromRow, int toRow);
+
+    }
+
+}
@@ -0,0 +1,259 @@
+package com.ppetrov.game.model;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * BitGrid keeps only liveness of the cells, packed 64 cells per long word.
+ * Every row starts with a new word, so a 4096x4096 field takes 2 MB.
+ * Ages are not tracked, so {@link Rules#setMaxAge(int)} has no effect on it.
+ */
+public class BitGrid implements Grid {
+
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[] words;
+
+    public BitGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = BitKernel.getWordsPerRow(width);
+        this.words = new long[this.wordsPerRow * height];
+    }
+
+    private BitGrid(BitGrid source) {
+        this.width = source.width;
+        this.height = source.height;
+        this.wordsPerRow = source.wordsPerRow;
+        this.words = Arrays.copyOf(source.words, source.words.length);
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public Cell getCell(int row, int column) {
+        return Cell.of(isAlive(row, column), false, 0);
+    }
+
+    @Override
+    public void setCell(int row, int column, Cell cell) {
+        setAlive(row, column, cell.isAlive());
+    }
+
+    @Override
+    public boolean isAlive(int row, int column) {
+        return (this.words[getWordIndex(row, column)] & getBit(column)) != 0;
+    }
+
+    @Override
+    public void setAlive(int row, int column, boolean alive) {
+        if (alive) {
+            this.words[getWordIndex(row, column)] |= getBit(column);
+        } else {
+            this.words[getWordIndex(row, column)] &= ~getBit(column);
+        }
+    }
+
+    @Override
+    public int getAge(int row, int column) {
+        return 0;
+    }
+
+    @Override
+    public void getStates(int row, int column, byte[] states, int offset, int length) {
+        for (int i = 0; i < length; ) {
+            int index = getWordIndex(row, column + i);
+            int bit = (column + i) % Long.SIZE;
+            int count = Math.min(length - i, Long.SIZE - bit);
+            long word = this.words[index] >>> bit;
+            for (int j = 0; j < count; j++) {
+                states[offset + i + j] = (byte) ((word >>> j) & 1);
+            }
+            i += count;
+        }
+    }
+
+    /**
+     * Set liveness of the cells of a row a word at a time, dying states are dead
+     */
+    @Override
+    public void setStates(int row, int column, byte[] states, int offset, int length) {
+        for (int i = 0; i < length; ) {
+            int index = getWordIndex(row, column + i);
+            int bit = (column + i) % Long.SIZE;
+            int count = Math.min(length - i, Long.SIZE - bit);
+            long bits = 0;
+            for (int j = 0; j < count; j++) {
+                bits |= (states[offset + i + j] == 1 ? 1L : 0L) << j;
+            }
+            long mask = (count == Long.SIZE ? -1L : (1L << count) - 1) << bit;
+            this.words[index] = (this.words[index] & ~mask) | (bits << bit);
+            i += count;
+        }
+    }
+
+    /**
+     * Count alive cells a word at a time
+     */
+    @Override
+    public void countAlive(int row, int[] columns, int[] counts, int length) {
+        int offset = getRowOffset(row);
+        for (int i = 0; i < length; i++) {
+            int from = columns[i];
+            int to = columns[i + 1];
+            if (from == to) {
+                continue;
+            }
+            int first = offset + from / Long.SIZE;
+            int last = offset + (to - 1) / Long.SIZE;
+            long firstMask = -1L << from;
+            long lastMask = -1L >>> (Long.SIZE - 1 - (to - 1) % Long.SIZE);
+            if (first == last) {
+                counts[i] += Long.bitCount(this.words[first] & firstMask & lastMask);
+                continue;
+            }
+            int count = Long.bitCount(this.words[first] & firstMask) + Long.bitCount(this.words[last] & lastMask);
+            for (int index = first + 1; index < last; index++) {
+                count += Long.bitCount(this.words[index]);
+            }
+            counts[i] += count;
+        }
+    }
+
+    @Override
+    public BitGrid copy() {
+        return new BitGrid(this);
+    }
+
+    @Override
+    public void copyTo(Grid target) {
+        if (target instanceof BitGrid && target.getWidth() == this.width && target.getHeight() == this.height) {
+            System.arraycopy(this.words, 0, ((BitGrid) target).words, 0, this.words.length);
+        } else {
+            Grid.super.copyTo(target);
+        }
+    }
+
+    @Override
+    public int getPopulation() {
+        return Arrays.stream(this.words).mapToInt(Long::bitCount).sum();
+    }
+
+    /**
+     * Calculate next generation of this grid for outer totalistic rules
+     *
+     * @param born     bit mask of neighbour counts giving birth to a cell
+     * @param survives bit mask of neighbour counts keeping a cell alive
+     * @return new grid with the next generation
+     */
+    public BitGrid nextState(int born, int survives) {
+        return nextState(born, survives, new BitGrid(this.width, this.height));
+    }
+
+    /**
+     * Calculate next generation of this grid into another grid of the same size
+     *
+     * @param born     bit mask of neighbour counts giving birth to a cell
+     * @param survives bit mask of neighbour counts keeping a cell alive
+     * @param target   grid to overwrite with the next generation
+     * @return target grid
+     */
+    public BitGrid nextState(int born, int survives, BitGrid target) {
+        nextState(born, survives, target, 0, this.height, false, null);
+        return target;
+    }
+
+    /**
+     * @param hashing whether the change of the state hash should be calculated
+     * @param counter counter of births and deaths, or null
+     * @return XOR of Zobrist keys of cells which changed their liveness, 0 if not hashing
+     */
+    long nextState(int born, int survives, BitGrid target, int fromRow, int toRow,
+                   boolean hashing, ChangeCounter counter) {
+        long delta = 0;
+        long births = 0;
+        long deaths = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            int northOffset = getRowOffset(row == 0 ? this.height - 1 : row - 1);
+            int centreOffset = getRowOffset(row);
+            int southOffset = getRowOffset(row == this.height - 1 ? 0 : row + 1);
+            RowKernel.stepRow(this.words, northOffset, centreOffset, southOffset,
+                    target.words, this.width, born, survives);
+            if (!hashing && counter == null) {
+                continue;
+            }
+            for (int word = 0; word < this.wordsPerRow; word++) {
+                long current = this.words[centreOffset + word];
+                long next = target.words[centreOffset + word];
+                if (hashing) {
+                    delta ^= getWordDelta(row, word, next ^ current);
+                }
+                if (counter != null) {
+                    births += Long.bitCount(next & ~current);
+                    deaths += Long.bitCount(current & ~next);
+                }
+            }
+        }
+        if (counter != null) {
+            counter.addChanges(births, deaths);
+        }
+        return delta;
+    }
+
+    /**
+     * @return XOR of Zobrist keys of the changed cells of a word
+     */
+    long getWordDelta(int row, int word, long changed) {
+        return changed == 0 ? 0 : Zobrist.getWordDelta(changed, (long) row * this.width + (long) word * Long.SIZE);
+    }
+
+    /**
+     * Put words of the rows from fromRow inclusive to toRow exclusive into the buffer,
+     * every row takes {@link #getWordsPerRow()} words and bits after its last column are 0
+     */
+    public void writeRows(LongBuffer buffer, int fromRow, int toRow) {
+        buffer.put(this.words, getRowOffset(fromRow), getRowOffset(toRow) - getRowOffset(fromRow));
+    }
+
+    /**
+     * Take words of the rows from fromRow inclusive to toRow exclusive from the buffer,
+     * bits after the last column of a row are ignored
+     */
+    public void readRows(LongBuffer buffer, int fromRow, int toRow) {
+        buffer.get(this.words, getRowOffset(fromRow), getRowOffset(toRow) - getRowOffset(fromRow));
+        long lastWordMask = BitKernel.getLastWordMask(this.width);
+        for (int row = fromRow; row < toRow; row++) {
+            this.words[getRowOffset(row) + this.wordsPerRow - 1] &= lastWordMask;
+        }
+    }
+
+    public int getWordsPerRow() {
+        return this.wordsPerRow;
+    }
+
+    long[] getWords() {
+        return this.words;
+    }
+
+    int getRowOffset(int row) {
+        return row * this.wordsPerRow;
+    }
+
+    private int getWordIndex(int row, int column) {
+        return getRowOffset(row) + column / Long.SIZE;
+    }
+
+    private static long getBit(int column) {
+        return 1L << (column % Long.SIZE);
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.ppetrov.game.model;
+
+/**
+ * Bit-parallel step of rows packed 64 cells per word.
+ * Neighbours of all 64 cells of a word are summed at once with full adders
+ * into four bit planes, which are matched against born and survives counts.
+ * Rows wrap around horizontally, unused bits of the last word must be zero.
+ */
+final class BitKernel {
+
+    private BitKernel() {
+    }
+
+    static int getWordsPerRow(int width) {
+        return (width + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    static long getLastWordMask(int width) {
+        int usedBits = width % Long.SIZE;
+        return usedBits == 0 ? -1L : (1L << usedBits) - 1;
+    }
+
+    /**
+     * Calculate next state of one word of a row
+     *
+     * @param north    words of the row above, starting at northOffset
+     * @param centre   words of the row itself, starting at centreOffset
+     * @param south    words of the row below, starting at southOffset
+     * @param word     index of the word inside of the row
+     * @param width    amount of cells in the row
+     * @param born     bit mask of neighbour counts giving birth to a cell
+     * @param survives bit mask of neighbour counts keeping a cell alive
+     * @return next state of the word
+     */
+    static long stepWord(long[] north, int northOffset,
+                         long[] centre, int centreOffset,
+                         long[] south, int southOffset,
+                         int word, int width, int born, int survives) {
+        int wordsPerRow = getWordsPerRow(width);
+
+        long nw = west(north, northOffset, word, wordsPerRow, width);
+        long n = north[northOffset + word];
+        long ne = east(north, northOffset, word, wordsPerRow, width);
+        long w = west(centre, centreOffset, word, wordsPerRow, width);
+        long c = centre[centreOffset + word];
+        long e = east(centre, centreOffset, word, wordsPerRow, width);
+        long sw = west(south, southOffset, word, wordsPerRow, width);
+        long s = south[southOffset + word];
+        long se = east(south, southOffset, word, wordsPerRow, width);
+
+        long sum1 = nw ^ n ^ ne;
+        long carry1 = (nw & n) | (ne & (nw ^ n));
+        long sum2 = w ^ e ^ sw;
+        long carry2 = (w & e) | (sw & (w ^ e));
+        long sum3 = s ^ se;
+        long carry3 = s & se;
+
+        long ones = sum1 ^ sum2 ^ sum3;
+        long carryOnes = (sum1 & sum2) | (sum3 & (sum1 ^ sum2));
+        long sumTwos = carry1 ^ carry2 ^ carry3;
+        long carryTwos = (carry1 & carry2) | (carry3 & (carry1 ^ carry2));
+        long twos = sumTwos ^ carryOnes;
+        long carryFours = sumTwos & carryOnes;
+        long fours = carryTwos ^ carryFours;
+        long eights = carryTwos & carryFours;
+
+        long next = applyRule(c, ones, twos, fours, eights, born, survives);
+        return word == wordsPerRow - 1 ? next & getLastWordMask(width) : next;
+    }
+
+    static long applyRule(long alive, long ones, long twos, long fours, long eights,
+                          int born, int survives) {
+        long next = 0;
+        for (int count = 0; count <= 8; count++) {
+            int bit = 1 << count;
+            if (((born | survives) & bit) != 0) {
+                long matches = ((count & 1) != 0 ? ones : ~ones)
+                        & ((count & 2) != 0 ? twos : ~twos)
+                        & ((count & 4) != 0 ? fours : ~fours)
+                        & ((count & 8) != 0 ? eights : ~eights);
+                if ((born & bit) != 0) {
+                    next |= matches & ~alive;
+                }
+                if ((survives & bit) != 0) {
+                    next |= matches & alive;
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @return word where every cell is replaced with its western neighbour
+     */
+    private static long west(long[] words, int offset, int word, int wordsPerRow, int width) {
+        long carry = word > 0
+                ? words[offset + word - 1] >>> 63
+                : (words[offset + wordsPerRow - 1] >>> ((width - 1) % Long.SIZE)) & 1L;
+        return (words[offset + word] << 1) | carry;
+    }
+
+    /**
+     * @return word where every cell is replaced with its eastern neighbour
+     */
+    private static long east(long[] words, int offset, int word, int wordsPerRow, int width) {
+        long carry = word < wordsPerRow - 1
+                ? words[offset + word + 1] << 63
+                : (words[offset] & 1L) << ((width - 1) % Long.SIZE);
+        return (words[offset + word] >>> 1) | carry;
+    }
+
+}
@@ -0,0 +1,257 @@
+package com.ppetrov.game.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * ByteGrid keeps a byte of state and a byte of age for every cell.
+ * State 0 is dead, 1 is alive and the following ones are dying states of Generations rules.
+ * Ages of alive cells saturate at {@link #MAX_AGE}, immortality of cells is not kept.
+ */
+public class ByteGrid implements Grid {
+
+    public static final int MAX_AGE = 255;
+
+    private final int width;
+    private final int height;
+    private final byte[] states;
+    private final byte[] ages;
+
+    /**
+     * @throws IllegalArgumentException if the field has more than {@link Integer#MAX_VALUE} cells
+     */
+    public ByteGrid(int width, int height) {
+        long cells = (long) width * height;
+        if (cells > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Field " + width + "x" + height + " has more than "
+                    + Integer.MAX_VALUE + " cells, they don't fit into a byte grid");
+        }
+        this.width = width;
+        this.height = height;
+        this.states = new byte[(int) cells];
+        this.ages = new byte[(int) cells];
+    }
+
+    /**
+     * Create a grid with the same alive cells and ages as the source one
+     */
+    public ByteGrid(Grid source) {
+        this(source.getWidth(), source.getHeight());
+        for (int row = 0; row < this.height; row++) {
+            for (int column = 0; column < this.width; column++) {
+                setCell(row, column, source.getCell(row, column));
+            }
+        }
+    }
+
+    private ByteGrid(ByteGrid source) {
+        this.width = source.width;
+        this.height = source.height;
+        this.states = Arrays.copyOf(source.states, source.states.length);
+        this.ages = Arrays.copyOf(source.ages, source.ages.length);
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public Cell getCell(int row, int column) {
+        int index = getIndex(row, column);
+        return Cell.of(this.states[index] == 1, false, this.ages[index] & 0xFF);
+    }
+
+    @Override
+    public void setCell(int row, int column, Cell cell) {
+        int index = getIndex(row, column);
+        this.states[index] = (byte) (cell.isAlive() ? 1 : 0);
+        this.ages[index] = (byte) Math.min(cell.getAge(), MAX_AGE);
+    }
+
+    @Override
+    public boolean isAlive(int row, int column) {
+        return this.states[getIndex(row, column)] == 1;
+    }
+
+    @Override
+    public void setAlive(int row, int column, boolean alive) {
+        int index = getIndex(row, column);
+        if ((this.states[index] == 1) != alive) {
+            this.states[index] = (byte) (alive ? 1 : 0);
+            this.ages[index] = 0;
+        }
+    }
+
+    @Override
+    public int getAge(int row, int column) {
+        return this.ages[getIndex(row, column)] & 0xFF;
+    }
+
+    @Override
+    public int getState(int row, int column) {
+        return this.states[getIndex(row, column)] & 0xFF;
+    }
+
+    @Override
+    public void setState(int row, int column, int state) {
+        int index = getIndex(row, column);
+        if ((this.states[index] & 0xFF) != state) {
+            this.states[index] = (byte) state;
+            this.ages[index] = 0;
+        }
+    }
+
+    @Override
+    public void getStates(int row, int column, byte[] states, int offset, int length) {
+        System.arraycopy(this.states, getIndex(row, column), states, offset, length);
+    }
+
+    @Override
+    public void setStates(int row, int column, byte[] states, int offset, int length) {
+        int index = getIndex(row, column);
+        for (int i = 0; i < length; i++, index++) {
+            if (this.states[index] != states[offset + i]) {
+                this.states[index] = states[offset + i];
+                this.ages[index] = 0;
+            }
+        }
+    }
+
+    @Override
+    public void countAlive(int row, int[] columns, int[] counts, int length) {
+        int offset = getIndex(row, 0);
+        for (int i = 0; i < length; i++) {
+            int count = 0;
+            for (int index = offset + columns[i]; index < offset + columns[i + 1]; index++) {
+                count += this.states[index] == 1 ? 1 : 0;
+            }
+            counts[i] += count;
+        }
+    }
+
+    @Override
+    public ByteGrid copy() {
+        return new ByteGrid(this);
+    }
+
+    @Override
+    public void copyTo(Grid target) {
+        if (target instanceof ByteGrid && target.getWidth() == this.width && target.getHeight() == this.height) {
+            System.arraycopy(this.states, 0, ((ByteGrid) target).states, 0, this.states.length);
+            System.arraycopy(this.ages, 0, ((ByteGrid) target).ages, 0, this.ages.length);
+        } else {
+            Grid.super.copyTo(target);
+        }
+    }
+
+    /**
+     * Put states of the rows from fromRow inclusive to toRow exclusive into the buffer, a byte per cell
+     */
+    public void writeStates(ByteBuffer buffer, int fromRow, int toRow) {
+        buffer.put(this.states, getIndex(fromRow, 0), getIndex(toRow, 0) - getIndex(fromRow, 0));
+    }
+
+    public void readStates(ByteBuffer buffer, int fromRow, int toRow) {
+        buffer.get(this.states, getIndex(fromRow, 0), getIndex(toRow, 0) - getIndex(fromRow, 0));
+    }
+
+    /**
+     * Put ages of the rows from fromRow inclusive to toRow exclusive into the buffer, a byte per cell
+     */
+    public void writeAges(ByteBuffer buffer, int fromRow, int toRow) {
+        buffer.put(this.ages, getIndex(fromRow, 0), getIndex(toRow, 0) - getIndex(fromRow, 0));
+    }
+
+    public void readAges(ByteBuffer buffer, int fromRow, int toRow) {
+        buffer.get(this.ages, getIndex(fromRow, 0), getIndex(toRow, 0) - getIndex(fromRow, 0));
+    }
+
+    /**
+     * Calculate next state of the rows from fromRow inclusive to toRow exclusive into the target grid
+     *
+     * @param hashing whether the change of the state hash should be calculated
+     * @param counter counter of births and deaths, or null
+     * @return XOR of old and new Zobrist keys of cells which changed their states, 0 if not hashing
+     */
+    long nextState(Rules rules, ByteGrid target, int fromRow, int toRow, boolean hashing, ChangeCounter counter) {
+        byte[] transitions = rules.getTransitions();
+        int dying = transitions[2];
+        int maxAge = rules.getMaxAge();
+        long delta = 0;
+        long births = 0;
+        long deaths = 0;
+
+        for (int row = fromRow; row < toRow; row++) {
+            int north = getIndex(row == 0 ? this.height - 1 : row - 1, 0);
+            int centre = getIndex(row, 0);
+            int south = getIndex(row == this.height - 1 ? 0 : row + 1, 0);
+
+            int neighbourhood = Rules.slide(0, getColumnBits(north, centre, south, this.width - 1));
+            neighbourhood = Rules.slide(neighbourhood, getColumnBits(north, centre, south, 0));
+            for (int column = 0; column < this.width; column++) {
+                int east = column == this.width - 1 ? 0 : column + 1;
+                neighbourhood = Rules.slide(neighbourhood, getColumnBits(north, centre, south, east));
+
+                int index = centre + column;
+                int state = this.states[index] & 0xFF;
+                int age = this.ages[index] & 0xFF;
+                int next = transitions[(state << 1) | (rules.isAliveNext(neighbourhood) ? 1 : 0)];
+
+                boolean survived = state == 1 & next == 1;
+                boolean tooOld = survived & age >= maxAge;
+                next = tooOld ? dying : next;
+                target.states[index] = (byte) next;
+                target.ages[index] = (byte) (survived & !tooOld ? Math.min(age + 1, MAX_AGE) : 0);
+                if (hashing && state != next) {
+                    delta ^= Zobrist.getKey(index, state) ^ Zobrist.getKey(index, next);
+                }
+                births += state != 1 & next == 1 ? 1 : 0;
+                deaths += state == 1 & next != 1 ? 1 : 0;
+            }
+        }
+        if (counter != null) {
+            counter.addChanges(births, deaths);
+        }
+        return delta;
+    }
+
+    /**
+     * Set next states and ages of a row into the target grid the way {@link #nextState} does
+     *
+     * @param alive 1 for every cell which is alive in the next generation, not counting its age
+     */
+    void setNextRow(Rules rules, ByteGrid target, int row, byte[] alive) {
+        byte[] transitions = rules.getTransitions();
+        int dying = transitions[2];
+        int maxAge = rules.getMaxAge();
+        int centre = getIndex(row, 0);
+        for (int column = 0; column < this.width; column++) {
+            int index = centre + column;
+            int state = this.states[index] & 0xFF;
+            int age = this.ages[index] & 0xFF;
+            int next = transitions[(state << 1) | alive[column]];
+
+            boolean survived = state == 1 & next == 1;
+            boolean tooOld = survived & age >= maxAge;
+            target.states[index] = (byte) (tooOld ? dying : next);
+            target.ages[index] = (byte) (survived & !tooOld ? Math.min(age + 1, MAX_AGE) : 0);
+        }
+    }
+
+    private int getColumnBits(int north, int centre, int south, int column) {
+        return (this.states[north + column] == 1 ? 1 : 0)
+                | (this.states[centre + column] == 1 ? 1 << 3 : 0)
+                | (this.states[south + column] == 1 ? 1 << 6 : 0);
+    }
+
+    private int getIndex(int row, int column) {
+        return row * this.width + column;
+    }
+
+}
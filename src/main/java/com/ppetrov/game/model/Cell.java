@@ -2,6 +2,18 @@ package com.ppetrov.game.model;
 
 public class Cell {
 
+    private static final int CACHED_AGES = 256;
+    private static final Cell[] CACHE = new Cell[CACHED_AGES * 4];
+
+    static {
+        for (int age = 0; age < CACHED_AGES; age++) {
+            CACHE[getCacheIndex(false, false, age)] = new Cell(false, false, age);
+            CACHE[getCacheIndex(true, false, age)] = new Cell(true, false, age);
+            CACHE[getCacheIndex(false, true, age)] = new Cell(false, true, age);
+            CACHE[getCacheIndex(true, true, age)] = new Cell(true, true, age);
+        }
+    }
+
     private final boolean alive;
     private final boolean immortal;
     private final int age;
@@ -16,12 +28,23 @@ public class Cell {
         this.age = age;
     }
 
+    /**
+     * Get a shared cell with the specified state.
+     * Cells are immutable, so the same instance can be used in any amount of squares.
+     */
+    public static Cell of(boolean alive, boolean immortal, int age) {
+        if (0 <= age && age < CACHED_AGES) {
+            return CACHE[getCacheIndex(alive, immortal, age)];
+        }
+        return new Cell(alive, immortal, age);
+    }
+
     public boolean isAlive() {
         return this.alive;
     }
 
     public Cell setAlive(boolean alive) {
-        return new Cell(alive, false, this.alive != alive ? 0 : this.age);
+        return of(alive, false, this.alive != alive ? 0 : this.age);
     }
 
     public int getAge() {
@@ -29,7 +52,7 @@ public class Cell {
     }
 
     public Cell addYear() {
-        return new Cell(this.alive, false, this.age + 1);
+        return of(this.alive, false, this.age + 1);
     }
 
     public boolean isImmortal() {
@@ -37,11 +60,15 @@ public class Cell {
     }
 
     public Cell immortalize(boolean immortal) {
-        return new Cell(this.alive, immortal, this.age);
+        return of(this.alive, immortal, this.age);
     }
 
     public Cell getCopy() {
-        return new Cell(this.alive, this.immortal, this.age);
+        return this;
+    }
+
+    private static int getCacheIndex(boolean alive, boolean immortal, int age) {
+        return age * 4 + (immortal ? 2 : 0) + (alive ? 1 : 0);
     }
 
 }
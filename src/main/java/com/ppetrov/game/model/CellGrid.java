@@ -0,0 +1,82 @@
+package com.ppetrov.game.model;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * CellGrid keeps a {@link Cell} object for every square of the field.
+ * Cells are immutable, so copies of the grid share them.
+ */
+public class CellGrid implements Grid {
+
+    private final Cell[][] field;
+
+    public CellGrid(int width, int height) {
+        this.field = new Cell[height][width];
+        IntStream.range(0, height).forEach(
+                row -> IntStream.range(0, width).forEach(
+                        column -> this.field[row][column] = Cell.of(false, false, 0)
+                )
+        );
+    }
+
+    public CellGrid(Boolean[][] source) {
+        this.field = new Cell[source.length][source[0].length];
+        IntStream.range(0, source.length).forEach(
+                row -> IntStream.range(0, source[row].length).forEach(
+                        column -> this.field[row][column] = Cell.of(source[row][column], false, 0)
+                )
+        );
+    }
+
+    public CellGrid(Cell[][] source) {
+        this.field = new Cell[source.length][];
+        IntStream.range(0, source.length).forEach(
+                row -> this.field[row] = Arrays.copyOf(source[row], source[row].length)
+        );
+    }
+
+    @Override
+    public int getWidth() {
+        if (this.field.length > 0) {
+            return this.field[0].length;
+        }
+        return 0;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.field.length;
+    }
+
+    @Override
+    public Cell getCell(int row, int column) {
+        return this.field[row][column];
+    }
+
+    @Override
+    public void setCell(int row, int column, Cell cell) {
+        this.field[row][column] = cell;
+    }
+
+    @Override
+    public boolean isAlive(int row, int column) {
+        return this.field[row][column].isAlive();
+    }
+
+    @Override
+    public void setAlive(int row, int column, boolean alive) {
+        this.field[row][column] = this.field[row][column].setAlive(alive);
+    }
+
+    @Override
+    public int getAge(int row, int column) {
+        return this.field[row][column].getAge();
+    }
+
+    @Override
+    public CellGrid copy() {
+        return new CellGrid(this.field);
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.ppetrov.game.model;
+
+/**
+ * ChangeCounter receives amounts of cells born and died while next generations are calculated.
+ * Stripes of one generation may report their amounts from several threads at once.
+ */
+public interface ChangeCounter {
+
+    /**
+     * @param births amount of cells which became alive
+     * @param deaths amount of alive cells which became dead or dying
+     */
+    void addChanges(long births, long deaths);
+
+}
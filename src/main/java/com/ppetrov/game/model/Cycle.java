@@ -0,0 +1,42 @@
+package com.ppetrov.game.model;
+
+/**
+ * Cycle is a change of the period of a field found by a {@link CycleDetector}
+ */
+public class Cycle {
+
+    private final long generation;
+    private final int period;
+
+    public Cycle(long generation, int period) {
+        this.generation = generation;
+        this.period = period;
+    }
+
+    /**
+     * @return generation at which the cycle was found or ended
+     */
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * @return period of the cycle, 1 for a still life and 0 if the field stopped repeating itself
+     */
+    public int getPeriod() {
+        return this.period;
+    }
+
+    public boolean isStillLife() {
+        return this.period == 1;
+    }
+
+    @Override
+    public String toString() {
+        if (this.period == 0) {
+            return "cycle ended at generation " + this.generation;
+        }
+        return (isStillLife() ? "still life" : "period " + this.period) + " at generation " + this.generation;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.ppetrov.game.model;
+
+/**
+ * CycleDetector finds a field repeating itself by state hashes of its recent generations.
+ * A generation with the same hash as one of the last {@link #getWindow()} ones
+ * starts a cycle with the period of the distance between them, a still life has period 1.
+ * <p>
+ * Hashes are 64-bit, so a false cycle is very unlikely but not impossible.
+ * Ages of cells are not hashed, so with ageing rules a cycle means only repeating states of cells.
+ */
+public class CycleDetector {
+
+    public static final int DEFAULT_WINDOW = 64;
+
+    private final long[] hashes;
+    private int count;
+    private int next;
+    private int period;
+
+    public CycleDetector() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param window amount of recent hashes kept, which is the longest period detected
+     */
+    public CycleDetector(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window should be positive: " + window);
+        }
+        this.hashes = new long[window];
+    }
+
+    /**
+     * Take the hash of the next generation into account
+     *
+     * @return whether the period changed, that is a cycle started, changed or ended
+     */
+    public boolean observe(long hash) {
+        int period = 0;
+        for (int distance = 1; distance <= this.count; distance++) {
+            if (this.hashes[Math.floorMod(this.next - distance, this.hashes.length)] == hash) {
+                period = distance;
+                break;
+            }
+        }
+
+        this.hashes[this.next] = hash;
+        this.next = (this.next + 1) % this.hashes.length;
+        this.count = Math.min(this.count + 1, this.hashes.length);
+
+        boolean changed = period != this.period;
+        this.period = period;
+        return changed;
+    }
+
+    /**
+     * @return period of the current cycle, or 0 if the field is not repeating itself
+     */
+    public int getPeriod() {
+        return this.period;
+    }
+
+    public int getWindow() {
+        return this.hashes.length;
+    }
+
+    /**
+     * Forget all hashes, like after a jump to another field
+     */
+    public void reset() {
+        this.count = 0;
+        this.next = 0;
+        this.period = 0;
+    }
+
+}
@@ -1,26 +1,312 @@
 package com.ppetrov.game.model;
 
+import com.ppetrov.game.model.metrics.SimulationMetrics;
 import rx.Observable;
+import rx.subjects.PublishSubject;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
+/**
+ * Game emits generations of a field. Normally a generation is calculated on every tick of the speed,
+ * in turbo mode a batch of generations fitting into a {@link StepBudget} is calculated every frame
+ * and only the last one is emitted.
+ * <p>
+ * Every generation is checked by a {@link CycleDetector}, changes of its period are emitted by {@link #getCycles()},
+ * and a batch is cut short when a cycle is found.
+ * <p>
+ * Generations can be recorded into a {@link History}, then the game can jump back to any generation kept in it,
+ * a jump back to an evicted generation lands on the oldest kept one.
+ * A jump forward past the history calculates the missing generations in batches fitting into the {@link StepBudget},
+ * one batch every frame, until the generation is reached or another jump is requested.
+ * <p>
+ * The map is changed from outside only by edits, which are applied between steps on the thread calculating generations
+ * and are not emitted. An edit changing states of cells restarts the cycle detection.
+ */
 public class Game {
 
+    public static final long FRAME_MILLIS = 16;
+
+    private static final long NO_JUMP = -1;
+
+    private final boolean doubleBuffered;
+    private final SimulationMetrics metrics;
+    private final AtomicLong generation = new AtomicLong();
+    private final CycleDetector cycleDetector = new CycleDetector();
+    private final PublishSubject<Cycle> cycles = PublishSubject.create();
+    private final History history;
+
+    public Game() {
+        this(false);
+    }
+
+    /**
+     * @param doubleBuffered whether generations should be calculated into two reusable maps,
+     *                       so that an emitted map is overwritten two generations later
+     */
+    public Game(boolean doubleBuffered) {
+        this(doubleBuffered, null);
+    }
+
+    /**
+     * @param metrics metrics recording every generation, or null
+     */
+    public Game(boolean doubleBuffered, SimulationMetrics metrics) {
+        this(doubleBuffered, metrics, null);
+    }
+
+    /**
+     * @param history history recording every generation, or null
+     */
+    public Game(boolean doubleBuffered, SimulationMetrics metrics, History history) {
+        this.doubleBuffered = doubleBuffered;
+        this.metrics = metrics;
+        this.history = history;
+    }
+
     public Observable<Map> startGame(Observable<Rules> rules,
                                      Observable<Integer> speed,
                                      Observable<Boolean> pause,
                                      Observable<Boolean> next) {
-        return speed
-                .switchMap(currentSpeed -> Observable.interval(currentSpeed, TimeUnit.MILLISECONDS))
-                .withLatestFrom(pause, (tick, play) -> play)
-                .filter(Boolean::booleanValue)
-                .mergeWith(next)
-                .withLatestFrom(rules, (play, currentRules) -> currentRules)
-                .scan(getDefaultMap(), (currentMap, currentRules) -> currentRules.nextState(currentMap));
+        return startGame(getDefaultMap(), rules, speed, pause, next);
+    }
+
+    /**
+     * @param map initial state of the field, like a restored snapshot, which is emitted first
+     */
+    public Observable<Map> startGame(Map map,
+                                     Observable<Rules> rules,
+                                     Observable<Integer> speed,
+                                     Observable<Boolean> pause,
+                                     Observable<Boolean> next) {
+        return startGame(map, rules, speed, pause, next, Observable.just(false));
+    }
+
+    /**
+     * @param turbo whether generations should be calculated as fast as possible instead of the speed
+     */
+    public Observable<Map> startGame(Map map,
+                                     Observable<Rules> rules,
+                                     Observable<Integer> speed,
+                                     Observable<Boolean> pause,
+                                     Observable<Boolean> next,
+                                     Observable<Boolean> turbo) {
+        return startGame(map, rules, speed, pause, next, turbo, Observable.empty());
     }
 
-    private static Map getDefaultMap() {
+    /**
+     * @param jumps generations to jump to, counted from the start of the game,
+     *              without a history the ones preceding the current generation are ignored
+     */
+    public Observable<Map> startGame(Map map,
+                                     Observable<Rules> rules,
+                                     Observable<Integer> speed,
+                                     Observable<Boolean> pause,
+                                     Observable<Boolean> next,
+                                     Observable<Boolean> turbo,
+                                     Observable<Long> jumps) {
+        return startGame(map, rules, speed, pause, next, turbo, jumps, Observable.empty());
+    }
+
+    /**
+     * @param edits changes of the current map, like a brush painting it or a copy of it for a view,
+     *              they are recorded into the history with the next generation
+     */
+    public Observable<Map> startGame(Map map,
+                                     Observable<Rules> rules,
+                                     Observable<Integer> speed,
+                                     Observable<Boolean> pause,
+                                     Observable<Boolean> next,
+                                     Observable<Boolean> turbo,
+                                     Observable<Long> jumps,
+                                     Observable<Consumer<Map>> edits) {
+        StepBudget budget = new StepBudget();
+        if (this.history != null) {
+            this.history.record(this.generation.get(), map);
+        }
+        Observable<Step> steps = Observable.combineLatest(speed, pause, turbo, Game::getTicks)
+                .switchMap(ticks -> ticks)
+                .mergeWith(next.map(step -> false))
+                .withLatestFrom(rules, (batch, currentRules) -> new Step(batch, NO_JUMP, currentRules))
+                .mergeWith(jumps.filter(jump -> jump >= 0)
+                        .switchMap(this::getJumpTicks)
+                        .withLatestFrom(rules, (jump, currentRules) -> new Step(false, jump, currentRules)))
+                .mergeWith(edits.map(Step::new));
+
+        if (this.doubleBuffered) {
+            MapBuffer buffer = new MapBuffer(map);
+            return steps.filter(step -> !edit(step, buffer.getCurrent()))
+                    .map(step -> step(budget, step, buffer.getCurrent(),
+                            currentMap -> buffer.step(step.rules, this.metrics)))
+                    .startWith(buffer.getCurrent());
+        }
+        AtomicReference<Map> current = new AtomicReference<>(map);
+        return steps.filter(step -> !edit(step, current.get()))
+                .map(step -> {
+                    current.set(step(budget, step, current.get(),
+                            previous -> step.rules.nextState(previous, this.metrics)));
+                    return current.get();
+                })
+                .startWith(map);
+    }
+
+    /**
+     * @return changes of the period of the field, emitted on the thread calculating generations
+     */
+    public Observable<Cycle> getCycles() {
+        return this.cycles;
+    }
+
+    /**
+     * @return number of the last calculated or restored generation since the start of the game
+     */
+    public long getGeneration() {
+        return this.generation.get();
+    }
+
+    /**
+     * @return history of the generations, or null if they are not recorded
+     */
+    public History getHistory() {
+        return this.history;
+    }
+
+    /**
+     * @return ticks telling whether a batch of generations should be calculated instead of one
+     */
+    private static Observable<Boolean> getTicks(int speed, boolean play, boolean turbo) {
+        if (!play) {
+            return Observable.empty();
+        } else if (turbo) {
+            return Observable.interval(FRAME_MILLIS, TimeUnit.MILLISECONDS).map(tick -> true);
+        }
+        return Observable.interval(speed, TimeUnit.MILLISECONDS).map(tick -> false);
+    }
+
+    /**
+     * @return the generation to jump to, repeated every frame until it is reached
+     */
+    private Observable<Long> getJumpTicks(long jump) {
+        return Observable.interval(0, FRAME_MILLIS, TimeUnit.MILLISECONDS)
+                .map(tick -> jump)
+                .takeUntil(tick -> this.generation.get() >= jump);
+    }
+
+    private Map step(StepBudget budget, Step step, Map map, UnaryOperator<Map> nextState) {
+        if (step.jump != NO_JUMP) {
+            return jump(budget, step.jump, map, nextState);
+        }
+        int steps = step.batch ? budget.getSteps() : 1;
+        long start = System.nanoTime();
+        int done = 0;
+        boolean cycle = false;
+        while (done < steps && !cycle) {
+            long stepStart = System.nanoTime();
+            map = nextState.apply(map);
+            long generation = this.generation.incrementAndGet();
+            if (this.metrics != null) {
+                this.metrics.recordStep(generation, map, System.nanoTime() - stepStart);
+            }
+            if (this.history != null) {
+                this.history.record(generation, map);
+            }
+            cycle = detectCycle(map, generation);
+            done++;
+        }
+        if (step.batch) {
+            budget.record(done, System.nanoTime() - start);
+        }
+        return map;
+    }
+
+    /**
+     * Restore the generation from the history into the current map, or calculate a batch of the generations up to it
+     */
+    private Map jump(StepBudget budget, long generation, Map map, UnaryOperator<Map> nextState) {
+        if (this.history != null && generation < this.generation.get() && !this.history.contains(generation)) {
+            generation = Math.max(generation, this.history.getFirstGeneration());
+        }
+        if (this.history != null && this.history.contains(generation)) {
+            this.history.restore(generation, map);
+            this.generation.set(generation);
+            this.cycleDetector.reset();
+            return map;
+        }
+        long steps = Math.min(budget.getSteps(), generation - this.generation.get());
+        if (steps <= 0) {
+            return map;
+        }
+        long start = System.nanoTime();
+        for (long done = 0; done < steps; done++) {
+            map = nextState.apply(map);
+            long current = this.generation.incrementAndGet();
+            if (this.history != null) {
+                this.history.record(current, map);
+            }
+        }
+        budget.record((int) steps, System.nanoTime() - start);
+        this.cycleDetector.reset();
+        return map;
+    }
+
+    /**
+     * Apply the edit of the step to the current map
+     *
+     * @return whether the step was an edit
+     */
+    private boolean edit(Step step, Map map) {
+        if (step.edit == null) {
+            return false;
+        }
+        long hash = map.getStateHash();
+        step.edit.accept(map);
+        if (map.getStateHash() != hash) {
+            this.cycleDetector.reset();
+        }
+        return true;
+    }
+
+    /**
+     * @return whether a cycle was found
+     */
+    private boolean detectCycle(Map map, long generation) {
+        if (!this.cycleDetector.observe(map.getStateHash())) {
+            return false;
+        }
+        int period = this.cycleDetector.getPeriod();
+        this.cycles.onNext(new Cycle(generation, period));
+        return period > 0;
+    }
+
+    public static Map getDefaultMap() {
         return new Map(50, 50);
     }
 
+    private static class Step {
+        final boolean batch;
+        final long jump;
+        final Rules rules;
+        final Consumer<Map> edit;
+
+        /**
+         * @param jump generation to jump to, or {@link #NO_JUMP} to step forward
+         */
+        Step(boolean batch, long jump, Rules rules) {
+            this.batch = batch;
+            this.jump = jump;
+            this.rules = rules;
+            this.edit = null;
+        }
+
+        Step(Consumer<Map> edit) {
+            this.batch = false;
+            this.jump = NO_JUMP;
+            this.rules = null;
+            this.edit = edit;
+        }
+    }
+
 }
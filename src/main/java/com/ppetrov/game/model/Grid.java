@@ -0,0 +1,96 @@
+package com.ppetrov.game.model;
+
+/**
+ * Grid is a storage of cells behind a {@link Map}.
+ * Coordinates passed to a grid are always inside of it,
+ * wrapping around the edges is done by the map.
+ */
+public interface Grid {
+
+    int getWidth();
+
+    int getHeight();
+
+    Cell getCell(int row, int column);
+
+    void setCell(int row, int column, Cell cell);
+
+    boolean isAlive(int row, int column);
+
+    void setAlive(int row, int column, boolean alive);
+
+    int getAge(int row, int column);
+
+    /**
+     * @return 0 for a dead cell, 1 for an alive one and greater values for dying states of Generations rules
+     */
+    default int getState(int row, int column) {
+        return isAlive(row, column) ? 1 : 0;
+    }
+
+    /**
+     * Set a state of a cell, grids without dying states keep only whether it is alive
+     */
+    default void setState(int row, int column, int state) {
+        setAlive(row, column, state == 1);
+    }
+
+    /**
+     * Put states of the cells of a row, starting at the column, into the array
+     */
+    default void getStates(int row, int column, byte[] states, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            states[offset + i] = (byte) getState(row, column + i);
+        }
+    }
+
+    /**
+     * Set states of the cells of a row, starting at the column, from the array
+     */
+    default void setStates(int row, int column, byte[] states, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            setState(row, column + i, states[offset + i] & 0xFF);
+        }
+    }
+
+    /**
+     * Add amounts of alive cells of the row to the counts,
+     * counts[i] gets the cells from columns[i] inclusive to columns[i + 1] exclusive for every i below length
+     */
+    default void countAlive(int row, int[] columns, int[] counts, int length) {
+        for (int i = 0; i < length; i++) {
+            for (int column = columns[i]; column < columns[i + 1]; column++) {
+                counts[i] += isAlive(row, column) ? 1 : 0;
+            }
+        }
+    }
+
+    default int getPopulation() {
+        int population = 0;
+        for (int row = 0; row < getHeight(); row++) {
+            for (int column = 0; column < getWidth(); column++) {
+                population += isAlive(row, column) ? 1 : 0;
+            }
+        }
+        return population;
+    }
+
+    /**
+     * @return independent copy of this grid with the same state of cells
+     */
+    Grid copy();
+
+    /**
+     * Overwrite states and ages of the cells of a grid of the same size with the ones of this grid,
+     * a grid of the same kind is overwritten without allocating anything
+     */
+    default void copyTo(Grid target) {
+        for (int row = 0; row < getHeight(); row++) {
+            for (int column = 0; column < getWidth(); column++) {
+                target.setCell(row, column, getCell(row, column));
+                target.setState(row, column, getState(row, column));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+package com.ppetrov.game.model;
+
+/**
+ * Hensel notation of isotropic non-totalistic rules, like B2-a/S12.
+ * Every letter after a neighbour count selects one configuration of neighbours
+ * together with its rotations and reflections, a count without letters selects all of them.
+ * <p>
+ * Neighbourhoods are 9-bit indexes of a 3x3 square read row by row,
+ * so the cell itself is bit 4.
+ */
+final class HenselNotation {
+
+    static final int SIZE = 512;
+    static final int CENTRE = 1 << 4;
+
+    private static final int NEIGHBOURS = SIZE - 1 - CENTRE;
+
+    private static final String[] LETTERS = {
+            "", "ce", "ceaikn", "ceaiknjqry", "ceaiknjqrytwz", "ceaiknjqry", "ceaikn", "ce", ""
+    };
+
+    /**
+     * Representative configurations of letters for 1 to 4 neighbours,
+     * configurations for 5 to 7 neighbours are their inversions.
+     */
+    private static final int[][] CONFIGURATIONS = {
+            {1, 2},
+            {5, 10, 3, 40, 33, 68},
+            {69, 42, 11, 7, 98, 13, 14, 70, 41, 97},
+            {325, 170, 15, 45, 99, 71, 106, 102, 43, 101, 105, 78, 108}
+    };
+
+    /**
+     * Rotations and reflections of the square as new positions of its bits
+     */
+    private static final int[][] SYMMETRIES = createSymmetries();
+
+    private HenselNotation() {
+    }
+
+    /**
+     * Compile B/S rule string into a table of next states
+     *
+     * @param rule rule in B/S notation, like B3/S23 or B2-a/S12, or in S/B notation, like 23/3
+     * @return table of next states indexed by neighbourhood
+     * @throws IllegalArgumentException if the rule can't be parsed
+     */
+    static boolean[] parse(String rule) {
+        String[] parts = rule.replaceAll("\\s", "").toLowerCase().split("/", -1);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Rule should consist of born and survives parts: " + rule);
+        }
+
+        String born;
+        String survives;
+        if (parts[0].startsWith("b") && parts[1].startsWith("s")) {
+            born = parts[0].substring(1);
+            survives = parts[1].substring(1);
+        } else if (parts[0].startsWith("s") && parts[1].startsWith("b")) {
+            born = parts[1].substring(1);
+            survives = parts[0].substring(1);
+        } else {
+            born = parts[1];
+            survives = parts[0];
+        }
+
+        boolean[] table = new boolean[SIZE];
+        parseCounts(born, table, 0, rule);
+        parseCounts(survives, table, CENTRE, rule);
+        return table;
+    }
+
+    /**
+     * @return rule in B/S notation, counts are written without letters when all of them are set
+     */
+    static String format(boolean[] table) {
+        return "B" + formatCounts(table, 0) + "/S" + formatCounts(table, CENTRE);
+    }
+
+    static int getCount(int neighbourhood) {
+        return Integer.bitCount(neighbourhood & NEIGHBOURS);
+    }
+
+    private static void parseCounts(String counts, boolean[] table, int centre, String rule) {
+        int position = 0;
+        while (position < counts.length()) {
+            char digit = counts.charAt(position++);
+            if (digit < '0' || digit > '8') {
+                throw new IllegalArgumentException("Unexpected '" + digit + "' in rule " + rule);
+            }
+            int count = digit - '0';
+
+            boolean negated = position < counts.length() && counts.charAt(position) == '-';
+            if (negated) {
+                position++;
+            }
+            int start = position;
+            while (position < counts.length() && Character.isLetter(counts.charAt(position))) {
+                position++;
+            }
+            String letters = counts.substring(start, position);
+            if (negated && letters.isEmpty()) {
+                throw new IllegalArgumentException("Expected letters after '-' in rule " + rule);
+            }
+
+            for (char letter : letters.toCharArray()) {
+                if (LETTERS[count].indexOf(letter) < 0) {
+                    throw new IllegalArgumentException("Unexpected '" + letter + "' after " + count + " in rule " + rule);
+                }
+            }
+
+            if (LETTERS[count].isEmpty()) {
+                setAll(table, getConfiguration(count, ' '), centre);
+            }
+            for (char letter : LETTERS[count].toCharArray()) {
+                if (letters.isEmpty() || letters.indexOf(letter) >= 0 != negated) {
+                    setAll(table, getConfiguration(count, letter), centre);
+                }
+            }
+        }
+    }
+
+    private static String formatCounts(boolean[] table, int centre) {
+        StringBuilder sb = new StringBuilder();
+        for (int count = 0; count <= 8; count++) {
+            String letters = LETTERS[count];
+            if (letters.isEmpty()) {
+                if (table[getConfiguration(count, ' ') | centre]) {
+                    sb.append(count);
+                }
+                continue;
+            }
+
+            StringBuilder set = new StringBuilder();
+            StringBuilder unset = new StringBuilder();
+            for (char letter : letters.toCharArray()) {
+                (table[getConfiguration(count, letter) | centre] ? set : unset).append(letter);
+            }
+            if (unset.length() == 0) {
+                sb.append(count);
+            } else if (set.length() > 0) {
+                sb.append(count);
+                if (set.length() <= unset.length()) {
+                    sb.append(set);
+                } else {
+                    sb.append('-').append(unset);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void setAll(boolean[] table, int configuration, int centre) {
+        for (int[] symmetry : SYMMETRIES) {
+            table[transform(configuration, symmetry) | centre] = true;
+        }
+    }
+
+    private static int getConfiguration(int count, char letter) {
+        if (count == 0) {
+            return 0;
+        } else if (count == 8) {
+            return NEIGHBOURS;
+        } else if (count <= 4) {
+            return CONFIGURATIONS[count - 1][LETTERS[count].indexOf(letter)];
+        }
+        return CONFIGURATIONS[8 - count - 1][LETTERS[count].indexOf(letter)] ^ NEIGHBOURS;
+    }
+
+    private static int transform(int neighbourhood, int[] symmetry) {
+        int result = 0;
+        for (int bit = 0; bit < 9; bit++) {
+            if ((neighbourhood & (1 << bit)) != 0) {
+                result |= 1 << symmetry[bit];
+            }
+        }
+        return result;
+    }
+
+    private static int[][] createSymmetries() {
+        int[][] symmetries = new int[8][9];
+        for (int bit = 0; bit < 9; bit++) {
+            int row = bit / 3;
+            int column = bit % 3;
+            symmetries[0][bit] = row * 3 + column;
+            symmetries[1][bit] = column * 3 + 2 - row;
+            symmetries[2][bit] = (2 - row) * 3 + 2 - column;
+            symmetries[3][bit] = (2 - column) * 3 + row;
+            symmetries[4][bit] = row * 3 + 2 - column;
+            symmetries[5][bit] = (2 - row) * 3 + column;
+            symmetries[6][bit] = column * 3 + row;
+            symmetries[7][bit] = (2 - column) * 3 + 2 - row;
+        }
+        return symmetries;
+    }
+
+}
@@ -0,0 +1,279 @@
+package com.ppetrov.game.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * History keeps recent generations of a field, so that it can be rewound.
+ * States of cells are kept in segments of consecutive generations, a segment starts with a keyframe
+ * of the whole field and the following generations are XOR deltas to the previous ones,
+ * both compressed to the positions and values of non-zero bytes.
+ * A generation is restored by replaying the deltas from the keyframe of its segment.
+ * <p>
+ * When the history takes more than its memory limit, the oldest segments are evicted,
+ * the newest segment is always kept. Ages of cells are not kept, restored alive cells are young.
+ * Recording a generation which was already recorded replaces it and all the following ones.
+ */
+public class History {
+
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 64;
+    public static final long DEFAULT_MEMORY_LIMIT = 64L << 20;
+
+    private final int keyframeInterval;
+    private final long memoryLimit;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    private byte[] lastStates;
+    private byte[] states;
+    private byte[] row = new byte[0];
+    private byte[] encoded = new byte[0];
+    private long bytes;
+
+    public History() {
+        this(DEFAULT_KEYFRAME_INTERVAL, DEFAULT_MEMORY_LIMIT);
+    }
+
+    /**
+     * @param keyframeInterval amount of generations in a segment, a keyframe and the deltas after it
+     * @param memoryLimit      amount of bytes taken by encoded generations after which the oldest ones are evicted
+     */
+    public History(int keyframeInterval, long memoryLimit) {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Keyframe interval should be positive: " + keyframeInterval);
+        }
+        this.keyframeInterval = keyframeInterval;
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * Remember states of the cells of the map
+     *
+     * @param generation number of the generation, it starts a new segment if it does not follow the last one
+     */
+    public synchronized void record(long generation, Map map) {
+        truncate(generation);
+        Segment last = this.segments.peekLast();
+        byte[] previous = this.lastStates;
+        byte[] current = readStates(map, getStatesBuffer(map));
+
+        if (last == null || last.getLastGeneration() != generation - 1 || last.frames.size() >= this.keyframeInterval
+                || last.width != map.getWidth() || last.height != map.getHeight()) {
+            last = new Segment(generation, map.getWidth(), map.getHeight());
+            this.segments.addLast(last);
+            last.add(encode(current, null));
+        } else {
+            last.add(encode(current, previous));
+        }
+        this.bytes += last.frames.get(last.frames.size() - 1).length;
+        this.lastStates = current;
+        this.states = previous;
+        evict();
+    }
+
+    /**
+     * @return whether the generation can be restored
+     */
+    public synchronized boolean contains(long generation) {
+        return !this.segments.isEmpty()
+                && this.segments.peekFirst().firstGeneration <= generation
+                && generation <= this.segments.peekLast().getLastGeneration();
+    }
+
+    /**
+     * @return the oldest generation which can be restored, or -1 if nothing is recorded
+     */
+    public synchronized long getFirstGeneration() {
+        return this.segments.isEmpty() ? -1 : this.segments.peekFirst().firstGeneration;
+    }
+
+    /**
+     * @return the newest recorded generation, or -1 if nothing is recorded
+     */
+    public synchronized long getLastGeneration() {
+        return this.segments.isEmpty() ? -1 : this.segments.peekLast().getLastGeneration();
+    }
+
+    /**
+     * @return amount of bytes taken by encoded generations
+     */
+    public synchronized long getMemoryUsed() {
+        return this.bytes;
+    }
+
+    /**
+     * Overwrite states of the cells of the map with the ones of the generation, keeping the state hash of the map
+     *
+     * @param map map of the same size as the recorded generation
+     * @return the same map
+     * @throws IllegalArgumentException if the generation is not kept or has another size
+     */
+    public synchronized Map restore(long generation, Map map) {
+        Segment segment = findSegment(generation);
+        if (segment == null) {
+            throw new IllegalArgumentException("Generation " + generation + " is not kept in the history");
+        } else if (segment.width != map.getWidth() || segment.height != map.getHeight()) {
+            throw new IllegalArgumentException("Generation " + generation + " has size "
+                    + segment.width + "x" + segment.height + " instead of " + map.getWidth() + "x" + map.getHeight());
+        }
+
+        byte[] states = decode(segment, generation);
+        if (this.row.length < segment.width) {
+            this.row = new byte[segment.width];
+        }
+        for (int row = 0; row < segment.height; row++) {
+            int offset = row * segment.width;
+            map.getGrid().getStates(row, 0, this.row, 0, segment.width);
+            for (int column = 0; column < segment.width; column++) {
+                if (this.row[column] != states[offset + column]) {
+                    map.setState(row, column, states[offset + column] & 0xFF);
+                }
+            }
+        }
+        return map;
+    }
+
+    public synchronized void clear() {
+        this.segments.clear();
+        this.lastStates = null;
+        this.bytes = 0;
+    }
+
+    /**
+     * Forget the generation and all the following ones
+     */
+    private void truncate(long generation) {
+        if (getLastGeneration() < generation) {
+            return;
+        }
+        while (!this.segments.isEmpty() && this.segments.peekLast().firstGeneration >= generation) {
+            this.bytes -= this.segments.removeLast().bytes;
+        }
+        Segment last = this.segments.peekLast();
+        if (last == null) {
+            this.lastStates = null;
+            return;
+        }
+        while (last.getLastGeneration() >= generation) {
+            this.bytes -= last.removeLast();
+        }
+        this.lastStates = decode(last, last.getLastGeneration());
+    }
+
+    private void evict() {
+        while (this.bytes > this.memoryLimit && this.segments.size() > 1) {
+            this.bytes -= this.segments.removeFirst().bytes;
+        }
+    }
+
+    private Segment findSegment(long generation) {
+        Iterator<Segment> iterator = this.segments.descendingIterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segment.firstGeneration <= generation) {
+                return generation <= segment.getLastGeneration() ? segment : null;
+            }
+        }
+        return null;
+    }
+
+    private byte[] getStatesBuffer(Map map) {
+        int cells = map.getWidth() * map.getHeight();
+        return this.states != null && this.states.length == cells ? this.states : new byte[cells];
+    }
+
+    private static byte[] readStates(Map map, byte[] states) {
+        Grid grid = map.getGrid();
+        for (int row = 0; row < map.getHeight(); row++) {
+            grid.getStates(row, 0, states, row * map.getWidth(), map.getWidth());
+        }
+        return states;
+    }
+
+    /**
+     * Encode XOR of the states with the previous ones as pairs of a varint gap since the previous non-zero byte
+     * and the byte itself
+     *
+     * @param previous previous states, or null for a keyframe
+     */
+    private byte[] encode(byte[] states, byte[] previous) {
+        int length = 0;
+        int gap = 0;
+        for (int index = 0; index < states.length; index++) {
+            int difference = previous == null ? states[index] : states[index] ^ previous[index];
+            if (difference == 0) {
+                gap++;
+                continue;
+            }
+            if (this.encoded.length < length + 6) {
+                this.encoded = Arrays.copyOf(this.encoded, Math.max(64, 2 * (length + 6)));
+            }
+            while ((gap & ~0x7F) != 0) {
+                this.encoded[length++] = (byte) ((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            this.encoded[length++] = (byte) gap;
+            this.encoded[length++] = (byte) difference;
+            gap = 0;
+        }
+        return Arrays.copyOf(this.encoded, length);
+    }
+
+    private static byte[] decode(Segment segment, long generation) {
+        byte[] states = new byte[segment.width * segment.height];
+        for (int frame = 0; frame <= generation - segment.firstGeneration; frame++) {
+            byte[] encoded = segment.frames.get(frame);
+            int index = -1;
+            int position = 0;
+            while (position < encoded.length) {
+                int gap = 0;
+                int shift = 0;
+                byte next;
+                do {
+                    next = encoded[position++];
+                    gap |= (next & 0x7F) << shift;
+                    shift += 7;
+                } while ((next & 0x80) != 0);
+                index += gap + 1;
+                states[index] ^= encoded[position++];
+            }
+        }
+        return states;
+    }
+
+    private static class Segment {
+        final long firstGeneration;
+        final int width;
+        final int height;
+        final List<byte[]> frames = new ArrayList<>();
+        long bytes;
+
+        Segment(long firstGeneration, int width, int height) {
+            this.firstGeneration = firstGeneration;
+            this.width = width;
+            this.height = height;
+        }
+
+        long getLastGeneration() {
+            return this.firstGeneration + this.frames.size() - 1;
+        }
+
+        void add(byte[] frame) {
+            this.frames.add(frame);
+            this.bytes += frame.length;
+        }
+
+        /**
+         * @return size of the removed frame
+         */
+        long removeLast() {
+            long removed = this.frames.remove(this.frames.size() - 1).length;
+            this.bytes -= removed;
+            return removed;
+        }
+    }
+
+}
@@ -0,0 +1,544 @@
+package com.ppetrov.game.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Larger than Life rules count alive cells in a square or a diamond of a radius up to {@link #MAX_RANGE}
+ * around a cell, a cell survives or is born if the count is in the range of survivals or births.
+ * They are written like R5,C0,M1,S34..58,B34..45,NM: the radius, the amount of states,
+ * whether the cell itself is counted, the ranges and the Moore square or the von Neumann diamond.
+ * <p>
+ * A generation costs the same for every radius. Sums of columns of the square move down the field
+ * a row at a time and the count moves along a row a column at a time. The diamond moves the same way,
+ * the cells it gains and loses are sums of diagonals which move down the field too.
+ * Rows and sums are kept by every thread between generations and reused while the width of the field is the same.
+ * <p>
+ * The neighbourhood should fit into the field, as cells of a wider one would be counted several times.
+ */
+public class LargerThanLifeRules extends Rules {
+
+    public static final int MAX_RANGE = 500;
+
+    private static final Pattern RULE = Pattern.compile(
+            "R(\\d+)(?:,C(\\d+))?(?:,M([01]))?,S(\\d+)(?:\\.\\.(\\d+))?,B(\\d+)(?:\\.\\.(\\d+))?(?:,N([MN]))?",
+            Pattern.CASE_INSENSITIVE);
+
+    public enum NeighbourhoodType {
+        MOORE, VON_NEUMANN
+    }
+
+    private final int range;
+    private final NeighbourhoodType neighbourhoodType;
+    private final boolean centreCounted;
+    private final int minSurvives;
+    private final int maxSurvives;
+    private final int minBorn;
+    private final int maxBorn;
+    private final ThreadLocal<Stripe> stripes = new ThreadLocal<>();
+
+    /**
+     * @param centreCounted whether the cell itself is counted among its neighbours
+     * @param states        amount of states of a cell including alive and dead ones, from 2 to 256
+     */
+    public LargerThanLifeRules(int range, NeighbourhoodType neighbourhoodType, boolean centreCounted,
+                               int minSurvives, int maxSurvives, int minBorn, int maxBorn, int states) {
+        super(states);
+        if (range < 1 || range > MAX_RANGE) {
+            throw new IllegalArgumentException("Range should be from 1 to " + MAX_RANGE + ": " + range);
+        }
+        this.range = range;
+        this.neighbourhoodType = Objects.requireNonNull(neighbourhoodType);
+        this.centreCounted = centreCounted;
+        this.minSurvives = minSurvives;
+        this.maxSurvives = maxSurvives;
+        this.minBorn = minBorn;
+        this.maxBorn = maxBorn;
+
+        int size = getNeighbourhoodSize();
+        if (minSurvives < 0 || minSurvives > maxSurvives || maxSurvives > size) {
+            throw new IllegalArgumentException("Survivals should be within 0.." + size + ": "
+                    + minSurvives + ".." + maxSurvives);
+        } else if (minBorn < 0 || minBorn > maxBorn || maxBorn > size) {
+            throw new IllegalArgumentException("Births should be within 0.." + size + ": " + minBorn + ".." + maxBorn);
+        }
+    }
+
+    /**
+     * @return whether the rule string is a Larger than Life one, like R5,C0,M1,S34..58,B34..45,NM
+     */
+    static boolean isLargerThanLife(String rule) {
+        return rule.trim().regionMatches(true, 0, "R", 0, 1);
+    }
+
+    /**
+     * Create rules from a rule string like R5,C0,M1,S34..58,B34..45,NM, amount of states, counting of the cell
+     * and the neighbourhood may be left out, they are C0, M0 and NM then. A single count like S34 is a range too.
+     *
+     * @throws IllegalArgumentException if the rule can't be parsed
+     */
+    public static LargerThanLifeRules parse(String rule) {
+        Matcher matcher = RULE.matcher(rule.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Unexpected Larger than Life rule " + rule);
+        }
+        try {
+            int states = matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 0;
+            int minSurvives = Integer.parseInt(matcher.group(4));
+            int minBorn = Integer.parseInt(matcher.group(6));
+            return new LargerThanLifeRules(
+                    Integer.parseInt(matcher.group(1)),
+                    "N".equalsIgnoreCase(matcher.group(8)) ? NeighbourhoodType.VON_NEUMANN : NeighbourhoodType.MOORE,
+                    "1".equals(matcher.group(3)),
+                    minSurvives,
+                    matcher.group(5) != null ? Integer.parseInt(matcher.group(5)) : minSurvives,
+                    minBorn,
+                    matcher.group(7) != null ? Integer.parseInt(matcher.group(7)) : minBorn,
+                    states == 0 ? 2 : states
+            );
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unexpected number in rule " + rule, e);
+        }
+    }
+
+    @Override
+    public int getRange() {
+        return this.range;
+    }
+
+    public NeighbourhoodType getNeighbourhoodType() {
+        return this.neighbourhoodType;
+    }
+
+    public boolean isCentreCounted() {
+        return this.centreCounted;
+    }
+
+    public int getMinSurvives() {
+        return this.minSurvives;
+    }
+
+    public int getMaxSurvives() {
+        return this.maxSurvives;
+    }
+
+    public int getMinBorn() {
+        return this.minBorn;
+    }
+
+    public int getMaxBorn() {
+        return this.maxBorn;
+    }
+
+    /**
+     * @return amount of cells which can be counted, including the cell itself if it is counted
+     */
+    public int getNeighbourhoodSize() {
+        int cells = this.neighbourhoodType == NeighbourhoodType.MOORE
+                ? (2 * this.range + 1) * (2 * this.range + 1)
+                : 2 * this.range * (this.range + 1) + 1;
+        return this.centreCounted ? cells : cells - 1;
+    }
+
+    @Override
+    public Rules withMaxAge(int maxAge) {
+        Rules rules = new LargerThanLifeRules(this.range, this.neighbourhoodType, this.centreCounted,
+                this.minSurvives, this.maxSurvives, this.minBorn, this.maxBorn, getStates());
+        rules.setMaxAge(maxAge);
+        return rules;
+    }
+
+    @Override
+    long nextState(Map map, Map target, int fromRow, int toRow, ChangeCounter counter) {
+        Grid grid = map.getGrid();
+        Grid targetGrid = target.getGrid();
+        if (getStates() > 2 && !(grid instanceof ByteGrid)) {
+            throw new IllegalArgumentException("Rules " + this + " need a map with a state plane");
+        }
+        int diameter = 2 * this.range + 1;
+        if (diameter > grid.getWidth() || diameter > grid.getHeight()) {
+            throw new IllegalArgumentException("Rules " + this + " need a field of at least " + diameter + "x" + diameter
+                    + " cells instead of " + grid.getWidth() + "x" + grid.getHeight());
+        }
+        boolean hashing = map.isStateHashKnown();
+        int width = grid.getWidth();
+        Stripe stripe = getStripe(width);
+        NeighbourCounts counts = stripe.counts;
+        counts.start(grid, fromRow);
+        byte[] states = stripe.states;
+        byte[] alive = stripe.alive;
+        byte[] next = stripe.next;
+        long delta = 0;
+        long births = 0;
+        long deaths = 0;
+
+        for (int row = fromRow; row < toRow; row++) {
+            int[] rowCounts = counts.next();
+            grid.getStates(row, 0, states, 0, width);
+            for (int column = 0; column < width; column++) {
+                boolean self = states[column] == 1;
+                int count = this.centreCounted || !self ? rowCounts[column] : rowCounts[column] - 1;
+                boolean nextAlive = self
+                        ? count >= this.minSurvives && count <= this.maxSurvives
+                        : count >= this.minBorn && count <= this.maxBorn;
+                alive[column] = (byte) (nextAlive ? 1 : 0);
+            }
+            setNextRow(grid, targetGrid, row, alive);
+
+            if (!hashing && counter == null) {
+                continue;
+            }
+            targetGrid.getStates(row, 0, next, 0, width);
+            for (int column = 0; column < width; column++) {
+                int state = states[column] & 0xFF;
+                int nextState = next[column] & 0xFF;
+                if (state != nextState) {
+                    long index = (long) row * width + column;
+                    delta ^= Zobrist.getKey(index, state) ^ Zobrist.getKey(index, nextState);
+                    births += nextState == 1 ? 1 : 0;
+                    deaths += state == 1 ? 1 : 0;
+                }
+            }
+        }
+        if (counter != null) {
+            counter.addChanges(births, deaths);
+        }
+        return hashing ? delta : 0;
+    }
+
+    /**
+     * @return rows and counts of the calling thread for a field of the width
+     */
+    private Stripe getStripe(int width) {
+        Stripe stripe = this.stripes.get();
+        if (stripe == null || stripe.states.length != width) {
+            stripe = new Stripe(width, this.neighbourhoodType == NeighbourhoodType.MOORE
+                    ? new MooreCounts(this.range, width)
+                    : new VonNeumannCounts(this.range, width));
+            this.stripes.set(stripe);
+        }
+        return stripe;
+    }
+
+    /**
+     * Set next states of a row the way other rules do for the kind of grid, ages are kept by grids which have them
+     */
+    private void setNextRow(Grid grid, Grid target, int row, byte[] alive) {
+        if (grid instanceof ByteGrid) {
+            ((ByteGrid) grid).setNextRow(this, (ByteGrid) target, row, alive);
+        } else if (grid instanceof BitGrid || grid instanceof OffHeapGrid) {
+            target.setStates(row, 0, alive, 0, alive.length);
+        } else {
+            for (int column = 0; column < alive.length; column++) {
+                target.setCell(row, column, getNextCell(grid.getCell(row, column), alive[column] == 1));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "R" + this.range
+                + ",C" + (getStates() > 2 ? getStates() : 0)
+                + ",M" + (this.centreCounted ? 1 : 0)
+                + ",S" + this.minSurvives + ".." + this.maxSurvives
+                + ",B" + this.minBorn + ".." + this.maxBorn
+                + ",N" + (this.neighbourhoodType == NeighbourhoodType.MOORE ? "M" : "N");
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!super.equals(obj)) {
+            return false;
+        }
+        LargerThanLifeRules that = (LargerThanLifeRules) obj;
+        return this.range == that.range
+                && this.neighbourhoodType == that.neighbourhoodType
+                && this.centreCounted == that.centreCounted
+                && this.minSurvives == that.minSurvives
+                && this.maxSurvives == that.maxSurvives
+                && this.minBorn == that.minBorn
+                && this.maxBorn == that.maxBorn;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), this.range, this.neighbourhoodType, this.centreCounted,
+                this.minSurvives, this.maxSurvives, this.minBorn, this.maxBorn);
+    }
+
+    /**
+     * Rows of a stripe of the field and counts of its cells, reused by a thread from stripe to stripe
+     */
+    private static class Stripe {
+        final byte[] states;
+        final byte[] alive;
+        final byte[] next;
+        final NeighbourCounts counts;
+
+        Stripe(int width, NeighbourCounts counts) {
+            this.states = new byte[width];
+            this.alive = new byte[width];
+            this.next = new byte[width];
+            this.counts = counts;
+        }
+    }
+
+    /**
+     * Counts of alive cells around every cell of a row, rows go one after another from the first one.
+     * Rows are kept with a margin of cells wrapped around from the other edge on both sides,
+     * so sums near the edges are read without wrapping every index.
+     */
+    private abstract static class NeighbourCounts {
+        final int range;
+        final int width;
+        final int margin;
+        final int[] counts;
+        Grid grid;
+        int height;
+        int row;
+        boolean started;
+
+        NeighbourCounts(int range, int width) {
+            this.range = range;
+            this.width = width;
+            this.margin = range + 1;
+            this.counts = new int[width];
+        }
+
+        /**
+         * Start counting from the row of a grid of the width
+         */
+        void start(Grid grid, int row) {
+            this.grid = grid;
+            this.height = grid.getHeight();
+            this.row = row;
+            this.started = false;
+        }
+
+        /**
+         * @return counts of the next row, the array is reused for the row after it
+         */
+        abstract int[] next();
+
+        byte[] createRow() {
+            return new byte[this.width + 2 * this.margin];
+        }
+
+        int[] createSums() {
+            return new int[this.width + 2 * this.margin];
+        }
+
+        /**
+         * Read 1 for alive cells and 0 for others of a row, wrapped around the field, with margins
+         */
+        void load(int row, byte[] cells) {
+            this.grid.getStates(Math.floorMod(row, this.height), 0, cells, this.margin, this.width);
+            for (int column = 0; column < this.width; column++) {
+                cells[this.margin + column] = (byte) (cells[this.margin + column] == 1 ? 1 : 0);
+            }
+            for (int i = 1; i <= this.margin; i++) {
+                cells[this.margin - i] = cells[this.margin + Math.floorMod(-i, this.width)];
+                cells[this.margin + this.width - 1 + i] = cells[this.margin + Math.floorMod(this.width - 1 + i, this.width)];
+            }
+        }
+
+        void wrapMargins(int[] sums) {
+            for (int i = 1; i <= this.margin; i++) {
+                sums[this.margin - i] = sums[this.margin + Math.floorMod(-i, this.width)];
+                sums[this.margin + this.width - 1 + i] = sums[this.margin + Math.floorMod(this.width - 1 + i, this.width)];
+            }
+        }
+    }
+
+    /**
+     * Counts of the square: sums of columns of 2R + 1 rows gain a row below and lose a row above,
+     * the count along a row gains a column sum on the east and loses one on the west.
+     */
+    private static class MooreCounts extends NeighbourCounts {
+        private final int[] columns;
+        private final byte[] added;
+        private final byte[] removed;
+
+        MooreCounts(int range, int width) {
+            super(range, width);
+            this.columns = createSums();
+            this.added = createRow();
+            this.removed = createRow();
+        }
+
+        @Override
+        void start(Grid grid, int row) {
+            super.start(grid, row);
+            Arrays.fill(this.columns, 0);
+        }
+
+        @Override
+        int[] next() {
+            int m = this.margin;
+            if (!this.started) {
+                for (int i = -this.range; i <= this.range; i++) {
+                    load(this.row + i, this.added);
+                    for (int column = 0; column < this.width; column++) {
+                        this.columns[m + column] += this.added[m + column];
+                    }
+                }
+                this.started = true;
+            } else {
+                load(this.row + this.range, this.added);
+                load(this.row - this.range - 1, this.removed);
+                for (int column = 0; column < this.width; column++) {
+                    this.columns[m + column] += this.added[m + column] - this.removed[m + column];
+                }
+            }
+            wrapMargins(this.columns);
+
+            int count = 0;
+            for (int column = -this.range; column <= this.range; column++) {
+                count += this.columns[m + column];
+            }
+            this.counts[0] = count;
+            for (int column = 1; column < this.width; column++) {
+                count += this.columns[m + column + this.range] - this.columns[m + column - this.range - 1];
+                this.counts[column] = count;
+            }
+            this.row++;
+            return this.counts;
+        }
+    }
+
+    /**
+     * Counts of the diamond. Its eastern edge is made of a diagonal going down to the east and ending at the row
+     * of the cell and a diagonal going up to the east from R rows below, the western edge is made the same way.
+     * Sums of R + 1 cells of diagonals ending at every column are kept for the row of the cell
+     * and the row R rows below, each of them gains a cell at its end and loses one at its start from row to row.
+     * The count at the first column moves down the field by the same edges turned on their side.
+     */
+    private static class VonNeumannCounts extends NeighbourCounts {
+        /**
+         * Sums of diagonals going up to the west from the cell, for the row of the cell and R rows below
+         */
+        private int[] westTrail;
+        private int[] westLead;
+        /**
+         * Sums of diagonals going up to the east from the cell, for the row of the cell and R rows below
+         */
+        private int[] eastTrail;
+        private int[] eastLead;
+        private byte[] centre;
+        private byte[] scratch;
+        private final byte[] removed;
+        private final byte[] added;
+        private int first;
+
+        VonNeumannCounts(int range, int width) {
+            super(range, width);
+            this.westTrail = createSums();
+            this.westLead = createSums();
+            this.eastTrail = createSums();
+            this.eastLead = createSums();
+            this.centre = createRow();
+            this.scratch = createRow();
+            this.removed = createRow();
+            this.added = createRow();
+        }
+
+        @Override
+        void start(Grid grid, int row) {
+            super.start(grid, row);
+            Arrays.fill(this.westTrail, 0);
+            Arrays.fill(this.westLead, 0);
+            Arrays.fill(this.eastTrail, 0);
+            Arrays.fill(this.eastLead, 0);
+            this.first = 0;
+        }
+
+        @Override
+        int[] next() {
+            int m = this.margin;
+            int r = this.range;
+            if (!this.started) {
+                countFirstRow();
+                this.started = true;
+            } else {
+                int oldWest = this.westTrail[m + r];
+                int oldEast = this.eastTrail[m - r];
+                byte[] previous = this.centre;
+                this.centre = this.scratch;
+                this.scratch = previous;
+
+                load(this.row, this.centre);
+                load(this.row - r - 1, this.removed);
+                slide(this.westTrail, this.eastTrail, this.centre, this.removed);
+                load(this.row + r, this.added);
+                slide(this.westLead, this.eastLead, this.added, previous);
+
+                this.first += this.westLead[m] + this.eastLead[m] - this.added[m]
+                        - oldEast - oldWest + this.removed[m];
+            }
+
+            int count = this.first;
+            this.counts[0] = count;
+            for (int column = 1; column < this.width; column++) {
+                count += this.westTrail[m + column + r] + this.eastLead[m + column] - this.centre[m + column + r]
+                        - this.eastTrail[m + column - 1 - r] - this.westLead[m + column - 1]
+                        + this.centre[m + column - 1 - r];
+                this.counts[column] = count;
+            }
+            this.row++;
+            return this.counts;
+        }
+
+        /**
+         * Sum diagonals of the first row and R rows below it and the diamond around its first cell
+         */
+        private void countFirstRow() {
+            int m = this.margin;
+            int r = this.range;
+            for (int k = 0; k <= r; k++) {
+                load(this.row - k, this.scratch);
+                addDiagonalCells(this.westTrail, this.eastTrail, this.scratch, k);
+                load(this.row + r - k, this.scratch);
+                addDiagonalCells(this.westLead, this.eastLead, this.scratch, k);
+            }
+            wrapMargins(this.westTrail);
+            wrapMargins(this.eastTrail);
+            wrapMargins(this.westLead);
+            wrapMargins(this.eastLead);
+
+            for (int i = -r; i <= r; i++) {
+                load(this.row + i, this.scratch);
+                for (int column = Math.abs(i) - r; column <= r - Math.abs(i); column++) {
+                    this.first += this.scratch[m + column];
+                }
+            }
+            load(this.row, this.centre);
+        }
+
+        private void addDiagonalCells(int[] west, int[] east, byte[] cells, int k) {
+            int m = this.margin;
+            for (int column = 0; column < this.width; column++) {
+                west[m + column] += cells[m + column - k];
+                east[m + column] += cells[m + column + k];
+            }
+        }
+
+        /**
+         * Move sums of diagonals a row down: each gains a cell of the new row and loses the one R + 1 rows above it
+         */
+        private void slide(int[] west, int[] east, byte[] added, byte[] removed) {
+            int m = this.margin;
+            int r = this.range;
+            for (int column = this.width - 1; column >= 0; column--) {
+                west[m + column] = west[m + column - 1] + added[m + column] - removed[m + column - r - 1];
+            }
+            for (int column = 0; column < this.width; column++) {
+                east[m + column] = east[m + column + 1] + added[m + column] - removed[m + column + r + 1];
+            }
+            wrapMargins(west);
+            wrapMargins(east);
+        }
+    }
+
+}
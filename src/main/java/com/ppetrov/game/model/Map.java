@@ -1,101 +1,359 @@
 package com.ppetrov.game.model;
 
+import java.util.Arrays;
 import java.util.Random;
+import java.util.function.IntBinaryOperator;
 import java.util.stream.IntStream;
 
 public class Map {
 
-    private Cell[][] field;
+    public static final double DEFAULT_DENSITY = 0.25;
+
+    private final Grid grid;
+
+    private long stateHash;
+    private boolean stateHashKnown;
 
     public Map(int width, int height) {
-        this.field = new Cell[width][height];
+        this(new ByteGrid(width, height));
         fillRandomly();
     }
 
     public Map(Boolean[][] field) {
-        this.field = fillFromBoolean(field);
+        this(new CellGrid(field));
     }
 
     public Map(Cell[][] field) {
-        this.field = deepArrayCopy(field);
+        this(new CellGrid(field));
+    }
+
+    public Map(Grid grid) {
+        this.grid = grid;
     }
 
     public int getWidth() {
-        if (this.field.length > 0) {
-            return this.field[0].length;
-        }
-        return 0;
+        return this.grid.getWidth();
     }
 
     public int getHeight() {
-        return this.field.length;
+        return this.grid.getHeight();
     }
 
     public boolean isSet(int row, int column) {
-        return this.field[fixRow(row)][fixColumn(column)].isAlive();
+        return this.grid.isAlive(fixRow(row), fixColumn(column));
     }
 
     public void setCell(int row, int column, boolean alive) {
-        Cell cell = this.field[fixRow(row)][fixColumn(column)];
-        this.field[fixRow(row)][fixColumn(column)] = cell.setAlive(alive);
+        row = fixRow(row);
+        column = fixColumn(column);
+        if (this.stateHashKnown) {
+            long index = (long) row * getWidth() + column;
+            this.stateHash ^= Zobrist.getKey(index, this.grid.getState(row, column));
+            this.grid.setAlive(row, column, alive);
+            this.stateHash ^= Zobrist.getKey(index, this.grid.getState(row, column));
+        } else {
+            this.grid.setAlive(row, column, alive);
+        }
+    }
+
+    /**
+     * Set a state of a cell, grids without dying states keep only whether it is alive
+     */
+    public void setState(int row, int column, int state) {
+        row = fixRow(row);
+        column = fixColumn(column);
+        if (this.stateHashKnown) {
+            long index = (long) row * getWidth() + column;
+            this.stateHash ^= Zobrist.getKey(index, this.grid.getState(row, column));
+            this.grid.setState(row, column, state);
+            this.stateHash ^= Zobrist.getKey(index, this.grid.getState(row, column));
+        } else {
+            this.grid.setState(row, column, state);
+        }
+    }
+
+    /**
+     * Get the neighbourhood of a cell: bits 0-2 are the row above from west to east,
+     * bits 3-5 are the row of the cell and bits 6-8 are the row below.
+     *
+     * @return 9-bit index of the 3x3 square around the cell
+     */
+    public int getNeighbourhood(int row, int column) {
+        return Rules.getNeighbourhood(this.grid, fixRow(row - 1), fixRow(row), fixRow(row + 1), fixColumn(column));
     }
 
     public int getAge(int row, int column) {
-        return this.field[fixRow(row)][fixColumn(column)].getAge();
+        return this.grid.getAge(fixRow(row), fixColumn(column));
+    }
+
+    public int getState(int row, int column) {
+        return this.grid.getState(fixRow(row), fixColumn(column));
+    }
+
+    public int getPopulation() {
+        return this.grid.getPopulation();
+    }
+
+    /**
+     * Zobrist hash of states of cells which doesn't depend on the kind of grid and ages,
+     * so equal fields of the same size have equal hashes.
+     * <p>
+     * The first call looks through the whole field. After that the hash is kept up to date
+     * by {@link #setCell(int, int, boolean)} and passed to next generations calculated by {@link Rules}
+     * and steppers, which update it from the cells that changed. Cells changed through the grid are not noticed.
+     */
+    public long getStateHash() {
+        if (!this.stateHashKnown) {
+            long hash = 0;
+            for (int row = 0; row < getHeight(); row++) {
+                for (int column = 0; column < getWidth(); column++) {
+                    hash ^= Zobrist.getKey((long) row * getWidth() + column, this.grid.getState(row, column));
+                }
+            }
+            this.stateHash = hash;
+            this.stateHashKnown = true;
+        }
+        return this.stateHash;
+    }
+
+    /**
+     * Calculate the state hash of a band of rows as if it was a part of a taller field of the same width.
+     * Hashes of all bands of a field XOR into the hash of the whole field.
+     *
+     * @param fromRow  first row of the band, inclusive
+     * @param toRow    last row of the band, exclusive
+     * @param fieldRow row of the taller field where the band starts
+     */
+    public long getStateHash(int fromRow, int toRow, long fieldRow) {
+        long hash = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            long offset = (fieldRow + row - fromRow) * getWidth();
+            for (int column = 0; column < getWidth(); column++) {
+                hash ^= Zobrist.getKey(offset + column, this.grid.getState(row, column));
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return whether the state hash is kept up to date, so next generations should update it too
+     */
+    boolean isStateHashKnown() {
+        return this.stateHashKnown;
+    }
+
+    /**
+     * Take the state hash of the previous generation changed by the cells which changed since it
+     *
+     * @param delta XOR of old and new Zobrist keys of the changed cells
+     */
+    void updateStateHash(Map previous, long delta) {
+        this.stateHashKnown = previous.stateHashKnown;
+        this.stateHash = previous.stateHash ^ delta;
     }
 
     public Cell[][] getField() {
-        return deepArrayCopy(this.field);
+        Cell[][] copy = new Cell[getHeight()][getWidth()];
+        IntStream.range(0, getHeight()).forEach(
+                row -> IntStream.range(0, getWidth()).forEach(
+                        column -> copy[row][column] = this.grid.getCell(row, column).getCopy()
+                )
+        );
+        return copy;
+    }
+
+    public Grid getGrid() {
+        return this.grid;
+    }
+
+    /**
+     * Overwrite the cells of a map of the same size with the cells of this map, see {@link Grid#copyTo(Grid)}
+     */
+    public void copyTo(Map target) {
+        if (target.getWidth() != getWidth() || target.getHeight() != getHeight()) {
+            throw new IllegalArgumentException("Can't copy a map of size " + getWidth() + "x" + getHeight()
+                    + " into a map of size " + target.getWidth() + "x" + target.getHeight());
+        }
+        this.grid.copyTo(target.grid);
+        target.stateHash = this.stateHash;
+        target.stateHashKnown = this.stateHashKnown && target.grid.getClass() == this.grid.getClass();
     }
 
     public void fillRandomly() {
-        Random random = new Random();
-        IntStream.range(0, this.field.length)
-                .forEach(row -> IntStream.range(0, this.field[row].length)
-                        .forEach(column -> this.field[row][column] =
-                                new Cell(random.nextDouble() < 0.25)
+        fillRandomly(new Random(), DEFAULT_DENSITY);
+    }
+
+    /**
+     * @param random  source of cells, a seeded one gives the same field every time
+     * @param density probability of a cell to be alive
+     */
+    public void fillRandomly(Random random, double density) {
+        this.stateHashKnown = false;
+        IntStream.range(0, getHeight())
+                .forEach(row -> IntStream.range(0, getWidth())
+                        .forEach(column -> this.grid.setCell(row, column,
+                                Cell.of(random.nextDouble() < density, false, 0))
                         )
                 );
     }
 
+    /**
+     * Copy a rectangle of cells into a new map, the rectangle may cross the edges of the field
+     */
+    public Map copy(int row, int column, int width, int height) {
+        Map region = new Map(new ByteGrid(width, height));
+        byte[] states = new byte[width];
+        for (int i = 0; i < height; i++) {
+            readRow(row + i, column, states, width);
+            region.grid.setStates(i, 0, states, 0, width);
+        }
+        return region;
+    }
+
+    /**
+     * Put states of all cells of the pattern into the field, its top left corner at the cell
+     */
+    public void paste(Map pattern, int row, int column) {
+        int width = Math.min(pattern.getWidth(), getWidth());
+        byte[] states = new byte[width];
+        for (int i = 0; i < Math.min(pattern.getHeight(), getHeight()); i++) {
+            pattern.grid.getStates(i, 0, states, 0, width);
+            writeRow(row + i, column, states, width);
+        }
+    }
+
+    /**
+     * Make cells under alive cells of the pattern alive or dead, the rest of cells stay as they are
+     */
+    public void paint(Map pattern, int row, int column, boolean alive) {
+        mergePattern(pattern, row, column, (state, patternState) -> patternState != 1 ? state : alive ? 1 : 0);
+    }
+
+    /**
+     * Flip cells under alive cells of the pattern between alive and dead, so stamping it twice changes nothing
+     * for fields without dying states
+     */
+    public void stamp(Map pattern, int row, int column) {
+        mergePattern(pattern, row, column, (state, patternState) -> patternState != 1 ? state : state == 1 ? 0 : 1);
+    }
+
+    public void fill(int row, int column, int width, int height, boolean alive) {
+        width = Math.min(width, getWidth());
+        byte[] states = new byte[width];
+        Arrays.fill(states, (byte) (alive ? 1 : 0));
+        for (int i = 0; i < Math.min(height, getHeight()); i++) {
+            writeRow(row + i, column, states, width);
+        }
+    }
+
+    public void clear(int row, int column, int width, int height) {
+        fill(row, column, width, height, false);
+    }
+
+    /**
+     * @return new map with the field turned by 90 degrees clockwise
+     */
+    public Map rotate() {
+        Map rotated = new Map(new ByteGrid(getHeight(), getWidth()));
+        byte[] states = new byte[getWidth()];
+        for (int row = 0; row < getHeight(); row++) {
+            this.grid.getStates(row, 0, states, 0, states.length);
+            int column = getHeight() - 1 - row;
+            for (int i = 0; i < states.length; i++) {
+                rotated.grid.setState(i, column, states[i] & 0xFF);
+            }
+        }
+        return rotated;
+    }
+
+    /**
+     * @return new map with the field flipped from left to right
+     */
+    public Map mirror() {
+        Map mirrored = new Map(new ByteGrid(getWidth(), getHeight()));
+        byte[] states = new byte[getWidth()];
+        for (int row = 0; row < getHeight(); row++) {
+            this.grid.getStates(row, 0, states, 0, states.length);
+            for (int left = 0, right = states.length - 1; left < right; left++, right--) {
+                byte state = states[left];
+                states[left] = states[right];
+                states[right] = state;
+            }
+            mirrored.grid.setStates(row, 0, states, 0, states.length);
+        }
+        return mirrored;
+    }
+
+    private void mergePattern(Map pattern, int row, int column, IntBinaryOperator merge) {
+        int width = Math.min(pattern.getWidth(), getWidth());
+        byte[] patternStates = new byte[width];
+        byte[] states = new byte[width];
+        for (int i = 0; i < Math.min(pattern.getHeight(), getHeight()); i++) {
+            pattern.grid.getStates(i, 0, patternStates, 0, width);
+            readRow(row + i, column, states, width);
+            for (int j = 0; j < width; j++) {
+                states[j] = (byte) merge.applyAsInt(states[j] & 0xFF, patternStates[j] & 0xFF);
+            }
+            writeRow(row + i, column, states, width);
+        }
+    }
+
+    /**
+     * Read states of a segment of a row which may wrap around the right edge of the field
+     */
+    private void readRow(int row, int column, byte[] states, int length) {
+        row = Math.floorMod(row, getHeight());
+        column = Math.floorMod(column, getWidth());
+        int head = Math.min(length, getWidth() - column);
+        this.grid.getStates(row, column, states, 0, head);
+        this.grid.getStates(row, 0, states, head, length - head);
+    }
+
+    /**
+     * Write states of a segment of a row which may wrap around the right edge of the field,
+     * the state hash is updated from the states the grid actually keeps
+     */
+    private void writeRow(int row, int column, byte[] states, int length) {
+        row = Math.floorMod(row, getHeight());
+        column = Math.floorMod(column, getWidth());
+        byte[] old = null;
+        if (this.stateHashKnown) {
+            old = new byte[length];
+            readRow(row, column, old, length);
+        }
+        int head = Math.min(length, getWidth() - column);
+        this.grid.setStates(row, column, states, 0, head);
+        this.grid.setStates(row, 0, states, head, length - head);
+        if (old != null) {
+            byte[] kept = new byte[length];
+            readRow(row, column, kept, length);
+            for (int i = 0; i < length; i++) {
+                if (old[i] != kept[i]) {
+                    long index = (long) row * getWidth() + (column + i) % getWidth();
+                    this.stateHash ^= Zobrist.getKey(index, old[i] & 0xFF) ^ Zobrist.getKey(index, kept[i] & 0xFF);
+                }
+            }
+        }
+    }
+
     public int fixRow(int row) {
         if (row < 0) {
-            row = this.field.length + row;
+            row = getHeight() + row;
         }
-        if (row > this.field.length - 1) {
-            row -= this.field.length;
+        if (row > getHeight() - 1) {
+            row -= getHeight();
         }
         return row;
     }
 
     public int fixColumn(int column) {
         if (column < 0) {
-            column = this.field[0].length + column;
+            column = getWidth() + column;
         }
-        if (column > this.field[0].length - 1) {
-            column -= this.field[0].length;
+        if (column > getWidth() - 1) {
+            column -= getWidth();
         }
         return column;
     }
 
-    private Cell[][] fillFromBoolean(Boolean[][] source) {
-        Cell[][] field = new Cell[source.length][source[0].length];
-        IntStream.range(0, source.length).forEach(
-                row -> IntStream.range(0, source[row].length).forEach(
-                        column -> field[row][column] = new Cell(source[row][column])
-                )
-        );
-        return field;
-    }
-
-    private Cell[][] deepArrayCopy(Cell[][] source) {
-        Cell[][] copy = new Cell[source.length][source[0].length];
-        IntStream.range(0, source.length).forEach(
-                row -> IntStream.range(0, source[row].length).forEach(
-                        column -> copy[row][column] = source[row][column].getCopy()
-                )
-        );
-        return copy;
-    }
-
 }
@@ -0,0 +1,64 @@
+package com.ppetrov.game.model;
+
+/**
+ * MapBuffer flips between two maps of the same size,
+ * so stepping does not allocate a new field for every generation.
+ * A map returned by {@link #step(Rules)} stays untouched only until the step after the next one.
+ * <p>
+ * Maps of grids without dying states are converted to {@link ByteGrid} by the first step of rules which have them,
+ * like {@link Rules#nextState(Map)} does.
+ */
+public class MapBuffer {
+
+    private Map current;
+    private Map next;
+
+    public MapBuffer(Map map) {
+        this.current = map;
+        this.next = new Map(map.getGrid().copy());
+    }
+
+    public Map getCurrent() {
+        return this.current;
+    }
+
+    public Map step(Rules rules) {
+        convert(rules);
+        return flip(rules.nextState(this.current, this.next));
+    }
+
+    public Map step(Rules rules, Stepper stepper) {
+        convert(rules);
+        return flip(stepper.nextState(rules, this.current, this.next));
+    }
+
+    /**
+     * @param counter counter of births and deaths of cells, or null
+     */
+    public Map step(Rules rules, ChangeCounter counter) {
+        convert(rules);
+        return flip(rules.nextState(this.current, this.next, counter));
+    }
+
+    /**
+     * @param counter counter of births and deaths of cells, or null
+     */
+    public Map step(Rules rules, Stepper stepper, ChangeCounter counter) {
+        convert(rules);
+        return flip(stepper.nextState(rules, this.current, this.next, counter));
+    }
+
+    private void convert(Rules rules) {
+        if (rules.getStates() > 2 && !(this.current.getGrid() instanceof ByteGrid)) {
+            this.current = new Map(new ByteGrid(this.current.getGrid()));
+            this.next = new Map(this.current.getGrid().copy());
+        }
+    }
+
+    private Map flip(Map calculated) {
+        this.next = this.current;
+        this.current = calculated;
+        return calculated;
+    }
+
+}
@@ -0,0 +1,379 @@
+package com.ppetrov.game.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * OffHeapGrid keeps liveness of the cells packed 64 cells per word like {@link BitGrid},
+ * but outside of the Java heap, so the size of a field is not limited by -Xmx and does not slow down GC.
+ * Rows are split into chunks of whole rows up to {@link #CHUNK_BYTES}, every chunk is a direct buffer
+ * or a region of a memory mapped file. A 100000x100000 field takes 1.25 GB.
+ * <p>
+ * Direct buffers are limited by -XX:MaxDirectMemorySize, which is equal to -Xmx by default,
+ * fields backed by a file are limited only by the disk and are paged in and out by the OS.
+ * Memory is released when the grid is garbage collected.
+ * <p>
+ * Population of fields with more than {@link Integer#MAX_VALUE} alive cells is given by {@link #getAliveCount()}.
+ */
+public class OffHeapGrid implements Grid {
+
+    static final int CHUNK_BYTES = 64 << 20;
+
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final int rowsPerChunk;
+    private final LongBuffer[] chunks;
+    private final Path file;
+
+    /**
+     * Allocate a field of dead cells in direct buffers
+     */
+    public OffHeapGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = BitKernel.getWordsPerRow(width);
+        this.rowsPerChunk = getRowsPerChunk(this.wordsPerRow);
+        this.chunks = new LongBuffer[(height + this.rowsPerChunk - 1) / this.rowsPerChunk];
+        this.file = null;
+        for (int chunk = 0; chunk < this.chunks.length; chunk++) {
+            this.chunks[chunk] = ByteBuffer.allocateDirect(getChunkBytes(chunk))
+                    .order(ByteOrder.nativeOrder())
+                    .asLongBuffer();
+        }
+    }
+
+    private OffHeapGrid(int width, int height, Path file) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = BitKernel.getWordsPerRow(width);
+        this.rowsPerChunk = getRowsPerChunk(this.wordsPerRow);
+        this.chunks = new LongBuffer[(height + this.rowsPerChunk - 1) / this.rowsPerChunk];
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            for (int chunk = 0; chunk < this.chunks.length; chunk++) {
+                int bytes = getChunkBytes(chunk);
+                this.chunks[chunk] = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes)
+                        .order(ByteOrder.nativeOrder())
+                        .asLongBuffer();
+                position += bytes;
+            }
+        }
+    }
+
+    /**
+     * Create a field of dead cells backed by a memory mapped file, the file is overwritten.
+     * Copies of the grid are backed by temporary files in the same directory, deleted on exit.
+     *
+     * @param file file to keep the cells in, it takes as much space as the field
+     */
+    public static OffHeapGrid map(Path file, int width, int height) throws IOException {
+        return new OffHeapGrid(width, height, file);
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public Cell getCell(int row, int column) {
+        return Cell.of(isAlive(row, column), false, 0);
+    }
+
+    @Override
+    public void setCell(int row, int column, Cell cell) {
+        setAlive(row, column, cell.isAlive());
+    }
+
+    @Override
+    public boolean isAlive(int row, int column) {
+        return (getChunk(row).get(getWordIndex(row, column)) & getBit(column)) != 0;
+    }
+
+    @Override
+    public void setAlive(int row, int column, boolean alive) {
+        LongBuffer chunk = getChunk(row);
+        int index = getWordIndex(row, column);
+        long word = chunk.get(index);
+        chunk.put(index, alive ? word | getBit(column) : word & ~getBit(column));
+    }
+
+    @Override
+    public int getAge(int row, int column) {
+        return 0;
+    }
+
+    @Override
+    public void getStates(int row, int column, byte[] states, int offset, int length) {
+        LongBuffer chunk = getChunk(row);
+        for (int i = 0; i < length; ) {
+            int bit = (column + i) % Long.SIZE;
+            int count = Math.min(length - i, Long.SIZE - bit);
+            long word = chunk.get(getWordIndex(row, column + i)) >>> bit;
+            for (int j = 0; j < count; j++) {
+                states[offset + i + j] = (byte) ((word >>> j) & 1);
+            }
+            i += count;
+        }
+    }
+
+    /**
+     * Set liveness of the cells of a row a word at a time, dying states are dead
+     */
+    @Override
+    public void setStates(int row, int column, byte[] states, int offset, int length) {
+        LongBuffer chunk = getChunk(row);
+        for (int i = 0; i < length; ) {
+            int index = getWordIndex(row, column + i);
+            int bit = (column + i) % Long.SIZE;
+            int count = Math.min(length - i, Long.SIZE - bit);
+            long bits = 0;
+            for (int j = 0; j < count; j++) {
+                bits |= (states[offset + i + j] == 1 ? 1L : 0L) << j;
+            }
+            long mask = (count == Long.SIZE ? -1L : (1L << count) - 1) << bit;
+            chunk.put(index, (chunk.get(index) & ~mask) | (bits << bit));
+            i += count;
+        }
+    }
+
+    /**
+     * Count alive cells a word at a time
+     */
+    @Override
+    public void countAlive(int row, int[] columns, int[] counts, int length) {
+        LongBuffer chunk = getChunk(row);
+        int offset = getRowOffset(row);
+        for (int i = 0; i < length; i++) {
+            int from = columns[i];
+            int to = columns[i + 1];
+            if (from == to) {
+                continue;
+            }
+            int first = offset + from / Long.SIZE;
+            int last = offset + (to - 1) / Long.SIZE;
+            long firstMask = -1L << from;
+            long lastMask = -1L >>> (Long.SIZE - 1 - (to - 1) % Long.SIZE);
+            if (first == last) {
+                counts[i] += Long.bitCount(chunk.get(first) & firstMask & lastMask);
+                continue;
+            }
+            int count = Long.bitCount(chunk.get(first) & firstMask) + Long.bitCount(chunk.get(last) & lastMask);
+            for (int index = first + 1; index < last; index++) {
+                count += Long.bitCount(chunk.get(index));
+            }
+            counts[i] += count;
+        }
+    }
+
+    /**
+     * @return amount of alive cells, saturated at {@link Integer#MAX_VALUE}
+     */
+    @Override
+    public int getPopulation() {
+        return (int) Math.min(getAliveCount(), Integer.MAX_VALUE);
+    }
+
+    public long getAliveCount() {
+        long alive = 0;
+        for (LongBuffer chunk : this.chunks) {
+            for (int index = 0; index < chunk.capacity(); index++) {
+                alive += Long.bitCount(chunk.get(index));
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * @return copy in direct buffers, or in a temporary file next to the file of this grid
+     * @throws UncheckedIOException if the temporary file can't be created
+     */
+    @Override
+    public OffHeapGrid copy() {
+        OffHeapGrid copy;
+        if (this.file == null) {
+            copy = new OffHeapGrid(this.width, this.height);
+        } else {
+            try {
+                Path directory = this.file.toAbsolutePath().getParent();
+                Path copyFile = Files.createTempFile(directory, this.file.getFileName().toString(), ".copy");
+                copyFile.toFile().deleteOnExit();
+                copy = new OffHeapGrid(this.width, this.height, copyFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can't create a copy of " + this.file, e);
+            }
+        }
+        for (int chunk = 0; chunk < this.chunks.length; chunk++) {
+            copy.chunks[chunk].put(this.chunks[chunk].duplicate());
+            copy.chunks[chunk].clear();
+        }
+        return copy;
+    }
+
+    @Override
+    public void copyTo(Grid target) {
+        if (target instanceof OffHeapGrid && target.getWidth() == this.width && target.getHeight() == this.height) {
+            OffHeapGrid grid = (OffHeapGrid) target;
+            for (int chunk = 0; chunk < this.chunks.length; chunk++) {
+                grid.chunks[chunk].put(this.chunks[chunk].duplicate());
+                grid.chunks[chunk].clear();
+            }
+        } else {
+            Grid.super.copyTo(target);
+        }
+    }
+
+    /**
+     * @return file backing the grid, or null if it is kept in direct buffers
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Calculate next state of the rows from fromRow inclusive to toRow exclusive into the target grid.
+     * Three rows at a time are copied to the heap and stepped by {@link RowKernel},
+     * so rows of different ranges can be calculated concurrently.
+     *
+     * @param hashing whether the change of the state hash should be calculated
+     * @param counter counter of births and deaths, or null
+     * @return XOR of Zobrist keys of cells which changed their liveness, 0 if not hashing
+     */
+    long nextState(int born, int survives, OffHeapGrid target, int fromRow, int toRow,
+                   boolean hashing, ChangeCounter counter) {
+        long[] rows = new long[3 * this.wordsPerRow];
+        long[] next = new long[3 * this.wordsPerRow];
+        int north = 0;
+        int centre = this.wordsPerRow;
+        int south = 2 * this.wordsPerRow;
+        if (fromRow < toRow) {
+            readRow(fromRow == 0 ? this.height - 1 : fromRow - 1, rows, north);
+            readRow(fromRow, rows, centre);
+        }
+
+        long delta = 0;
+        long births = 0;
+        long deaths = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            readRow(row == this.height - 1 ? 0 : row + 1, rows, south);
+            RowKernel.stepRow(rows, north, centre, south, next, this.width, born, survives);
+            target.writeRow(row, next, centre);
+            if (hashing || counter != null) {
+                for (int word = 0; word < this.wordsPerRow; word++) {
+                    long current = rows[centre + word];
+                    long nextWord = next[centre + word];
+                    if (hashing) {
+                        delta ^= getWordDelta(row, word, nextWord ^ current);
+                    }
+                    births += Long.bitCount(nextWord & ~current);
+                    deaths += Long.bitCount(current & ~nextWord);
+                }
+            }
+
+            int previous = north;
+            north = centre;
+            centre = south;
+            south = previous;
+        }
+        if (counter != null) {
+            counter.addChanges(births, deaths);
+        }
+        return delta;
+    }
+
+    private long getWordDelta(int row, int word, long changed) {
+        return changed == 0 ? 0 : Zobrist.getWordDelta(changed, (long) row * this.width + (long) word * Long.SIZE);
+    }
+
+    /**
+     * Put words of the rows from fromRow inclusive to toRow exclusive into the buffer,
+     * every row takes {@link #getWordsPerRow()} words and bits after its last column are 0
+     */
+    public void writeRows(LongBuffer buffer, int fromRow, int toRow) {
+        for (int row = fromRow; row < toRow; row++) {
+            buffer.put(getRow(row));
+        }
+    }
+
+    /**
+     * Take words of the rows from fromRow inclusive to toRow exclusive from the buffer without copying them
+     * through the heap, bits after the last column of a row are ignored
+     */
+    public void readRows(LongBuffer buffer, int fromRow, int toRow) {
+        long lastWordMask = BitKernel.getLastWordMask(this.width);
+        for (int row = fromRow; row < toRow; row++) {
+            LongBuffer words = buffer.duplicate();
+            words.limit(words.position() + this.wordsPerRow);
+            getRow(row).put(words);
+            buffer.position(buffer.position() + this.wordsPerRow);
+
+            LongBuffer chunk = getChunk(row);
+            int last = getRowOffset(row) + this.wordsPerRow - 1;
+            chunk.put(last, chunk.get(last) & lastWordMask);
+        }
+    }
+
+    public int getWordsPerRow() {
+        return this.wordsPerRow;
+    }
+
+    private void readRow(int row, long[] words, int offset) {
+        getRow(row).get(words, offset, this.wordsPerRow);
+    }
+
+    private void writeRow(int row, long[] words, int offset) {
+        getRow(row).put(words, offset, this.wordsPerRow);
+    }
+
+    /**
+     * @return independent view of the words of the row, safe to move across threads
+     */
+    private LongBuffer getRow(int row) {
+        LongBuffer view = getChunk(row).duplicate();
+        int start = getRowOffset(row);
+        view.limit(start + this.wordsPerRow);
+        view.position(start);
+        return view;
+    }
+
+    private LongBuffer getChunk(int row) {
+        return this.chunks[row / this.rowsPerChunk];
+    }
+
+    private int getRowOffset(int row) {
+        return row % this.rowsPerChunk * this.wordsPerRow;
+    }
+
+    private int getWordIndex(int row, int column) {
+        return getRowOffset(row) + column / Long.SIZE;
+    }
+
+    private int getChunkBytes(int chunk) {
+        int rows = Math.min(this.rowsPerChunk, this.height - chunk * this.rowsPerChunk);
+        return rows * this.wordsPerRow * Long.BYTES;
+    }
+
+    private static int getRowsPerChunk(int wordsPerRow) {
+        return Math.max(1, CHUNK_BYTES / (wordsPerRow * Long.BYTES));
+    }
+
+    private static long getBit(int column) {
+        return 1L << (column % Long.SIZE);
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.ppetrov.game.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * ParallelStepper calculates the next generation in horizontal stripes on several threads.
+ * Every stripe reads only the previous generation and writes only its own rows,
+ * so the result is identical to {@link Rules#nextState(Map, Map)}.
+ * A generation is finished only when all of its stripes are.
+ */
+public class ParallelStepper implements Stepper, AutoCloseable {
+
+    public static final int DEFAULT_STRIPE_HEIGHT = 64;
+
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final int stripeHeight;
+
+    public ParallelStepper() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_STRIPE_HEIGHT);
+    }
+
+    /**
+     * Create a stepper with its own fork-join pool
+     *
+     * @param threads      amount of threads calculating stripes
+     * @param stripeHeight amount of rows calculated by one task
+     */
+    public ParallelStepper(int threads, int stripeHeight) {
+        this(new ForkJoinPool(threads), stripeHeight, true);
+    }
+
+    /**
+     * Create a stepper calculating stripes on the specified executor,
+     * which is not shut down by {@link #close()}
+     *
+     * @param executor     executor of stripe tasks
+     * @param stripeHeight amount of rows calculated by one task
+     */
+    public ParallelStepper(ExecutorService executor, int stripeHeight) {
+        this(executor, stripeHeight, false);
+    }
+
+    private ParallelStepper(ExecutorService executor, int stripeHeight, boolean ownExecutor) {
+        if (stripeHeight < 1) {
+            throw new IllegalArgumentException("Stripe height should be positive: " + stripeHeight);
+        }
+        this.executor = executor;
+        this.stripeHeight = stripeHeight;
+        this.ownExecutor = ownExecutor;
+    }
+
+    @Override
+    public Map nextState(Rules rules, Map map, Map target) {
+        return nextState(rules, map, target, null);
+    }
+
+    @Override
+    public Map nextState(Rules rules, Map map, Map target, ChangeCounter counter) {
+        int height = map.getHeight();
+        if (height <= this.stripeHeight) {
+            return rules.nextState(map, target, counter);
+        }
+
+        List<Callable<Long>> stripes = new ArrayList<>();
+        for (int fromRow = 0; fromRow < height; fromRow += this.stripeHeight) {
+            int from = fromRow;
+            int to = Math.min(fromRow + this.stripeHeight, height);
+            stripes.add(() -> rules.nextState(map, target, from, to, counter));
+        }
+
+        try {
+            long delta = 0;
+            for (Future<Long> stripe : this.executor.invokeAll(stripes)) {
+                delta ^= stripe.get();
+            }
+            target.updateStateHash(map, delta);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calculating next state", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to calculate next state", e.getCause());
+        }
+        return target;
+    }
+
+    public int getStripeHeight() {
+        return this.stripeHeight;
+    }
+
+    @Override
+    public void close() {
+        if (this.ownExecutor) {
+            this.executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.ppetrov.game.model;
+
+/**
+ * Step of whole rows of a {@link BitGrid}, word by word with {@link BitKernel#stepWord}.
+ * On Java 16 and newer the multi-release jar replaces this class with one stepping
+ * several words at once with the Vector API, its results are bit-identical to these.
+ */
+final class RowKernel {
+
+    private RowKernel() {
+    }
+
+    /**
+     * @return name of the kernel which steps rows in this JVM
+     */
+    static String getName() {
+        return "scalar";
+    }
+
+    /**
+     * Calculate next state of a row into the target words at the same offset
+     *
+     * @param words        words of the grid, rows wrap around vertically by the offsets
+     * @param northOffset  offset of the row above
+     * @param centreOffset offset of the row itself
+     * @param southOffset  offset of the row below
+     * @param width        amount of cells in the row
+     */
+    static void stepRow(long[] words, int northOffset, int centreOffset, int southOffset,
+                        long[] target, int width, int born, int survives) {
+        int wordsPerRow = BitKernel.getWordsPerRow(width);
+        for (int word = 0; word < wordsPerRow; word++) {
+            target[centreOffset + word] = BitKernel.stepWord(
+                    words, northOffset,
+                    words, centreOffset,
+                    words, southOffset,
+                    word, width, born, survives
+            );
+        }
+    }
+
+}
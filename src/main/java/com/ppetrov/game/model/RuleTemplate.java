@@ -10,7 +10,12 @@ public enum RuleTemplate {
     HIGH_LIFE("High Life", new Rules(new int[]{3, 6}, new int[]{2, 3})),
     DAY_AND_NIGHT("Day & Night", new Rules(new int[]{3, 6, 7, 8}, new int[]{3, 4, 6, 7, 8})),
     MORLEY("Morley", new Rules(new int[]{3, 6, 8}, new int[]{2, 4, 5})),
-    ANNEAL("Anneal", new Rules(new int[]{4, 6, 7, 8}, new int[]{3, 5, 6, 7, 8}));
+    ANNEAL("Anneal", new Rules(new int[]{4, 6, 7, 8}, new int[]{3, 5, 6, 7, 8})),
+    BRIANS_BRAIN("Brian's Brain", new Rules(new int[]{2}, new int[]{}, 3)),
+    STAR_WARS("Star Wars", new Rules(new int[]{2}, new int[]{3, 4, 5}, 4)),
+    BOSCO("Bosco's Rule", Rules.parse("R5,C0,M1,S34..58,B34..45,NM")),
+    MAJORITY("Majority", Rules.parse("R4,C0,M1,S41..81,B41..81,NM")),
+    GLOBE("Globe", Rules.parse("R8,C0,M0,S163..223,B74..252,NM"));
 
     private String name;
     private Rules rules;
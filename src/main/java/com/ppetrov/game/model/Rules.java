@@ -1,111 +1,370 @@
 package com.ppetrov.game.model;
 
-import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
-
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+/**
+ * Rules are compiled into a table of next states indexed by the whole 3x3 neighbourhood,
+ * see {@link Map#getNeighbourhood(int, int)} for its layout.
+ * Outer totalistic rules and isotropic non-totalistic rules in Hensel notation
+ * are looked up the same way.
+ * <p>
+ * Rules with more than two states are Generations rules: a cell which doesn't survive
+ * goes through dying states before it is dead, and only dead cells can be born.
+ * They need maps with a state plane, see {@link ByteGrid}.
+ * <p>
+ * Rules with wider neighbourhoods are {@link LargerThanLifeRules}.
+ */
 public class Rules {
 
-    private final Set<Integer> born;
-    private final Set<Integer> survives;
-    private int maxAge = 20;
+    public static final int MAX_STATES = 256;
+    public static final int DEFAULT_MAX_AGE = 20;
+
+    private final boolean[] table;
+    private final int bornMask;
+    private final int survivesMask;
+    private final boolean totalistic;
+    private final int states;
+    private final byte[] transitions;
+    private int maxAge = DEFAULT_MAX_AGE;
 
     public Rules(int[] born, int[] survives) {
-        this.born = Collections.unmodifiableSet(
-                Arrays.stream(born)
-                        .boxed()
-                        .collect(Collectors.toSet())
-        );
-        this.survives = Collections.unmodifiableSet(
-                Arrays.stream(survives)
-                        .boxed()
-                        .collect(Collectors.toSet())
-        );
+        this(born, survives, 2);
     }
 
-    public Map nextState(Map map) {
-        Cell[][] nextStateField = map.getField();
+    /**
+     * @param states amount of states of a cell including alive and dead ones, from 2 to 256
+     */
+    public Rules(int[] born, int[] survives, int states) {
+        this(createTable(born, survives), states);
+    }
+
+    /**
+     * Create rules which calculate next generations themselves, the table of the 3x3 square is left empty
+     */
+    Rules(int states) {
+        this(new boolean[HenselNotation.SIZE], states);
+    }
 
-        IntStream.range(0, map.getHeight()).forEach(
-                row -> IntStream.range(0, map.getWidth()).forEach(
-                        column -> setNextState(map, nextStateField, row, column)
+    private Rules(boolean[] table, int states) {
+        if (states < 2 || states > MAX_STATES) {
+            throw new IllegalArgumentException("Amount of states should be from 2 to " + MAX_STATES + ": " + states);
+        }
+        this.table = table;
+        this.states = states;
+        this.transitions = createTransitions(states);
+        this.bornMask = getCountsMask(table, 0);
+        this.survivesMask = getCountsMask(table, HenselNotation.CENTRE);
+        this.totalistic = IntStream.range(0, table.length).allMatch(
+                neighbourhood -> table[neighbourhood] == contains(
+                        (neighbourhood & HenselNotation.CENTRE) == 0 ? this.bornMask : this.survivesMask,
+                        HenselNotation.getCount(neighbourhood)
                 )
         );
+    }
+
+    /**
+     * Create rules from a rule string
+     *
+     * @param rule rule in B/S notation, like B36/S23, optionally with Hensel letters, like B2-a/S12,
+     *             and with amount of states for Generations rules, like B2/S/C3 or 345/2/4,
+     *             or Larger than Life rule, like R5,C0,M1,S34..58,B34..45,NM
+     * @return compiled rules
+     * @throws IllegalArgumentException if the rule can't be parsed
+     */
+    public static Rules parse(String rule) {
+        if (LargerThanLifeRules.isLargerThanLife(rule)) {
+            return LargerThanLifeRules.parse(rule);
+        }
+        String[] parts = rule.trim().split("/");
+        if (parts.length != 3) {
+            return new Rules(HenselNotation.parse(rule), 2);
+        }
+
+        String states = parts[2].trim().replaceFirst("^[CcGg]", "");
+        try {
+            return new Rules(HenselNotation.parse(parts[0] + "/" + parts[1]), Integer.parseInt(states));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unexpected amount of states in rule " + rule, e);
+        }
+    }
+
+    public Map nextState(Map map) {
+        return nextState(map, (ChangeCounter) null);
+    }
+
+    /**
+     * @param counter counter of births and deaths of cells, or null
+     */
+    public Map nextState(Map map, ChangeCounter counter) {
+        if (this.states > 2 && !(map.getGrid() instanceof ByteGrid)) {
+            map = new Map(new ByteGrid(map.getGrid()));
+        }
+        return nextState(map, new Map(map.getGrid().copy()), counter);
+    }
+
+    /**
+     * Calculate next state of the map into another map of the same size.
+     * Nothing is allocated on the way, so two maps can be flipped forever.
+     *
+     * @param map    current state, it is not changed
+     * @param target map to overwrite with the next state
+     * @return target map
+     */
+    public Map nextState(Map map, Map target) {
+        return nextState(map, target, null);
+    }
+
+    /**
+     * Calculate next state of the map into another map and report births and deaths of cells
+     *
+     * @param counter counter of births and deaths, or null
+     * @return target map
+     */
+    public Map nextState(Map map, Map target, ChangeCounter counter) {
+        long delta = nextState(map, target, 0, map.getHeight(), counter);
+        target.updateStateHash(map, delta);
+        return target;
+    }
+
+    /**
+     * Calculate next state of the rows from fromRow inclusive to toRow exclusive,
+     * other rows of the target map are not touched
+     *
+     * @param counter counter of births and deaths, or null
+     * @return change of the state hash made by the rows, 0 if the hash of the map is not known
+     */
+    long nextState(Map map, Map target, int fromRow, int toRow, ChangeCounter counter) {
+        Grid grid = map.getGrid();
+        boolean hashing = map.isStateHashKnown();
+        if (grid instanceof ByteGrid) {
+            return ((ByteGrid) grid).nextState(this, (ByteGrid) target.getGrid(), fromRow, toRow, hashing, counter);
+        } else if (this.states > 2) {
+            throw new IllegalArgumentException("Rules " + this + " need a map with a state plane");
+        } else if (grid instanceof BitGrid && this.totalistic) {
+            return ((BitGrid) grid).nextState(this.bornMask, this.survivesMask, (BitGrid) target.getGrid(),
+                    fromRow, toRow, hashing, counter);
+        } else if (grid instanceof OffHeapGrid && this.totalistic) {
+            return ((OffHeapGrid) grid).nextState(this.bornMask, this.survivesMask, (OffHeapGrid) target.getGrid(),
+                    fromRow, toRow, hashing, counter);
+        }
+
+        Grid targetGrid = target.getGrid();
+        long delta = 0;
+        long births = 0;
+        long deaths = 0;
+        for (int row = fromRow; row < toRow; row++) {
+            setNextRowState(grid, targetGrid, row);
+            if (!hashing && counter == null) {
+                continue;
+            }
+            for (int column = 0; column < grid.getWidth(); column++) {
+                int state = grid.getState(row, column);
+                int next = targetGrid.getState(row, column);
+                if (state != next) {
+                    long index = (long) row * grid.getWidth() + column;
+                    delta ^= Zobrist.getKey(index, state) ^ Zobrist.getKey(index, next);
+                    births += next == 1 ? 1 : 0;
+                    deaths += state == 1 ? 1 : 0;
+                }
+            }
+        }
+        if (counter != null) {
+            counter.addChanges(births, deaths);
+        }
+        return hashing ? delta : 0;
+    }
+
+    /**
+     * @param neighbourhood 9-bit index of the 3x3 square around a cell
+     * @return whether the cell will be alive in the next generation, not counting its age
+     */
+    public boolean isAliveNext(int neighbourhood) {
+        return this.table[neighbourhood];
+    }
+
+    /**
+     * @return whether the next state depends only on the amount of alive neighbours
+     */
+    public boolean isTotalistic() {
+        return this.totalistic;
+    }
+
+    int getBornMask() {
+        return this.bornMask;
+    }
 
-        return new Map(nextStateField);
+    int getSurvivesMask() {
+        return this.survivesMask;
     }
 
     public int[] getBorn() {
-        return ArrayUtils.toPrimitive(this.born.toArray(new Integer[this.born.size()]));
+        return getCounts(this.bornMask);
     }
 
     public int[] getSurvives() {
-        return ArrayUtils.toPrimitive(this.survives.toArray(new Integer[this.survives.size()]));
+        return getCounts(this.survivesMask);
+    }
+
+    public int getStates() {
+        return this.states;
+    }
+
+    /**
+     * @return radius of the neighbourhood, 1 for rules of the 3x3 square
+     */
+    public int getRange() {
+        return 1;
+    }
+
+    public int getMaxAge() {
+        return this.maxAge;
     }
 
     public void setMaxAge(int maxAge) {
         this.maxAge = maxAge;
     }
 
-    private void setNextState(Map map, Cell[][] nextStateField, int row, int column) {
-        int aliveNeighbours = countOfAliveNeighbours(map, row, column);
-        Cell cell = nextStateField[row][column];
-        if (this.born.contains(aliveNeighbours) &&
-                !map.isSet(row, column)) {
-            nextStateField[row][column] = cell.setAlive(true);
-        } else if (!this.survives.contains(aliveNeighbours)) {
-            nextStateField[row][column] = cell.setAlive(false);
-        } else if (map.isSet(row, column)) {
-            if (cell.getAge() < this.maxAge || cell.isImmortal()) {
-                nextStateField[row][column] = cell.addYear();
+    /**
+     * @return copy of these rules with another max age, so that shared rules are not changed
+     */
+    public Rules withMaxAge(int maxAge) {
+        Rules rules = new Rules(this.table, this.states);
+        rules.setMaxAge(maxAge);
+        return rules;
+    }
+
+    /**
+     * Next states of a cell not counting its age, indexed by its current state shifted left by one
+     * and the bit from the table, see {@link #isAliveNext(int)}
+     */
+    byte[] getTransitions() {
+        return this.transitions;
+    }
+
+    /**
+     * @param north row above the cell, already wrapped around the grid
+     * @param south row below the cell, already wrapped around the grid
+     */
+    static int getNeighbourhood(Grid grid, int north, int row, int south, int column) {
+        int width = grid.getWidth();
+        int neighbourhood = slide(0, getColumnBits(grid, north, row, south, column == 0 ? width - 1 : column - 1));
+        neighbourhood = slide(neighbourhood, getColumnBits(grid, north, row, south, column));
+        return slide(neighbourhood, getColumnBits(grid, north, row, south, column == width - 1 ? 0 : column + 1));
+    }
+
+    private void setNextRowState(Grid grid, Grid target, int row) {
+        int height = grid.getHeight();
+        int width = grid.getWidth();
+        int north = row == 0 ? height - 1 : row - 1;
+        int south = row == height - 1 ? 0 : row + 1;
+        boolean ageing = !(grid instanceof BitGrid);
+
+        int neighbourhood = getNeighbourhood(grid, north, row, south, width - 1);
+        for (int column = 0; column < width; column++) {
+            neighbourhood = slide(neighbourhood,
+                    getColumnBits(grid, north, row, south, column == width - 1 ? 0 : column + 1));
+            boolean alive = this.table[neighbourhood];
+            if (ageing) {
+                target.setCell(row, column, getNextCell(grid.getCell(row, column), alive));
             } else {
-                nextStateField[row][column] = new Cell(false);
+                target.setAlive(row, column, alive);
             }
         }
     }
 
-    private int countOfAliveNeighbours(Map map, int row, int column) {
-        return IntStream.rangeClosed(row - 1, row + 1)
-                .mapToLong(i -> IntStream.rangeClosed(column - 1, column + 1)
-                        .filter(j -> !(i == row && j == column) && map.isSet(i, j))
-                        .count())
-                .mapToInt(Math::toIntExact).sum();
+    Cell getNextCell(Cell cell, boolean alive) {
+        if (cell.isAlive() != alive) {
+            return cell.setAlive(alive);
+        } else if (!alive) {
+            return cell;
+        } else if (cell.getAge() < this.maxAge || cell.isImmortal()) {
+            return cell.addYear();
+        }
+        return Cell.of(false, false, 0);
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder("B");
+    /**
+     * Move the 3x3 square one column to the east
+     *
+     * @param columnBits cells of the new eastern column in bits 0, 3 and 6
+     */
+    static int slide(int neighbourhood, int columnBits) {
+        return ((neighbourhood >> 1) & 0b011011011) | (columnBits << 2);
+    }
+
+    private static int getColumnBits(Grid grid, int north, int row, int south, int column) {
+        return (grid.isAlive(north, column) ? 1 : 0)
+                | (grid.isAlive(row, column) ? 1 << 3 : 0)
+                | (grid.isAlive(south, column) ? 1 << 6 : 0);
+    }
+
+    private static boolean[] createTable(int[] born, int[] survives) {
+        int bornMask = Arrays.stream(born).map(count -> 1 << count).reduce(0, (a, b) -> a | b);
+        int survivesMask = Arrays.stream(survives).map(count -> 1 << count).reduce(0, (a, b) -> a | b);
+
+        boolean[] table = new boolean[HenselNotation.SIZE];
+        IntStream.range(0, table.length).forEach(
+                neighbourhood -> table[neighbourhood] = contains(
+                        (neighbourhood & HenselNotation.CENTRE) == 0 ? bornMask : survivesMask,
+                        HenselNotation.getCount(neighbourhood)
+                )
+        );
+        return table;
+    }
+
+    private static byte[] createTransitions(int states) {
+        byte[] transitions = new byte[states * 2];
+        transitions[1] = 1;
+        transitions[2] = (byte) (states > 2 ? 2 : 0);
+        transitions[3] = 1;
+        for (int state = 2; state < states; state++) {
+            byte next = (byte) (state + 1 < states ? state + 1 : 0);
+            transitions[state * 2] = next;
+            transitions[state * 2 + 1] = next;
+        }
+        return transitions;
+    }
 
-        this.born.forEach(sb::append);
-        sb.append("/S");
-        this.survives.forEach(sb::append);
+    /**
+     * @return mask of neighbour counts which have at least one configuration set in the table
+     */
+    private static int getCountsMask(boolean[] table, int centre) {
+        return IntStream.range(0, table.length)
+                .filter(neighbourhood -> (neighbourhood & HenselNotation.CENTRE) == centre && table[neighbourhood])
+                .map(neighbourhood -> 1 << HenselNotation.getCount(neighbourhood))
+                .reduce(0, (a, b) -> a | b);
+    }
+
+    private static int[] getCounts(int mask) {
+        return IntStream.rangeClosed(0, 8).filter(count -> contains(mask, count)).toArray();
+    }
 
-        return sb.toString();
+    private static boolean contains(int mask, int count) {
+        return (mask & (1 << count)) != 0;
+    }
+
+    @Override
+    public String toString() {
+        String rule = HenselNotation.format(this.table);
+        return this.states > 2 ? rule + "/C" + this.states : rule;
     }
 
     @Override
     public boolean equals(Object obj) {
-        if (!(obj instanceof Rules)) {
+        if (obj == null || obj.getClass() != getClass()) {
             return false;
         } else if (obj == this) {
             return true;
         } else {
             Rules that = (Rules) obj;
-            return this.born.equals(that.born)
-                    && this.survives.equals(that.survives);
+            return Arrays.equals(this.table, that.table)
+                    && this.states == that.states;
         }
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder(17, 37)
-                .append(this.born)
-                .append(this.survives)
-                .toHashCode();
+        return Arrays.hashCode(this.table) * 31 + this.states;
     }
 }
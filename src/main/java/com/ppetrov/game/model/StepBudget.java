@@ -0,0 +1,55 @@
+package com.ppetrov.game.model;
+
+/**
+ * StepBudget tells how many generations fit into a time budget,
+ * judging by an average of measured step times.
+ * The amount grows at most twice per batch, so a slow generation after a run of fast ones
+ * does not freeze the game for long.
+ */
+public class StepBudget {
+
+    public static final long DEFAULT_BUDGET_NANOS = 12_000_000;
+
+    private static final double SMOOTHING = 0.25;
+
+    private final long budgetNanos;
+
+    private double stepNanos;
+    private int steps = 1;
+
+    public StepBudget() {
+        this(DEFAULT_BUDGET_NANOS);
+    }
+
+    public StepBudget(long budgetNanos) {
+        if (budgetNanos <= 0) {
+            throw new IllegalArgumentException("Budget should be positive: " + budgetNanos);
+        }
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * @return amount of generations to calculate in the next batch
+     */
+    public int getSteps() {
+        return this.steps;
+    }
+
+    /**
+     * Take time of a batch into account
+     *
+     * @param steps amount of generations calculated in the batch
+     * @param nanos time the batch took
+     */
+    public void record(int steps, long nanos) {
+        double batchStepNanos = Math.max(1, (double) nanos / steps);
+        this.stepNanos = this.stepNanos == 0 ? batchStepNanos
+                : this.stepNanos + SMOOTHING * (batchStepNanos - this.stepNanos);
+        this.steps = (int) Math.max(1, Math.min(2L * steps, (long) (this.budgetNanos / this.stepNanos)));
+    }
+
+    public double getStepNanos() {
+        return this.stepNanos;
+    }
+
+}
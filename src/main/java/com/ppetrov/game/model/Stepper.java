@@ -0,0 +1,29 @@
+package com.ppetrov.game.model;
+
+/**
+ * Stepper is a strategy of calculating the next generation of a map into another map.
+ */
+public interface Stepper {
+
+    /**
+     * Calculate next state of the map into another map of the same size
+     *
+     * @param rules  rules of the game
+     * @param map    current state, it is not changed
+     * @param target map to overwrite with the next state
+     * @return target map
+     */
+    Map nextState(Rules rules, Map map, Map target);
+
+    /**
+     * Calculate next state of the map and report births and deaths of cells to the counter.
+     * Steppers which can't count changes of cells calculate the next state without reporting them.
+     *
+     * @param counter counter of births and deaths, or null
+     * @return target map
+     */
+    default Map nextState(Rules rules, Map map, Map target, ChangeCounter counter) {
+        return nextState(rules, map, target);
+    }
+
+}
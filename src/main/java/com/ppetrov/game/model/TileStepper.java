@@ -0,0 +1,171 @@
+package com.ppetrov.game.model;
+
+import java.util.Arrays;
+
+/**
+ * TileStepper skips regions of a bit-packed map which stopped changing.
+ * The field is split into tiles of one word, 64 columns, by tileHeight rows.
+ * A tile is calculated only if it or one of its neighbours changed in the previous generation,
+ * otherwise it is left as it is in the target map.
+ * <p>
+ * That is correct only when the target map holds the generation before the current one,
+ * as it does when two maps are flipped by {@link MapBuffer}.
+ * Any other pair of maps, other rules or a call of {@link #invalidate()}
+ * after cells were changed by hand make the next generation calculated in full.
+ * Ages of cells are not tracked by bit-packed maps, so still lifes stay still.
+ */
+public class TileStepper implements Stepper {
+
+    public static final int DEFAULT_TILE_HEIGHT = 64;
+
+    private final int tileHeight;
+
+    private boolean[] changed = new boolean[0];
+    private boolean[] nextChanged = new boolean[0];
+    private int tileRows;
+    private int tileColumns;
+    private int activeTiles;
+    private long delta;
+    private long births;
+    private long deaths;
+
+    private Map lastMap;
+    private Map lastTarget;
+    private Rules lastRules;
+
+    public TileStepper() {
+        this(DEFAULT_TILE_HEIGHT);
+    }
+
+    public TileStepper(int tileHeight) {
+        if (tileHeight < 1) {
+            throw new IllegalArgumentException("Tile height should be positive: " + tileHeight);
+        }
+        this.tileHeight = tileHeight;
+    }
+
+    @Override
+    public Map nextState(Rules rules, Map map, Map target) {
+        return nextState(rules, map, target, null);
+    }
+
+    @Override
+    public Map nextState(Rules rules, Map map, Map target, ChangeCounter counter) {
+        if (!(map.getGrid() instanceof BitGrid) || !rules.isTotalistic() || rules.getStates() > 2
+                || rules.getRange() > 1) {
+            invalidate();
+            return rules.nextState(map, target, counter);
+        }
+
+        BitGrid grid = (BitGrid) map.getGrid();
+        BitGrid targetGrid = (BitGrid) target.getGrid();
+        if (map != this.lastTarget || target != this.lastMap || !rules.equals(this.lastRules)) {
+            resetTiles(grid);
+        }
+
+        boolean hashing = map.isStateHashKnown();
+        this.delta = 0;
+        this.births = 0;
+        this.deaths = 0;
+        this.activeTiles = 0;
+        for (int tileRow = 0; tileRow < this.tileRows; tileRow++) {
+            for (int tileColumn = 0; tileColumn < this.tileColumns; tileColumn++) {
+                int tile = tileRow * this.tileColumns + tileColumn;
+                if (isActive(tileRow, tileColumn)) {
+                    this.nextChanged[tile] = nextTileState(rules, grid, targetGrid, tileRow, tileColumn, hashing);
+                    this.activeTiles++;
+                } else {
+                    this.nextChanged[tile] = false;
+                }
+            }
+        }
+
+        boolean[] previous = this.changed;
+        this.changed = this.nextChanged;
+        this.nextChanged = previous;
+        this.lastMap = map;
+        this.lastTarget = target;
+        this.lastRules = rules;
+        target.updateStateHash(map, this.delta);
+        if (counter != null) {
+            counter.addChanges(this.births, this.deaths);
+        }
+        return target;
+    }
+
+    /**
+     * Forget which tiles changed, so that the next generation is calculated in full
+     */
+    public void invalidate() {
+        this.lastMap = null;
+        this.lastTarget = null;
+        this.lastRules = null;
+    }
+
+    /**
+     * @return amount of tiles calculated in the last generation
+     */
+    public int getActiveTiles() {
+        return this.activeTiles;
+    }
+
+    public int getTileCount() {
+        return this.tileRows * this.tileColumns;
+    }
+
+    private void resetTiles(BitGrid grid) {
+        this.tileRows = (grid.getHeight() + this.tileHeight - 1) / this.tileHeight;
+        this.tileColumns = grid.getWordsPerRow();
+        if (this.changed.length != this.tileRows * this.tileColumns) {
+            this.changed = new boolean[this.tileRows * this.tileColumns];
+            this.nextChanged = new boolean[this.tileRows * this.tileColumns];
+        }
+        Arrays.fill(this.changed, true);
+    }
+
+    private boolean isActive(int tileRow, int tileColumn) {
+        for (int i = tileRow - 1; i <= tileRow + 1; i++) {
+            int row = (i + this.tileRows) % this.tileRows;
+            for (int j = tileColumn - 1; j <= tileColumn + 1; j++) {
+                int column = (j + this.tileColumns) % this.tileColumns;
+                if (this.changed[row * this.tileColumns + column]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param hashing whether the change of the state hash made by the tile should be added to {@link #delta},
+     *                births and deaths are always added
+     * @return whether any cell of the tile changed
+     */
+    private boolean nextTileState(Rules rules, BitGrid grid, BitGrid target, int tileRow, int tileColumn, boolean hashing) {
+        long[] words = grid.getWords();
+        long[] targetWords = target.getWords();
+        int height = grid.getHeight();
+        int toRow = Math.min((tileRow + 1) * this.tileHeight, height);
+
+        boolean changed = false;
+        for (int row = tileRow * this.tileHeight; row < toRow; row++) {
+            int centreOffset = grid.getRowOffset(row);
+            long word = BitKernel.stepWord(
+                    words, grid.getRowOffset(row == 0 ? height - 1 : row - 1),
+                    words, centreOffset,
+                    words, grid.getRowOffset(row == height - 1 ? 0 : row + 1),
+                    tileColumn, grid.getWidth(), rules.getBornMask(), rules.getSurvivesMask()
+            );
+            long changedBits = word ^ words[centreOffset + tileColumn];
+            changed |= changedBits != 0;
+            this.births += Long.bitCount(word & changedBits);
+            this.deaths += Long.bitCount(~word & changedBits);
+            if (hashing) {
+                this.delta ^= grid.getWordDelta(row, tileColumn, changedBits);
+            }
+            targetWords[centreOffset + tileColumn] = word;
+        }
+        return changed;
+    }
+
+}
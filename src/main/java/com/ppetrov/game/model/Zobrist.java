@@ -0,0 +1,49 @@
+package com.ppetrov.game.model;
+
+/**
+ * Zobrist keys of cell states for {@link Map#getStateHash()}.
+ * A hash of a field is a XOR of keys of all its cells, so a change of a cell changes the hash
+ * by a XOR of its old and new keys. Keys are mixed from indexes of cells instead of being kept in a table,
+ * dead cells have zero keys.
+ */
+final class Zobrist {
+
+    private Zobrist() {
+    }
+
+    /**
+     * @param index row * width + column
+     * @param state state of the cell, see {@link Grid#getState(int, int)}
+     */
+    static long getKey(long index, int state) {
+        if (state == 0) {
+            return 0;
+        }
+        return mix(state == 1 ? index : index | (long) state << 48);
+    }
+
+    /**
+     * @param changed   bits of a word of a bit-packed row which changed their liveness
+     * @param wordIndex index of the cell of the lowest bit of the word
+     * @return XOR of the keys of the changed alive cells
+     */
+    static long getWordDelta(long changed, long wordIndex) {
+        long delta = 0;
+        while (changed != 0) {
+            delta ^= mix(wordIndex + Long.numberOfTrailingZeros(changed));
+            changed &= changed - 1;
+        }
+        return delta;
+    }
+
+    /**
+     * SplitMix64 finalizer spreading consecutive indexes over all bits
+     */
+    private static long mix(long index) {
+        long z = index + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
@@ -0,0 +1,303 @@
+package com.ppetrov.game.model.hashlife;
+
+import com.ppetrov.game.model.BitGrid;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.Rules;
+
+/**
+ * HashLife advances a pattern by 2^k generations at once.
+ * The field is a quadtree of canonical nodes, and the centre of every node
+ * advanced in time is memoised, so repeating structures are calculated only once.
+ * <p>
+ * Unlike {@link Map}, the field is an infinite plane without wrapping around the edges,
+ * and the initial map is placed with its top left cell at (0, 0).
+ * Ages of cells are not tracked.
+ */
+public class HashLife {
+
+    public static final int DEFAULT_MAX_NODES = 1 << 22;
+    public static final int MAX_STEP = 56;
+
+    private static final int MIN_LEVEL = 3;
+
+    private final Rules rules;
+    private final NodeCache cache;
+
+    private Node root;
+    private long originRow;
+    private long originColumn;
+    private long generation;
+
+    public HashLife(Map map, Rules rules) {
+        this(map, rules, DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * @param map      initial state of the field
+     * @param rules    rules of the game, they should not give birth to cells without neighbours
+     * @param maxNodes amount of nodes kept in the cache, one node takes about 80 bytes;
+     *                 nodes of the field and memoised results are kept beyond it while they are reachable
+     */
+    public HashLife(Map map, Rules rules, int maxNodes) {
+        if (rules.getRange() > 1) {
+            throw new IllegalArgumentException("Larger than Life rules are not supported: " + rules);
+        } else if (rules.isAliveNext(0)) {
+            throw new IllegalArgumentException("Rules with birth on 0 neighbours fill the infinite plane: " + rules);
+        } else if (rules.getStates() > 2) {
+            throw new IllegalArgumentException("Generations rules are not supported: " + rules);
+        }
+        this.rules = rules;
+        this.cache = new NodeCache(maxNodes);
+
+        int level = MIN_LEVEL;
+        while ((1L << level) < Math.max(map.getWidth(), map.getHeight())) {
+            level++;
+        }
+        this.root = build(map, level, 0, 0);
+    }
+
+    /**
+     * Advance the field by 2^step generations
+     *
+     * @param step binary logarithm of the amount of generations
+     */
+    public void advance(int step) {
+        if (step < 0 || step > MAX_STEP) {
+            throw new IllegalArgumentException("Step should be from 0 to " + MAX_STEP + ": " + step);
+        }
+
+        while (this.root.level < step + 2 || !isPadded(this.root)) {
+            expand();
+        }
+        expand();
+
+        long offset = this.root.getSize() / 4;
+        this.root = successor(this.root, step);
+        this.originRow += offset;
+        this.originColumn += offset;
+        this.generation += 1L << step;
+
+        while (this.root.level > MIN_LEVEL && isPadded(this.root)) {
+            shrink();
+        }
+    }
+
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    public long getPopulation() {
+        return this.root.population;
+    }
+
+    public Rules getRules() {
+        return this.rules;
+    }
+
+    public int getCacheSize() {
+        return this.cache.size();
+    }
+
+    public boolean isSet(long row, long column) {
+        Node node = this.root;
+        long top = this.originRow;
+        long left = this.originColumn;
+        if (row < top || column < left || row - top >= node.getSize() || column - left >= node.getSize()) {
+            return false;
+        }
+
+        while (node.level > 0 && node.isAlive()) {
+            long half = node.getSize() / 2;
+            boolean south = row - top >= half;
+            boolean east = column - left >= half;
+            node = south ? (east ? node.se : node.sw) : (east ? node.ne : node.nw);
+            top += south ? half : 0;
+            left += east ? half : 0;
+        }
+        return node.isAlive();
+    }
+
+    /**
+     * Copy a window of the plane into a bit-packed map
+     *
+     * @param row    row of the top left cell of the window
+     * @param column column of the top left cell of the window
+     */
+    public Map toMap(long row, long column, int width, int height) {
+        BitGrid grid = new BitGrid(width, height);
+        fill(grid, this.root, this.originRow - row, this.originColumn - column);
+        return new Map(grid);
+    }
+
+    private void fill(BitGrid grid, Node node, long top, long left) {
+        long size = node.getSize();
+        if (!node.isAlive() || top >= grid.getHeight() || left >= grid.getWidth()
+                || top + size <= 0 || left + size <= 0) {
+            return;
+        }
+        if (node.level == 0) {
+            grid.setAlive((int) top, (int) left, true);
+            return;
+        }
+
+        long half = size / 2;
+        fill(grid, node.nw, top, left);
+        fill(grid, node.ne, top, left + half);
+        fill(grid, node.sw, top + half, left);
+        fill(grid, node.se, top + half, left + half);
+    }
+
+    private Node build(Map map, int level, int row, int column) {
+        if (row >= map.getHeight() || column >= map.getWidth()) {
+            return this.cache.getEmpty(level);
+        } else if (level == 0) {
+            return this.cache.getLeaf(map.isSet(row, column));
+        }
+
+        int half = 1 << (level - 1);
+        return this.cache.join(
+                build(map, level - 1, row, column),
+                build(map, level - 1, row, column + half),
+                build(map, level - 1, row + half, column),
+                build(map, level - 1, row + half, column + half)
+        );
+    }
+
+    /**
+     * Surround the root with empty space, keeping it in the centre
+     */
+    private void expand() {
+        Node empty = this.cache.getEmpty(this.root.level - 1);
+        long offset = this.root.getSize() / 2;
+        this.root = this.cache.join(
+                this.cache.join(empty, empty, empty, this.root.nw),
+                this.cache.join(empty, empty, this.root.ne, empty),
+                this.cache.join(empty, this.root.sw, empty, empty),
+                this.cache.join(this.root.se, empty, empty, empty)
+        );
+        this.originRow -= offset;
+        this.originColumn -= offset;
+    }
+
+    private void shrink() {
+        long offset = this.root.getSize() / 4;
+        this.root = centre(this.root);
+        this.originRow += offset;
+        this.originColumn += offset;
+    }
+
+    /**
+     * @return whether all alive cells of the node are in its central half
+     */
+    private static boolean isPadded(Node node) {
+        return node.population == node.nw.se.population + node.ne.sw.population
+                + node.sw.ne.population + node.se.nw.population;
+    }
+
+    /**
+     * Calculate the centre of the node, which is half as big,
+     * advanced by 2^step generations or by 2^(level - 2) if it is less
+     */
+    private Node successor(Node node, int step) {
+        if (node.result != null && (node.resultStep == step || node.level - 2 <= Math.min(step, node.resultStep))) {
+            return node.result;
+        }
+
+        Node result;
+        if (!node.isAlive()) {
+            result = this.cache.getEmpty(node.level - 1);
+        } else if (node.level == 2) {
+            result = successorOfSquare(node);
+        } else {
+            Node n00 = node.nw;
+            Node n01 = horizontalCentre(node.nw, node.ne);
+            Node n02 = node.ne;
+            Node n10 = verticalCentre(node.nw, node.sw);
+            Node n11 = centre(node);
+            Node n12 = verticalCentre(node.ne, node.se);
+            Node n20 = node.sw;
+            Node n21 = horizontalCentre(node.sw, node.se);
+            Node n22 = node.se;
+
+            if (node.level - 2 <= step) {
+                n00 = successor(n00, step);
+                n01 = successor(n01, step);
+                n02 = successor(n02, step);
+                n10 = successor(n10, step);
+                n11 = successor(n11, step);
+                n12 = successor(n12, step);
+                n20 = successor(n20, step);
+                n21 = successor(n21, step);
+                n22 = successor(n22, step);
+            } else {
+                n00 = centre(n00);
+                n01 = centre(n01);
+                n02 = centre(n02);
+                n10 = centre(n10);
+                n11 = centre(n11);
+                n12 = centre(n12);
+                n20 = centre(n20);
+                n21 = centre(n21);
+                n22 = centre(n22);
+            }
+
+            result = this.cache.join(
+                    successor(this.cache.join(n00, n01, n10, n11), step),
+                    successor(this.cache.join(n01, n02, n11, n12), step),
+                    successor(this.cache.join(n10, n11, n20, n21), step),
+                    successor(this.cache.join(n11, n12, n21, n22), step)
+            );
+        }
+
+        node.result = result;
+        node.resultStep = step;
+        return result;
+    }
+
+    /**
+     * Advance the central 2x2 cells of a 4x4 node by one generation
+     */
+    private Node successorOfSquare(Node node) {
+        int cells = 0;
+        for (int row = 0; row < 4; row++) {
+            for (int column = 0; column < 4; column++) {
+                if (getCell(node, row, column)) {
+                    cells |= 1 << (row * 4 + column);
+                }
+            }
+        }
+        return this.cache.join(
+                this.cache.getLeaf(this.rules.isAliveNext(getNeighbourhood(cells, 1, 1))),
+                this.cache.getLeaf(this.rules.isAliveNext(getNeighbourhood(cells, 1, 2))),
+                this.cache.getLeaf(this.rules.isAliveNext(getNeighbourhood(cells, 2, 1))),
+                this.cache.getLeaf(this.rules.isAliveNext(getNeighbourhood(cells, 2, 2)))
+        );
+    }
+
+    private static int getNeighbourhood(int cells, int row, int column) {
+        int neighbourhood = 0;
+        for (int i = 0; i < 3; i++) {
+            neighbourhood |= ((cells >> ((row - 1 + i) * 4 + column - 1)) & 0b111) << (i * 3);
+        }
+        return neighbourhood;
+    }
+
+    private static boolean getCell(Node node, int row, int column) {
+        Node quadrant = row < 2 ? (column < 2 ? node.nw : node.ne) : (column < 2 ? node.sw : node.se);
+        Node cell = row % 2 == 0 ? (column % 2 == 0 ? quadrant.nw : quadrant.ne) : (column % 2 == 0 ? quadrant.sw : quadrant.se);
+        return cell.isAlive();
+    }
+
+    private Node centre(Node node) {
+        return this.cache.join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+    }
+
+    private Node horizontalCentre(Node west, Node east) {
+        return this.cache.join(west.ne, east.nw, west.se, east.sw);
+    }
+
+    private Node verticalCentre(Node north, Node south) {
+        return this.cache.join(north.sw, north.se, south.nw, south.ne);
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.ppetrov.game.model.hashlife;
+
+/**
+ * Node is a square of 2^level x 2^level cells split into four quadrants.
+ * Nodes are canonical, so two nodes with the same children are the same object
+ * and quadrants can be compared by identity.
+ */
+final class Node {
+
+    final int level;
+    final long population;
+    final Node nw;
+    final Node ne;
+    final Node sw;
+    final Node se;
+
+    /**
+     * Memoised centre of this node advanced by 2^resultStep generations
+     */
+    Node result;
+    int resultStep = -1;
+
+    private final int hash;
+
+    Node(boolean alive) {
+        this.level = 0;
+        this.population = alive ? 1 : 0;
+        this.nw = null;
+        this.ne = null;
+        this.sw = null;
+        this.se = null;
+        this.hash = alive ? 1 : 0;
+    }
+
+    Node(Node nw, Node ne, Node sw, Node se) {
+        this.level = nw.level + 1;
+        this.population = nw.population + ne.population + sw.population + se.population;
+        this.nw = nw;
+        this.ne = ne;
+        this.sw = sw;
+        this.se = se;
+        this.hash = ((System.identityHashCode(nw) * 31
+                + System.identityHashCode(ne)) * 31
+                + System.identityHashCode(sw)) * 31
+                + System.identityHashCode(se);
+    }
+
+    boolean isAlive() {
+        return this.population != 0;
+    }
+
+    long getSize() {
+        return 1L << this.level;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Node)) {
+            return false;
+        } else if (obj == this) {
+            return true;
+        } else {
+            Node that = (Node) obj;
+            if (this.level == 0) {
+                return that.level == 0 && this.population == that.population;
+            }
+            return this.nw == that.nw && this.ne == that.ne
+                    && this.sw == that.sw && this.se == that.se;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+}
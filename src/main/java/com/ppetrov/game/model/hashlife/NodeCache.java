@@ -0,0 +1,71 @@
+package com.ppetrov.game.model.hashlife;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * NodeCache hash-conses nodes, so every square of cells is stored only once.
+ * The least recently used nodes are forgotten when the cache keeps more than its maximum of nodes.
+ * A forgotten node stays valid while something refers to it,
+ * an equal node built later just becomes a separate copy with its own memoised results.
+ * <p>
+ * The maximum limits only the nodes the cache itself keeps, not the memory taken by nodes:
+ * forgotten nodes stay reachable from the root of the field, from their parents and from memoised results,
+ * and are collected only when none of them refers to the nodes any more.
+ */
+final class NodeCache {
+
+    private final Node dead = new Node(false);
+    private final Node alive = new Node(true);
+    private final List<Node> empty = new ArrayList<>();
+    private final LeastRecentlyUsed nodes;
+
+    NodeCache(int maxNodes) {
+        this.nodes = new LeastRecentlyUsed(maxNodes);
+        this.empty.add(this.dead);
+    }
+
+    Node getLeaf(boolean alive) {
+        return alive ? this.alive : this.dead;
+    }
+
+    Node getEmpty(int level) {
+        while (this.empty.size() <= level) {
+            Node quadrant = this.empty.get(this.empty.size() - 1);
+            this.empty.add(join(quadrant, quadrant, quadrant, quadrant));
+        }
+        return this.empty.get(level);
+    }
+
+    Node join(Node nw, Node ne, Node sw, Node se) {
+        Node probe = new Node(nw, ne, sw, se);
+        Node node = this.nodes.get(probe);
+        if (node == null) {
+            this.nodes.put(probe, probe);
+            return probe;
+        }
+        return node;
+    }
+
+    int size() {
+        return this.nodes.size();
+    }
+
+    private static class LeastRecentlyUsed extends LinkedHashMap<Node, Node> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxNodes;
+
+        LeastRecentlyUsed(int maxNodes) {
+            super(1024, 0.75f, true);
+            this.maxNodes = maxNodes;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(java.util.Map.Entry<Node, Node> eldest) {
+            return size() > this.maxNodes;
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.ppetrov.game.model.metrics;
+
+import com.ppetrov.game.model.ChangeCounter;
+import com.ppetrov.game.model.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SimulationMetrics counts steps of a simulation and publishes them as an MBean.
+ * Recording is lock-free and allocates nothing, so it can be done for every generation:
+ * births and deaths come from the steppers as a {@link ChangeCounter}
+ * and times of steps are passed to {@link #recordStep(long, Map, long)}.
+ * The population is counted when it is read, from the last recorded map.
+ */
+public class SimulationMetrics implements SimulationMetricsMBean, ChangeCounter {
+
+    public static final String DOMAIN = "com.ppetrov.game";
+
+    private final LatencyHistogram stepTimes = new LatencyHistogram();
+    private final LongAdder births = new LongAdder();
+    private final LongAdder deaths = new LongAdder();
+    private final LongAdder cellUpdates = new LongAdder();
+    private final LongAdder stepNanos = new LongAdder();
+
+    private volatile long generation;
+    private volatile Map map;
+
+    /**
+     * Register these metrics in the platform MBean server as com.ppetrov.game:type=Simulation,name="[name]",
+     * replacing metrics registered under the same name before
+     *
+     * @throws IllegalStateException if the MBean can't be registered
+     */
+    public ObjectName register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=Simulation,name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register metrics " + name, e);
+        }
+    }
+
+    /**
+     * @param generation number of the calculated generation
+     * @param map        calculated generation
+     * @param nanos      time of the step
+     */
+    public void recordStep(long generation, Map map, long nanos) {
+        this.stepTimes.record(nanos);
+        this.stepNanos.add(nanos);
+        this.cellUpdates.add((long) map.getWidth() * map.getHeight());
+        this.generation = generation;
+        this.map = map;
+    }
+
+    @Override
+    public void addChanges(long births, long deaths) {
+        this.births.add(births);
+        this.deaths.add(deaths);
+    }
+
+    @Override
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * @return population of the last recorded generation, it may be off if the map is being overwritten
+     */
+    @Override
+    public long getPopulation() {
+        Map map = this.map;
+        return map != null ? map.getPopulation() : 0;
+    }
+
+    @Override
+    public long getBirths() {
+        return this.births.sum();
+    }
+
+    @Override
+    public long getDeaths() {
+        return this.deaths.sum();
+    }
+
+    @Override
+    public long getSteps() {
+        return this.stepTimes.getCount();
+    }
+
+    @Override
+    public long getCellUpdates() {
+        return this.cellUpdates.sum();
+    }
+
+    @Override
+    public double getCellUpdatesPerSecond() {
+        long nanos = this.stepNanos.sum();
+        return nanos == 0 ? 0 : getCellUpdates() * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    @Override
+    public double getStepMicrosMean() {
+        return toMicros(this.stepTimes.getMean());
+    }
+
+    @Override
+    public double getStepMicrosP50() {
+        return toMicros(this.stepTimes.getPercentile(50));
+    }
+
+    @Override
+    public double getStepMicrosP90() {
+        return toMicros(this.stepTimes.getPercentile(90));
+    }
+
+    @Override
+    public double getStepMicrosP99() {
+        return toMicros(this.stepTimes.getPercentile(99));
+    }
+
+    @Override
+    public double getStepMicrosP999() {
+        return toMicros(this.stepTimes.getPercentile(99.9));
+    }
+
+    @Override
+    public double getStepMicrosMax() {
+        return toMicros(this.stepTimes.getMax());
+    }
+
+    @Override
+    public void reset() {
+        this.stepTimes.reset();
+        this.births.reset();
+        this.deaths.reset();
+        this.cellUpdates.reset();
+        this.stepNanos.reset();
+    }
+
+    private static double toMicros(double nanos) {
+        return nanos / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+}
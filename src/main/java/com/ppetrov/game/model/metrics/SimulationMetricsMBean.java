@@ -0,0 +1,42 @@
+package com.ppetrov.game.model.metrics;
+
+/**
+ * Attributes of a running simulation published over JMX, times of steps are in microseconds
+ */
+public interface SimulationMetricsMBean {
+
+    long getGeneration();
+
+    long getPopulation();
+
+    long getBirths();
+
+    long getDeaths();
+
+    long getSteps();
+
+    long getCellUpdates();
+
+    /**
+     * @return cells updated per second of time spent in steps, not counting pauses between them
+     */
+    double getCellUpdatesPerSecond();
+
+    double getStepMicrosMean();
+
+    double getStepMicrosP50();
+
+    double getStepMicrosP90();
+
+    double getStepMicrosP99();
+
+    double getStepMicrosP999();
+
+    double getStepMicrosMax();
+
+    /**
+     * Start counting from zero, the generation and the population are kept
+     */
+    void reset();
+
+}
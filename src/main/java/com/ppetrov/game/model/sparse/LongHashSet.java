@@ -0,0 +1,148 @@
+package com.ppetrov.game.model.sparse;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * LongHashSet is an open addressing set of primitive longs with linear probing,
+ * it does not box its keys and does not allocate anything until it grows.
+ */
+final class LongHashSet {
+
+    private static final long FREE = 0;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+    private boolean containsFree;
+
+    LongHashSet() {
+        this(16);
+    }
+
+    LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) * 2;
+        this.keys = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    boolean add(long key) {
+        if (key == FREE) {
+            boolean added = !this.containsFree;
+            this.containsFree = true;
+            this.size += added ? 1 : 0;
+            return added;
+        }
+
+        int index = getIndex(key);
+        while (this.keys[index] != FREE) {
+            if (this.keys[index] == key) {
+                return false;
+            }
+            index = (index + 1) & this.mask;
+        }
+        this.keys[index] = key;
+        if (++this.size > this.keys.length / 2) {
+            grow();
+        }
+        return true;
+    }
+
+    boolean contains(long key) {
+        if (key == FREE) {
+            return this.containsFree;
+        }
+
+        int index = getIndex(key);
+        while (this.keys[index] != FREE) {
+            if (this.keys[index] == key) {
+                return true;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return false;
+    }
+
+    boolean remove(long key) {
+        if (key == FREE) {
+            boolean removed = this.containsFree;
+            this.containsFree = false;
+            this.size -= removed ? 1 : 0;
+            return removed;
+        }
+
+        int index = getIndex(key);
+        while (this.keys[index] != FREE) {
+            if (this.keys[index] == key) {
+                closeGap(index);
+                this.size--;
+                return true;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return false;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    void clear() {
+        if (this.size > 0) {
+            Arrays.fill(this.keys, FREE);
+            this.size = 0;
+            this.containsFree = false;
+        }
+    }
+
+    void forEach(LongConsumer action) {
+        if (this.containsFree) {
+            action.accept(FREE);
+        }
+        for (long key : this.keys) {
+            if (key != FREE) {
+                action.accept(key);
+            }
+        }
+    }
+
+    /**
+     * Move following keys of the probe sequence back, so that none of them is cut off by the gap
+     */
+    private void closeGap(int gap) {
+        int index = gap;
+        while (true) {
+            index = (index + 1) & this.mask;
+            long key = this.keys[index];
+            if (key == FREE) {
+                this.keys[gap] = FREE;
+                return;
+            }
+            if (((index - getIndex(key)) & this.mask) >= ((index - gap) & this.mask)) {
+                this.keys[gap] = key;
+                gap = index;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = this.keys;
+        this.keys = new long[oldKeys.length * 2];
+        this.mask = this.keys.length - 1;
+        for (long key : oldKeys) {
+            if (key != FREE) {
+                int index = getIndex(key);
+                while (this.keys[index] != FREE) {
+                    index = (index + 1) & this.mask;
+                }
+                this.keys[index] = key;
+            }
+        }
+    }
+
+    private int getIndex(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & this.mask;
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.ppetrov.game.model.sparse;
+
+import com.ppetrov.game.model.BitGrid;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.Rules;
+
+/**
+ * SparseLife keeps only coordinates of alive cells on an infinite plane,
+ * so a generation costs time proportional to the population instead of the area.
+ * Only alive cells and their neighbours are visited, so rules giving birth
+ * on 0 neighbours are not supported. Ages of cells are not tracked.
+ */
+public class SparseLife {
+
+    private final Rules rules;
+
+    private LongHashSet cells = new LongHashSet();
+    private LongHashSet next = new LongHashSet();
+    private final LongHashSet candidates = new LongHashSet();
+
+    private long generation;
+    private int minRow;
+    private int minColumn;
+    private int maxRow;
+    private int maxColumn;
+
+    public SparseLife(Rules rules) {
+        if (rules.getRange() > 1) {
+            throw new IllegalArgumentException("Larger than Life rules are not supported: " + rules);
+        } else if (rules.isAliveNext(0)) {
+            throw new IllegalArgumentException("Rules with birth on 0 neighbours fill the infinite plane: " + rules);
+        } else if (rules.getStates() > 2) {
+            throw new IllegalArgumentException("Generations rules are not supported: " + rules);
+        }
+        this.rules = rules;
+        resetBounds();
+    }
+
+    /**
+     * Create the plane with alive cells of the map, its top left cell is placed at (0, 0)
+     */
+    public SparseLife(Map map, Rules rules) {
+        this(rules);
+        for (int row = 0; row < map.getHeight(); row++) {
+            for (int column = 0; column < map.getWidth(); column++) {
+                if (map.isSet(row, column)) {
+                    setCell(row, column, true);
+                }
+            }
+        }
+    }
+
+    public boolean isSet(int row, int column) {
+        return this.cells.contains(pack(row, column));
+    }
+
+    public void setCell(int row, int column, boolean alive) {
+        if (!alive) {
+            this.cells.remove(pack(row, column));
+        } else if (this.cells.add(pack(row, column))) {
+            includeInBounds(row, column);
+        }
+    }
+
+    public void step() {
+        this.candidates.clear();
+        this.cells.forEach(cell -> {
+            int row = getRow(cell);
+            int column = getColumn(cell);
+            for (int i = row - 1; i <= row + 1; i++) {
+                for (int j = column - 1; j <= column + 1; j++) {
+                    this.candidates.add(pack(i, j));
+                }
+            }
+        });
+
+        this.next.clear();
+        resetBounds();
+        this.candidates.forEach(cell -> {
+            int row = getRow(cell);
+            int column = getColumn(cell);
+            if (this.rules.isAliveNext(getNeighbourhood(row, column))) {
+                this.next.add(cell);
+                includeInBounds(row, column);
+            }
+        });
+
+        LongHashSet previous = this.cells;
+        this.cells = this.next;
+        this.next = previous;
+        this.generation++;
+    }
+
+    public void step(long generations) {
+        for (long i = 0; i < generations; i++) {
+            step();
+        }
+    }
+
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    public int getPopulation() {
+        return this.cells.size();
+    }
+
+    public boolean isEmpty() {
+        return this.cells.size() == 0;
+    }
+
+    /**
+     * @return top row of the bounding box of alive cells, it is meaningless for an empty plane.
+     * The box is exact after a step, killing cells by hand does not shrink it.
+     */
+    public int getMinRow() {
+        return this.minRow;
+    }
+
+    public int getMinColumn() {
+        return this.minColumn;
+    }
+
+    public int getMaxRow() {
+        return this.maxRow;
+    }
+
+    public int getMaxColumn() {
+        return this.maxColumn;
+    }
+
+    /**
+     * @return bit-packed map of the bounding box of alive cells
+     */
+    public Map toMap() {
+        if (isEmpty()) {
+            return new Map(new BitGrid(1, 1));
+        }
+        return toMap(this.minRow, this.minColumn,
+                this.maxColumn - this.minColumn + 1, this.maxRow - this.minRow + 1);
+    }
+
+    /**
+     * Copy a window of the plane into a bit-packed map
+     *
+     * @param row    row of the top left cell of the window
+     * @param column column of the top left cell of the window
+     */
+    public Map toMap(int row, int column, int width, int height) {
+        BitGrid grid = new BitGrid(width, height);
+        this.cells.forEach(cell -> {
+            long cellRow = (long) getRow(cell) - row;
+            long cellColumn = (long) getColumn(cell) - column;
+            if (0 <= cellRow && cellRow < height && 0 <= cellColumn && cellColumn < width) {
+                grid.setAlive((int) cellRow, (int) cellColumn, true);
+            }
+        });
+        return new Map(grid);
+    }
+
+    private int getNeighbourhood(int row, int column) {
+        int neighbourhood = 0;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                if (this.cells.contains(pack(row - 1 + i, column - 1 + j))) {
+                    neighbourhood |= 1 << (i * 3 + j);
+                }
+            }
+        }
+        return neighbourhood;
+    }
+
+    private void includeInBounds(int row, int column) {
+        this.minRow = Math.min(this.minRow, row);
+        this.minColumn = Math.min(this.minColumn, column);
+        this.maxRow = Math.max(this.maxRow, row);
+        this.maxColumn = Math.max(this.maxColumn, column);
+    }
+
+    private void resetBounds() {
+        this.minRow = Integer.MAX_VALUE;
+        this.minColumn = Integer.MAX_VALUE;
+        this.maxRow = Integer.MIN_VALUE;
+        this.maxColumn = Integer.MIN_VALUE;
+    }
+
+    private static long pack(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    private static int getRow(long cell) {
+        return (int) (cell >> 32);
+    }
+
+    private static int getColumn(long cell) {
+        return (int) cell;
+    }
+
+}
@@ -1,25 +1,79 @@
 package com.ppetrov.game.viewer;
 
 import com.ppetrov.game.model.Map;
+import javafx.animation.AnimationTimer;
 import javafx.event.EventHandler;
 import javafx.scene.Cursor;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.ScrollPane;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyCode;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.paint.Color;
 import rx.Observable;
 import rx.observables.JavaFxObservable;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.stream.IntStream;
 
+/**
+ * FieldCanvas shows the map and lets the brush change it.
+ * The map is rasterized on a worker thread, the JavaFX thread only copies finished frames
+ * to the canvas with one {@link javafx.scene.image.PixelWriter#setPixels} call and draws the brush over them.
+ * <p>
+ * Maps and redraws may come from any thread at any rate, they only mark the canvas as changed.
+ * On every pulse of JavaFX the newest finished frame is shown and the newest map is rasterized
+ * if it changed and the previous frame is done, so intermediate generations are skipped
+ * and nothing is queued on the JavaFX thread. Frames are passed through a {@link TripleBuffer}
+ * of three reusable pixel buffers.
+ * <p>
+ * The map is shown from a reusable copy, which is overwritten only when the map changed and the next frame is started.
+ * Copies and changes by the brush are passed to an editor, so that a game can apply them between its steps.
+ * <p>
+ * The whole field is shown until it is zoomed with the mouse wheel or panned by dragging with the middle button,
+ * Home key shows the whole field again. R key turns the brush by 90 degrees and M key mirrors it.
+ */
 public class FieldCanvas extends ScrollPane {
 
+    private static final double ZOOM_STEP = 1.25;
+
     private Canvas canvas;
     private CellUnderCursor cellUnderCursor = CellUnderCursor.NULL;
 
-    private Map map;
+    private volatile Map map;
+    private volatile Map shownMap;
+    private Consumer<Consumer<Map>> editor = edit -> edit.accept(this.map);
+    private volatile int canvasWidth;
+    private volatile int canvasHeight;
+    private volatile Viewport viewport;
+    private volatile boolean fitted = true;
+    private double dragX;
+    private double dragY;
+
+    private final ExecutorService rasterExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "field-rasterizer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final FieldRasterizer rasterizer = new FieldRasterizer();
+    private final AtomicBoolean redrawRequested = new AtomicBoolean();
+    private final AtomicBoolean rasterRunning = new AtomicBoolean();
+    private final AtomicBoolean mapChanged = new AtomicBoolean();
+    private final TripleBuffer<Frame> frames = new TripleBuffer<>(Frame::new);
+    private WritableImage image;
+
+    private final AnimationTimer pulse = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            onPulse();
+        }
+    };
 
     private Map brush = new Map(new Boolean[][]{{true}});
 
@@ -29,28 +83,116 @@ public class FieldCanvas extends ScrollPane {
 
         this.canvas.widthProperty().bind(widthProperty().subtract(2));
         this.canvas.heightProperty().bind(heightProperty().subtract(2));
+        this.pulse.start();
+    }
+
+    public Map getMap() {
+        return this.map;
     }
 
     public void setMap(Map map) {
+        Map previous = this.map;
         this.map = map;
+        this.mapChanged.set(true);
+        if (previous == null || previous.getWidth() != map.getWidth() || previous.getHeight() != map.getHeight()) {
+            this.fitted = true;
+            updateViewport();
+        }
+    }
+
+    /**
+     * Show the whole field in the centre of the canvas
+     */
+    public void fit() {
+        this.fitted = true;
+        updateViewport();
+        redraw();
+    }
+
+    /**
+     * Zoom the field by the factor around the point of the canvas
+     */
+    public void zoom(double factor, double x, double y) {
+        if (this.viewport != null) {
+            this.fitted = false;
+            this.viewport = this.viewport.zoom(factor, x, y);
+            redraw();
+        }
+    }
+
+    public void pan(double dx, double dy) {
+        if (this.viewport != null) {
+            this.fitted = false;
+            this.viewport = this.viewport.pan(dx, dy);
+            redraw();
+        }
+    }
+
+    private void updateViewport() {
+        Map map = this.map;
+        if (this.fitted && map != null) {
+            this.viewport = Viewport.fit(map.getWidth(), map.getHeight(), this.canvas.getWidth(), this.canvas.getHeight());
+        }
     }
 
     private void createFieldCanvas() {
         this.canvas = new Canvas();
-        this.canvas.widthProperty().addListener(observable -> redraw());
-        this.canvas.heightProperty().addListener(observable -> redraw());
+        this.canvas.widthProperty().addListener(observable -> {
+            this.canvasWidth = (int) this.canvas.getWidth();
+            updateViewport();
+            redraw();
+        });
+        this.canvas.heightProperty().addListener(observable -> {
+            this.canvasHeight = (int) this.canvas.getHeight();
+            updateViewport();
+            redraw();
+        });
 
         EventHandler<MouseEvent> canvasMouseEventHandler = event -> {
             calcCellUnderCursor(event);
             updateCursor();
-            redraw();
+            drawImage();
         };
         this.canvas.setOnMouseEntered(canvasMouseEventHandler);
         this.canvas.setOnMouseMoved(canvasMouseEventHandler);
         this.canvas.setOnMouseExited(event -> clearRowsUnderCursor());
 
-        this.canvas.setOnMouseDragged(this::changeMap);
-        this.canvas.setOnMousePressed(this::changeMap);
+        this.canvas.setOnMouseDragged(event -> {
+            if (event.isMiddleButtonDown()) {
+                pan(event.getX() - this.dragX, event.getY() - this.dragY);
+                this.dragX = event.getX();
+                this.dragY = event.getY();
+            } else {
+                changeMap(event);
+            }
+        });
+        this.canvas.setOnMousePressed(event -> {
+            requestFocus();
+            this.dragX = event.getX();
+            this.dragY = event.getY();
+            changeMap(event);
+        });
+        this.canvas.setOnScroll(event -> {
+            if (event.getDeltaY() != 0) {
+                zoom(event.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP, event.getX(), event.getY());
+                calcCellUnderCursor(event.getX(), event.getY());
+            }
+            event.consume();
+        });
+        setOnKeyPressed(event -> {
+            if (event.getCode() == KeyCode.HOME) {
+                fit();
+                event.consume();
+            } else if (event.getCode() == KeyCode.R) {
+                this.brush = this.brush.rotate();
+                redraw();
+                event.consume();
+            } else if (event.getCode() == KeyCode.M) {
+                this.brush = this.brush.mirror();
+                redraw();
+                event.consume();
+            }
+        });
     }
 
     public Observable<Map> getMapChanges() {
@@ -63,6 +205,14 @@ public class FieldCanvas extends ScrollPane {
         this.brush = brush;
     }
 
+    /**
+     * @param editor applies a change to the current map, like a game applying it between its steps;
+     *               by default changes are applied at once on the JavaFX thread
+     */
+    public void setEditor(Consumer<Consumer<Map>> editor) {
+        this.editor = editor;
+    }
+
     private void changeMap(MouseEvent event) {
         calcCellUnderCursor(event);
         if (this.cellUnderCursor.exists()) {
@@ -70,18 +220,11 @@ public class FieldCanvas extends ScrollPane {
             boolean isPrimary = MouseButton.PRIMARY.equals(mouseButton);
             boolean isSecondary = MouseButton.SECONDARY.equals(mouseButton);
             if (isPrimary || isSecondary) {
-                int brushHeight = this.brush.getHeight();
-                int brushWidth = this.brush.getWidth();
-
-                IntStream.range(0, brushHeight).forEach(row ->
-                        IntStream.range(0, brushHeight).filter(column -> this.brush.isSet(row, column))
-                                .forEach(column -> this.map.setCell(
-                                        this.cellUnderCursor.row + row - brushHeight / 2,
-                                        this.cellUnderCursor.column + column - brushWidth / 2,
-                                        isPrimary
-                                        )
-                                )
-                );
+                Map brush = this.brush;
+                int row = this.cellUnderCursor.row - brush.getHeight() / 2;
+                int column = this.cellUnderCursor.column - brush.getWidth() / 2;
+                this.editor.accept(map -> map.paint(brush, row, column, isPrimary));
+                this.mapChanged.set(true);
                 redraw();
             }
         } else {
@@ -90,26 +233,99 @@ public class FieldCanvas extends ScrollPane {
     }
 
     private void calcCellUnderCursor(MouseEvent event) {
-        this.cellUnderCursor = new CellUnderCursor(
-                getCellRowFromCanvas(event.getY()), getCellColumnFromCanvas(event.getX())
-        );
+        calcCellUnderCursor(event.getX(), event.getY());
+    }
+
+    private void calcCellUnderCursor(double x, double y) {
+        this.cellUnderCursor = new CellUnderCursor(getCellRowFromCanvas(y), getCellColumnFromCanvas(x));
     }
 
     private void updateCursor() {
         this.canvas.setCursor(this.cellUnderCursor.exists() ? Cursor.HAND : Cursor.DEFAULT);
     }
 
+    /**
+     * Rasterize the map on one of the next pulses, it can be called from any thread
+     */
     public void redraw() {
+        this.redrawRequested.set(true);
+    }
+
+    private void onPulse() {
+        Frame frame = this.frames.take();
+        if (frame != null) {
+            showFrame(frame);
+        }
+        if (!this.rasterRunning.get() && this.redrawRequested.getAndSet(false)) {
+            this.rasterRunning.set(true);
+            if (this.mapChanged.getAndSet(false)) {
+                this.editor.accept(this::copyAndRasterize);
+            } else {
+                this.rasterExecutor.execute(this::rasterize);
+            }
+        }
+    }
+
+    /**
+     * Copy the current map into the shown one, it is called between steps of a game
+     */
+    private void copyAndRasterize(Map map) {
+        if (map == null) {
+            this.rasterRunning.set(false);
+            return;
+        }
+        Map shownMap = this.shownMap;
+        if (shownMap == null || shownMap.getWidth() != map.getWidth() || shownMap.getHeight() != map.getHeight()
+                || shownMap.getGrid().getClass() != map.getGrid().getClass()) {
+            this.shownMap = new Map(map.getGrid().copy());
+        } else {
+            map.copyTo(shownMap);
+        }
+        this.rasterExecutor.execute(this::rasterize);
+    }
+
+    private void rasterize() {
+        try {
+            Map map = this.shownMap;
+            int width = this.canvasWidth;
+            int height = this.canvasHeight;
+            Viewport viewport = this.viewport;
+            if (map == null || viewport == null || width <= 0 || height <= 0) {
+                return;
+            }
+
+            Frame frame = this.frames.getBack();
+            if (frame.pixels.length < width * height) {
+                frame.pixels = new int[width * height];
+            }
+            frame.width = width;
+            frame.height = height;
+            this.rasterizer.rasterize(map, frame.pixels, width, height, viewport);
+            this.frames.publish();
+        } finally {
+            this.rasterRunning.set(false);
+        }
+    }
+
+    private void showFrame(Frame frame) {
+        if (this.image == null || (int) this.image.getWidth() != frame.width || (int) this.image.getHeight() != frame.height) {
+            this.image = new WritableImage(frame.width, frame.height);
+        }
+        this.image.getPixelWriter().setPixels(0, 0, frame.width, frame.height,
+                PixelFormat.getIntArgbPreInstance(), frame.pixels, 0, frame.width);
+        drawImage();
+    }
+
+    /**
+     * Draw the last shown frame and the brush over it without rasterizing the map again
+     */
+    private void drawImage() {
         GraphicsContext gc = this.canvas.getGraphicsContext2D();
         gc.setFill(Color.GRAY);
         gc.fillRect(0, 0, this.canvas.getWidth(), this.canvas.getHeight());
-
-        IntStream.range(0, getFieldHeight()).forEach(row ->
-                IntStream.range(0, getFieldWidth()).forEach(column ->
-                        drawCalculatedCell(row, column)
-                )
-        );
-
+        if (this.image != null) {
+            gc.drawImage(this.image, 0, 0);
+        }
         drawCellsUnderCursor(gc);
     }
 
@@ -120,7 +336,7 @@ public class FieldCanvas extends ScrollPane {
             int brushWidth = this.brush.getWidth();
 
             IntStream.range(0, brushHeight).forEach(row ->
-                    IntStream.range(0, brushHeight).filter(column -> this.brush.isSet(row, column))
+                    IntStream.range(0, brushWidth).filter(column -> this.brush.isSet(row, column))
                             .forEach(column -> drawCell(gc,
                                     this.map.fixRow(this.cellUnderCursor.row + row - brushHeight / 2),
                                     this.map.fixColumn(this.cellUnderCursor.column + column - brushWidth / 2))
@@ -129,40 +345,30 @@ public class FieldCanvas extends ScrollPane {
         }
     }
 
-    private void drawCalculatedCell(int row, int column) {
-        GraphicsContext gc = this.canvas.getGraphicsContext2D();
-        gc.setFill(this.map.isSet(row, column)
-                ? Color.DARKGREEN
-                : Color.SANDYBROWN);
-        drawCell(gc, row, column);
-    }
-
     private void drawCell(GraphicsContext gc, int row, int column) {
         double cellSize = getCellSize();
-        double startX = (this.canvas.getWidth() - cellSize * getFieldWidth()) / 2;
-        double startY = (this.canvas.getHeight() - cellSize * getFieldHeight()) / 2;
-        int borderWidth = 1;
+        double borderWidth = cellSize >= 3 ? 1 : 0;
 
         gc.fillRect(
-                startX + column * cellSize,
-                startY + row * cellSize,
-                cellSize - borderWidth,
-                cellSize - borderWidth
+                this.viewport.getX(column),
+                this.viewport.getY(row),
+                Math.max(1, cellSize - borderWidth),
+                Math.max(1, cellSize - borderWidth)
         );
     }
 
     private void clearRowsUnderCursor() {
         this.cellUnderCursor = CellUnderCursor.NULL;
-        redraw();
+        drawImage();
     }
 
     private Integer getCellColumnFromCanvas(double x) {
-        double cellSize = getCellSize();
-        int fieldWidth = getFieldWidth();
-        double startX = (this.canvas.getWidth() - cellSize * fieldWidth) / 2;
+        if (this.viewport == null) {
+            return null;
+        }
 
-        int column = (int) Math.floor((x - startX) / cellSize);
-        if (0 <= column && column < fieldWidth) {
+        int column = this.viewport.getColumn(x);
+        if (0 <= column && column < getFieldWidth()) {
             return column;
         }
 
@@ -170,23 +376,23 @@ public class FieldCanvas extends ScrollPane {
     }
 
     private Integer getCellRowFromCanvas(double y) {
-        double cellSize = getCellSize();
-        int fieldHeight = getFieldHeight();
-        double startY = (this.canvas.getHeight() - cellSize * fieldHeight) / 2;
+        if (this.viewport == null) {
+            return null;
+        }
 
-        int row = (int) Math.floor((y - startY) / cellSize);
-        if (0 <= row && row < fieldHeight) {
+        int row = this.viewport.getRow(y);
+        if (0 <= row && row < getFieldHeight()) {
             return row;
         }
 
         return null;
     }
 
+    /**
+     * @return size of a cell in pixels, it is less than 1 when the field is zoomed out below a cell per pixel
+     */
     public double getCellSize() {
-        return Math.min(
-                this.canvas.getWidth() / getFieldWidth(),
-                this.canvas.getHeight() / getFieldHeight()
-        );
+        return this.viewport != null ? this.viewport.cellSize : 0;
     }
 
     private int getFieldWidth() {
@@ -197,6 +403,12 @@ public class FieldCanvas extends ScrollPane {
         return this.map != null ? this.map.getHeight() : 0;
     }
 
+    private static class Frame {
+        int[] pixels = new int[0];
+        int width;
+        int height;
+    }
+
     private static class CellUnderCursor {
         final static CellUnderCursor NULL = new CellUnderCursor(null, null);
 
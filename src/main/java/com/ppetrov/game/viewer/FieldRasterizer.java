@@ -0,0 +1,194 @@
+package com.ppetrov.game.viewer;
+
+import com.ppetrov.game.model.Grid;
+import com.ppetrov.game.model.Map;
+
+import java.util.Arrays;
+
+/**
+ * FieldRasterizer draws a map into an ARGB pixel buffer without touching JavaFX,
+ * so that it can run on any thread. Only cells inside of the buffer are looked up.
+ * <p>
+ * When a cell takes a pixel or more, every cell is looked up once per pixel row it covers
+ * and the following pixel rows of the same cells are copied.
+ * Alive cells get darker with age, dying cells of Generations rules fade to the dead colour.
+ * <p>
+ * When a pixel covers a square of several cells, its colour shows the density of alive cells in the square.
+ * All of them are counted, a row of the field at a time for the whole row of pixels,
+ * and a word of cells at a time in grids of bits. A square with any alive cell is never shown as dead,
+ * so that a lone glider doesn't vanish when the whole field is shown.
+ */
+class FieldRasterizer {
+
+    static final int BACKGROUND = 0xFF808080;
+    static final int DEAD = 0xFFF4A460;
+    static final int ALIVE = 0xFF32CD32;
+    static final int OLD = 0xFF006400;
+    static final int DYING = 0xFF808000;
+
+    static final int DENSITY_COLOURS = 17;
+
+    private static final int AGE_COLOURS = 32;
+    private static final int DYING_COLOURS = 8;
+
+    private final int[] ageColours = new int[AGE_COLOURS];
+    private final int[] dyingColours = new int[DYING_COLOURS];
+    private final int[] densityColours = new int[DENSITY_COLOURS];
+
+    private int[] pixelColumns = new int[0];
+    private int[] pixelCounts = new int[0];
+    private int[] cellColours = new int[0];
+
+    FieldRasterizer() {
+        for (int age = 0; age < AGE_COLOURS; age++) {
+            this.ageColours[age] = blend(ALIVE, OLD, (double) age / (AGE_COLOURS - 1));
+        }
+        for (int state = 0; state < DYING_COLOURS; state++) {
+            this.dyingColours[state] = blend(DYING, DEAD, (double) state / DYING_COLOURS);
+        }
+        for (int level = 1; level < DENSITY_COLOURS; level++) {
+            double density = (double) level / (DENSITY_COLOURS - 1);
+            this.densityColours[level] = blend(DEAD, OLD, 0.25 + 0.75 * Math.min(1, density * 2));
+        }
+        this.densityColours[0] = DEAD;
+    }
+
+    /**
+     * @param pixels buffer of width x height pixels, row by row;
+     *               cells of 3 pixels and more are separated by a 1 pixel border
+     */
+    void rasterize(Map map, int[] pixels, int width, int height, Viewport viewport) {
+        if (viewport.cellSize < 1) {
+            rasterizeDensity(map.getGrid(), pixels, width, height, viewport);
+        } else {
+            rasterizeCells(map.getGrid(), pixels, width, height, viewport.cellSize, viewport.startX, viewport.startY);
+        }
+    }
+
+    private void rasterizeCells(Grid grid, int[] pixels, int width, int height, double cellSize, double startX, double startY) {
+        int columns = grid.getWidth();
+        int rows = grid.getHeight();
+        int border = cellSize >= 3 ? 1 : 0;
+
+        if (this.pixelColumns.length < width) {
+            this.pixelColumns = new int[width];
+        }
+        int firstColumn = Integer.MAX_VALUE;
+        int lastColumn = -1;
+        for (int x = 0; x < width; x++) {
+            this.pixelColumns[x] = getCell(x, startX, cellSize, border, columns);
+            if (this.pixelColumns[x] >= 0) {
+                firstColumn = Math.min(firstColumn, this.pixelColumns[x]);
+                lastColumn = Math.max(lastColumn, this.pixelColumns[x]);
+            }
+        }
+        if (this.cellColours.length < columns) {
+            this.cellColours = new int[columns];
+        }
+
+        int previousRow = -2;
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            int row = getCell(y, startY, cellSize, border, rows);
+            if (row == previousRow) {
+                System.arraycopy(pixels, offset - width, pixels, offset, width);
+                continue;
+            }
+            previousRow = row;
+
+            if (row < 0) {
+                Arrays.fill(pixels, offset, offset + width, BACKGROUND);
+                continue;
+            }
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                this.cellColours[column] = getColour(grid, row, column);
+            }
+            for (int x = 0; x < width; x++) {
+                int column = this.pixelColumns[x];
+                pixels[offset + x] = column < 0 ? BACKGROUND : this.cellColours[column];
+            }
+        }
+    }
+
+    private void rasterizeDensity(Grid grid, int[] pixels, int width, int height, Viewport viewport) {
+        if (this.pixelColumns.length < width + 1) {
+            this.pixelColumns = new int[width + 1];
+        }
+        if (this.pixelCounts.length < width) {
+            this.pixelCounts = new int[width];
+        }
+        for (int x = 0; x <= width; x++) {
+            this.pixelColumns[x] = getFirstCell(x, viewport.startX, viewport.cellSize, grid.getWidth());
+        }
+
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            int firstRow = getFirstCell(y, viewport.startY, viewport.cellSize, grid.getHeight());
+            int rowSpan = getFirstCell(y + 1, viewport.startY, viewport.cellSize, grid.getHeight()) - firstRow;
+            if (rowSpan == 0) {
+                Arrays.fill(pixels, offset, offset + width, BACKGROUND);
+                continue;
+            }
+
+            Arrays.fill(this.pixelCounts, 0, width, 0);
+            for (int row = firstRow; row < firstRow + rowSpan; row++) {
+                grid.countAlive(row, this.pixelColumns, this.pixelCounts, width);
+            }
+            for (int x = 0; x < width; x++) {
+                int columnSpan = this.pixelColumns[x + 1] - this.pixelColumns[x];
+                pixels[offset + x] = columnSpan == 0 ? BACKGROUND
+                        : this.densityColours[getDensityLevel(this.pixelCounts[x], (long) rowSpan * columnSpan)];
+            }
+        }
+    }
+
+    /**
+     * @return level of the density of alive cells, only a square without them gets level 0
+     */
+    private static int getDensityLevel(int alive, long cells) {
+        if (alive == 0) {
+            return 0;
+        }
+        return (int) Math.max(1, alive * (long) (DENSITY_COLOURS - 1) / cells);
+    }
+
+    /**
+     * @return first cell covered by the pixel or the following ones, clamped to the field
+     */
+    private static int getFirstCell(int pixel, double start, double cellSize, int cells) {
+        return (int) Math.max(0, Math.min(cells, Math.ceil((pixel - start) / cellSize)));
+    }
+
+    private int getColour(Grid grid, int row, int column) {
+        int state = grid.getState(row, column);
+        if (state == 0) {
+            return DEAD;
+        } else if (state == 1) {
+            return this.ageColours[Math.min(grid.getAge(row, column), AGE_COLOURS - 1)];
+        }
+        return this.dyingColours[Math.min(state - 2, DYING_COLOURS - 1)];
+    }
+
+    /**
+     * @return cell under the pixel or -1 if the pixel is a border or outside of the field
+     */
+    private static int getCell(int pixel, double start, double cellSize, int border, int cells) {
+        double position = (pixel - start) / cellSize;
+        int cell = (int) Math.floor(position);
+        if (cell < 0 || cell >= cells || (position - cell) * cellSize >= cellSize - border) {
+            return -1;
+        }
+        return cell;
+    }
+
+    private static int blend(int from, int to, double ratio) {
+        int colour = 0xFF000000;
+        for (int shift = 0; shift < 24; shift += 8) {
+            int a = (from >> shift) & 0xFF;
+            int b = (to >> shift) & 0xFF;
+            colour |= (int) Math.round(a + (b - a) * ratio) << shift;
+        }
+        return colour;
+    }
+
+}
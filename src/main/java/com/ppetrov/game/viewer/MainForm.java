@@ -1,7 +1,15 @@
 package com.ppetrov.game.viewer;
 
+import com.ppetrov.game.io.Pattern;
+import com.ppetrov.game.io.PatternFiles;
+import com.ppetrov.game.io.Snapshot;
+import com.ppetrov.game.io.SnapshotFiles;
+import com.ppetrov.game.model.Cycle;
 import com.ppetrov.game.model.Game;
+import com.ppetrov.game.model.History;
+import com.ppetrov.game.model.Map;
 import com.ppetrov.game.model.Rules;
+import com.ppetrov.game.model.metrics.SimulationMetrics;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Pos;
@@ -13,26 +21,54 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import rx.Observable;
 import rx.Subscription;
 import rx.observables.JavaFxObservable;
+import rx.schedulers.JavaFxScheduler;
+import rx.subjects.PublishSubject;
 import rx.subscribers.JavaFxSubscriber;
+import rx.subscriptions.Subscriptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class MainForm extends Application {
 
+    private Stage stage;
     private FieldCanvas mainCanvas;
+    private RulesPane rulesPane;
 
     private Subscription gameSubscription;
     private Subscription brushSubscription;
 
     private Observable<Rules> rules;
+    private Observable<Integer> maxAge;
     private Observable<Integer> speed;
     private Observable<Boolean> pause;
     private Observable<Boolean> next;
+    private Observable<Boolean> turbo;
+    private final PublishSubject<Boolean> pauseRequests = PublishSubject.create();
+    private final PublishSubject<Long> jumps = PublishSubject.create();
+    private final PublishSubject<Consumer<Map>> edits = PublishSubject.create();
+    private final SimulationMetrics metrics = new SimulationMetrics();
+
+    private Label cycleLabel;
+    private CheckBox pauseOnCycleBox;
+
+    private volatile Game game;
+    private volatile long startGeneration;
+    private volatile Rules currentRules;
+    private volatile long generation;
+    private long rateGeneration;
+    private long rateNanos;
 
     @Override
     public void start(Stage primaryStage) throws Exception {
+        this.stage = primaryStage;
         primaryStage.setTitle("Game of Life");
 
         Pane root = new HBox();
@@ -54,6 +90,7 @@ public class MainForm extends Application {
 
         root.requestFocus();
 
+        this.metrics.register("viewer");
         startGame();
 
         primaryStage.show();
@@ -61,6 +98,7 @@ public class MainForm extends Application {
 
     private void createMainCanvas(VBox leftPane) {
         this.mainCanvas = new FieldCanvas();
+        this.mainCanvas.setEditor(this.edits::onNext);
         VBox.setVgrow(this.mainCanvas, Priority.ALWAYS);
         leftPane.getChildren().add(this.mainCanvas);
     }
@@ -68,6 +106,7 @@ public class MainForm extends Application {
     @Override
     public void stop() throws Exception {
         stopGame();
+        unsubscribe(this.brushSubscription);
         super.stop();
     }
 
@@ -84,6 +123,7 @@ public class MainForm extends Application {
                 JavaFxObservable.fromActionEvents(pauseButton)
                         .map(event -> false)
                         .mergeWith(JavaFxObservable.fromActionEvents(resumeButton).map(event -> true))
+                        .mergeWith(this.pauseRequests)
         );
 
         Label speedLabel = new Label();
@@ -99,21 +139,67 @@ public class MainForm extends Application {
                 JavaFxSubscriber.toBinding(speed.map(this::getSpeedInSecondsString))
         );
 
+        Button previousStepButton = new Button();
+        previousStepButton.setTooltip(new Tooltip("Previous Step"));
+        previousStepButton.setGraphic(new ImageView("/icons/back.png"));
+        previousStepButton.setOnAction(event -> jump(this.game.getGeneration() - 1));
+
         Button nextStepButton = new Button();
         nextStepButton.setTooltip(new Tooltip("Next Step"));
         nextStepButton.setGraphic(new ImageView("/icons/step.png"));
         this.next = JavaFxObservable.fromActionEvents(nextStepButton).map(event -> true);
 
+        ToggleButton turboButton = new ToggleButton();
+        turboButton.setTooltip(new Tooltip("Turbo"));
+        turboButton.setGraphic(new ImageView("/icons/turbo.png"));
+        this.turbo = JavaFxObservable.fromObservableValue(turboButton.selectedProperty())
+                .map(Boolean::booleanValue);
+
+        Label rateLabel = new Label();
+        rateLabel.setTooltip(new Tooltip("Generations per second"));
+        rateLabel.textProperty().bind(JavaFxSubscriber.toBinding(
+                Observable.interval(1, TimeUnit.SECONDS)
+                        .observeOn(JavaFxScheduler.getInstance())
+                        .map(tick -> getGenerationRateString())
+        ));
+
+        TextField generationField = new TextField();
+        generationField.setPromptText("Generation");
+        generationField.setTooltip(new Tooltip("Jump to generation"));
+        generationField.setPrefColumnCount(6);
+        generationField.setOnAction(event -> {
+            try {
+                jump(Long.parseLong(generationField.getText().trim()) - this.startGeneration);
+            } catch (NumberFormatException e) {
+                generationField.clear();
+            }
+        });
+
+        this.cycleLabel = new Label();
+        this.cycleLabel.setTooltip(new Tooltip("Cycle"));
+
         Button restartButton = new Button();
         restartButton.setTooltip(new Tooltip("Restart Game"));
         restartButton.setGraphic(new ImageView("/icons/restart.png"));
         restartButton.setOnAction(event -> restartGame());
 
+        Button saveButton = new Button();
+        saveButton.setTooltip(new Tooltip("Save Game"));
+        saveButton.setGraphic(new ImageView("/icons/save.png"));
+        saveButton.setOnAction(event -> saveGame());
+
+        Button loadButton = new Button();
+        loadButton.setTooltip(new Tooltip("Load Game"));
+        loadButton.setGraphic(new ImageView("/icons/load.png"));
+        loadButton.setOnAction(event -> loadGame());
+
         ToolBar toolBar = new ToolBar(
                 resumeButton, pauseButton,
                 speedLabel, speedSlider,
-                nextStepButton,
-                restartButton
+                previousStepButton, nextStepButton, generationField,
+                turboButton, rateLabel, this.cycleLabel,
+                restartButton,
+                saveButton, loadButton
         );
 
         HBox settingsGroup = new HBox(toolBar);
@@ -148,10 +234,10 @@ public class MainForm extends Application {
         Tab rulesTab = new Tab("Rules");
         rulesTab.setClosable(false);
 
-        RulesPane rulesPane = new RulesPane();
-        this.rules = rulesPane.getRulesChanges();
+        this.rulesPane = new RulesPane();
+        this.rules = this.rulesPane.getRulesChanges();
 
-        rulesTab.setContent(rulesPane);
+        rulesTab.setContent(this.rulesPane);
         tabPane.getTabs().add(rulesTab);
     }
 
@@ -162,15 +248,18 @@ public class MainForm extends Application {
         VBox settingsPane = new VBox();
 
         Label ageLabel = new Label("Max age:");
-        Slider ageSlider = new Slider(0, 100, 20);
+        Slider ageSlider = new Slider(0, 100, Rules.DEFAULT_MAX_AGE);
         ageSlider.setShowTickMarks(true);
         ageSlider.setMajorTickUnit(20);
         ageSlider.setBlockIncrement(20);
 
-        JavaFxObservable.fromObservableValue(ageSlider.valueProperty())
-                .map(Number::intValue);
+        this.maxAge = JavaFxObservable.fromObservableValue(ageSlider.valueProperty())
+                .map(Number::intValue)
+                .distinctUntilChanged();
+
+        this.pauseOnCycleBox = new CheckBox("Pause on cycles");
 
-        settingsPane.getChildren().addAll(ageLabel, ageSlider);
+        settingsPane.getChildren().addAll(ageLabel, ageSlider, this.pauseOnCycleBox);
 
         settingsTab.setContent(settingsPane);
         tabPane.getTabs().add(settingsTab);
@@ -180,21 +269,150 @@ public class MainForm extends Application {
         return String.format("%.2fs", speedInMillis / 1000);
     }
 
+    private String getGenerationRateString() {
+        long generation = this.generation;
+        long nanos = System.nanoTime();
+        long rate = this.rateNanos == 0 ? 0
+                : Math.max(0, (generation - this.rateGeneration) * 1_000_000_000 / (nanos - this.rateNanos));
+        this.rateGeneration = generation;
+        this.rateNanos = nanos;
+        return rate + " gen/s";
+    }
+
     private void restartGame() {
         stopGame();
         startGame();
     }
 
     private void startGame() {
-        this.gameSubscription = new Game().startGame(this.rules, this.speed, this.pause, this.next)
-                .subscribe(map -> {
-                    this.mainCanvas.setMap(map);
-                    Platform.runLater(this.mainCanvas::redraw);
+        startGame(Game.getDefaultMap(), 0);
+    }
+
+    /**
+     * @param generation number of the map
+     */
+    private void startGame(Map map, long generation) {
+        Game game = new Game(true, this.metrics, new History());
+        this.game = game;
+        this.startGeneration = generation;
+        this.cycleLabel.setText("");
+        Subscription cycles = game.getCycles()
+                .map(cycle -> new Cycle(generation + cycle.getGeneration(), cycle.getPeriod()))
+                .observeOn(JavaFxScheduler.getInstance())
+                .subscribe(this::showCycle);
+        Subscription maps = game.startGame(map, getAgedRules(), this.speed, this.pause, this.next, this.turbo,
+                this.jumps, this.edits)
+                .subscribe(currentMap -> {
+                    this.generation = generation + game.getGeneration();
+                    this.mainCanvas.setMap(currentMap);
+                    this.mainCanvas.redraw();
                 });
+        this.gameSubscription = Subscriptions.from(cycles, maps);
+    }
+
+    /**
+     * Pause the game and show the generation counted from the start of the game,
+     * or the oldest one kept in the history if it was evicted
+     */
+    private void jump(long generation) {
+        if (generation >= 0) {
+            this.pauseRequests.onNext(false);
+            this.jumps.onNext(generation);
+        }
+    }
+
+    private void showCycle(Cycle cycle) {
+        this.cycleLabel.setText(cycle.getPeriod() > 0 ? cycle.toString() : "");
+        if (cycle.getPeriod() > 0 && this.pauseOnCycleBox.isSelected()) {
+            this.pauseRequests.onNext(false);
+        }
+    }
+
+    private Observable<Rules> getAgedRules() {
+        return Observable.combineLatest(this.rules, this.maxAge, Rules::withMaxAge)
+                .doOnNext(rules -> this.currentRules = rules);
+    }
+
+    /**
+     * Copy the field between steps of the game and save it on the JavaFX thread
+     */
+    private void saveGame() {
+        File file = createFileChooser("Save Game").showSaveDialog(this.stage);
+        if (file == null) {
+            return;
+        }
+        Rules rules = this.currentRules;
+        this.edits.onNext(map -> {
+            Map copy = new Map(map.getGrid().copy());
+            long generation = this.startGeneration + this.game.getGeneration();
+            Platform.runLater(() -> saveGame(file, copy, rules, generation));
+        });
+    }
+
+    /**
+     * Save the field as a snapshot, or as a pattern if an RLE or plaintext file is chosen
+     */
+    private void saveGame(File file, Map map, Rules rules, long generation) {
+        try {
+            if (SnapshotFiles.isSnapshot(file.toPath())) {
+                SnapshotFiles.write(file.toPath(), new Snapshot(map, rules, generation));
+            } else {
+                PatternFiles.write(file.toPath(), map, rules);
+            }
+        } catch (IOException e) {
+            showError("Can't save the game", e);
+        }
+    }
+
+    private void loadGame() {
+        File file = createFileChooser("Load Game").showOpenDialog(this.stage);
+        if (file == null) {
+            return;
+        }
+        try {
+            Map map;
+            Rules rules;
+            long generation = 0;
+            if (SnapshotFiles.isSnapshot(file.toPath())) {
+                Snapshot snapshot = SnapshotFiles.read(file.toPath());
+                map = snapshot.getMap();
+                rules = snapshot.getRules();
+                generation = snapshot.getGeneration();
+            } else {
+                Pattern pattern = PatternFiles.read(file.toPath());
+                map = pattern.getMap();
+                rules = pattern.getRules();
+            }
+
+            unsubscribe(this.gameSubscription);
+            if (rules != null) {
+                this.rulesPane.setRules(rules);
+            }
+            startGame(map, generation);
+        } catch (IOException e) {
+            showError("Can't load the game", e);
+        }
+    }
+
+    private FileChooser createFileChooser(String title) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle(title);
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Snapshot", "*" + SnapshotFiles.EXTENSION),
+                new FileChooser.ExtensionFilter("RLE Pattern", "*.rle"),
+                new FileChooser.ExtensionFilter("Plaintext Pattern", "*.cells", "*.txt")
+        );
+        return fileChooser;
+    }
+
+    private void showError(String header, Exception e) {
+        Alert alert = new Alert(Alert.AlertType.ERROR, e.getMessage());
+        alert.setHeaderText(header);
+        alert.initOwner(this.stage);
+        alert.showAndWait();
     }
 
     private void stopGame() {
-        unsubscribe(this.brushSubscription);
         unsubscribe(this.gameSubscription);
     }
 
@@ -7,6 +7,7 @@ import javafx.scene.layout.VBox;
 import javafx.scene.text.TextAlignment;
 import rx.Observable;
 import rx.observables.JavaFxObservable;
+import rx.subjects.PublishSubject;
 
 import java.util.stream.IntStream;
 
@@ -15,6 +16,9 @@ public class RulesPane extends VBox {
     private VBox bornSurvivesVBox;
     private TogglePane bornPane;
     private TogglePane survivesPane;
+    private Spinner<Integer> statesSpinner;
+    private TextField largerThanLifeField;
+    private final PublishSubject<Rules> selectedRules = PublishSubject.create();
 
     private ScrollPane templatesPane;
     private VBox templatesVBox;
@@ -40,9 +44,25 @@ public class RulesPane extends VBox {
         this.survivesPane = new TogglePane(9, 3);
         this.survivesPane.select(2, 3);
 
+        this.statesSpinner = new Spinner<>(2, Rules.MAX_STATES, 2);
+        this.statesSpinner.setTooltip(new Tooltip("Alive, dead and dying states of Generations rules"));
+
+        this.largerThanLifeField = new TextField();
+        this.largerThanLifeField.setPromptText("R5,C0,M1,S34..58,B34..45,NM");
+        this.largerThanLifeField.setTooltip(new Tooltip("Larger than Life rule with a wider neighbourhood"));
+        this.largerThanLifeField.setOnAction(event -> {
+            try {
+                setRules(Rules.parse(this.largerThanLifeField.getText()));
+            } catch (IllegalArgumentException e) {
+                this.largerThanLifeField.clear();
+            }
+        });
+
         this.bornSurvivesVBox.getChildren().addAll(
                 new Label("Born:"), this.bornPane,
-                new Label("Survives:"), this.survivesPane
+                new Label("Survives:"), this.survivesPane,
+                new Label("States:"), this.statesSpinner,
+                new Label("Larger than Life:"), this.largerThanLifeField
         );
     }
 
@@ -79,11 +99,25 @@ public class RulesPane extends VBox {
     }
 
     private void subscribeOnTemplatesChanges() {
-        getTemplatesChanges().subscribe(template -> {
-            Rules rules = template.getRules();
+        getTemplatesChanges().subscribe(template -> setRules(template.getRules()));
+    }
+
+    /**
+     * Select born and survives counts and the amount of states of the rules,
+     * Larger than Life rules are shown as a rule string instead.
+     * The rules are passed on as they are, so Hensel letters of loaded rules are kept
+     * and unchanged toggles still pass them on.
+     */
+    public void setRules(Rules rules) {
+        if (rules.getRange() > 1) {
+            this.largerThanLifeField.setText(rules.toString());
+        } else {
+            this.largerThanLifeField.clear();
             this.bornPane.select(rules.getBorn());
             this.survivesPane.select(rules.getSurvives());
-        });
+            this.statesSpinner.getValueFactory().setValue(rules.getStates());
+        }
+        this.selectedRules.onNext(rules);
     }
 
     public Observable<Rules> getRulesChanges() {
@@ -91,9 +125,10 @@ public class RulesPane extends VBox {
                 Observable.combineLatest(
                         this.bornPane.getSelectionChanges(),
                         this.survivesPane.getSelectionChanges(),
+                        JavaFxObservable.fromObservableValue(this.statesSpinner.valueProperty()),
                         Rules::new
-                )
-        );
+                ).doOnNext(rules -> this.largerThanLifeField.clear())
+        ).mergeWith(this.selectedRules);
     }
 
     public void selectIfExists(Rules rules) {
@@ -0,0 +1,59 @@
+package com.ppetrov.game.viewer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * TripleBuffer passes the latest of values written by one thread to another one without locks and allocations.
+ * The writer fills its back buffer and publishes it by swapping with the middle one,
+ * the reader takes the middle buffer by swapping it with its front one.
+ * Values published before the reader came are overwritten, so it always gets the newest one,
+ * and neither side ever waits for the other.
+ */
+final class TripleBuffer<T> {
+
+    private static final int INDEX = 0b11;
+    private static final int FRESH = 0b100;
+
+    private final Object[] buffers = new Object[3];
+
+    /**
+     * Index of the middle buffer and whether it was published after the last take
+     */
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    private int back = 0;
+    private int front = 2;
+
+    TripleBuffer(Supplier<T> factory) {
+        for (int i = 0; i < this.buffers.length; i++) {
+            this.buffers[i] = factory.get();
+        }
+    }
+
+    /**
+     * @return buffer to be filled by the writer, it belongs to the writer until {@link #publish()}
+     */
+    @SuppressWarnings("unchecked")
+    T getBack() {
+        return (T) this.buffers[this.back];
+    }
+
+    void publish() {
+        this.back = this.middle.getAndSet(this.back | FRESH) & INDEX;
+    }
+
+    /**
+     * @return the newest published buffer, it belongs to the reader until the next take,
+     * or null if nothing was published since the last take
+     */
+    @SuppressWarnings("unchecked")
+    T take() {
+        if ((this.middle.get() & FRESH) == 0) {
+            return null;
+        }
+        this.front = this.middle.getAndSet(this.front) & INDEX;
+        return (T) this.buffers[this.front];
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.ppetrov.game.viewer;
+
+/**
+ * Viewport places cells of a field on the pixels of a canvas.
+ * It is immutable, so a viewport can be handed to the rasterizer thread as it is.
+ */
+final class Viewport {
+
+    static final double MAX_CELL_SIZE = 64;
+    static final double MIN_CELL_SIZE = 1.0 / 64;
+
+    /**
+     * Size of a cell in pixels, it is less than 1 when several cells fall into one pixel
+     */
+    final double cellSize;
+
+    /**
+     * Coordinates of the top left corner of the field on the canvas
+     */
+    final double startX;
+    final double startY;
+
+    Viewport(double cellSize, double startX, double startY) {
+        this.cellSize = cellSize;
+        this.startX = startX;
+        this.startY = startY;
+    }
+
+    /**
+     * @return viewport showing the whole field in the centre of the canvas
+     */
+    static Viewport fit(int columns, int rows, double width, double height) {
+        double cellSize = Math.min(width / columns, height / rows);
+        return new Viewport(cellSize, (width - cellSize * columns) / 2, (height - cellSize * rows) / 2);
+    }
+
+    /**
+     * @return viewport zoomed by the factor around the point, which stays at the same cell
+     */
+    Viewport zoom(double factor, double x, double y) {
+        double cellSize = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE, this.cellSize * factor));
+        double ratio = cellSize / this.cellSize;
+        return new Viewport(cellSize, x - (x - this.startX) * ratio, y - (y - this.startY) * ratio);
+    }
+
+    Viewport pan(double dx, double dy) {
+        return new Viewport(this.cellSize, this.startX + dx, this.startY + dy);
+    }
+
+    int getColumn(double x) {
+        return (int) Math.floor((x - this.startX) / this.cellSize);
+    }
+
+    int getRow(double y) {
+        return (int) Math.floor((y - this.startY) / this.cellSize);
+    }
+
+    double getX(int column) {
+        return this.startX + column * this.cellSize;
+    }
+
+    double getY(int row) {
+        return this.startY + row * this.cellSize;
+    }
+
+}
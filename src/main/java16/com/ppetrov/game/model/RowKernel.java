@@ -0,0 +1,51 @@
+package com.ppetrov.game.model;
+
+/**
+ * Step of whole rows of a {@link BitGrid} for Java 16 and newer.
+ * Rows are stepped by {@link VectorRowKernel} when the incubating module of the Vector API
+ * is added to the JVM with {@code --add-modules jdk.incubator.vector},
+ * otherwise word by word with {@link BitKernel#stepWord} as on older JVMs.
+ * The vector kernel can be switched off with {@code -Dgame.scalarKernel=true} to compare both.
+ */
+final class RowKernel {
+
+    private static final boolean VECTORIZED = !Boolean.getBoolean("game.scalarKernel")
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private RowKernel() {
+    }
+
+    /**
+     * @return name of the kernel which steps rows in this JVM
+     */
+    static String getName() {
+        return VECTORIZED ? VectorRowKernel.getName() : "scalar";
+    }
+
+    /**
+     * Calculate next state of a row into the target words at the same offset
+     *
+     * @param words        words of the grid, rows wrap around vertically by the offsets
+     * @param northOffset  offset of the row above
+     * @param centreOffset offset of the row itself
+     * @param southOffset  offset of the row below
+     * @param width        amount of cells in the row
+     */
+    static void stepRow(long[] words, int northOffset, int centreOffset, int southOffset,
+                        long[] target, int width, int born, int survives) {
+        if (VECTORIZED) {
+            VectorRowKernel.stepRow(words, northOffset, centreOffset, southOffset, target, width, born, survives);
+            return;
+        }
+        int wordsPerRow = BitKernel.getWordsPerRow(width);
+        for (int word = 0; word < wordsPerRow; word++) {
+            target[centreOffset + word] = BitKernel.stepWord(
+                    words, northOffset,
+                    words, centreOffset,
+                    words, southOffset,
+                    word, width, born, survives
+            );
+        }
+    }
+
+}
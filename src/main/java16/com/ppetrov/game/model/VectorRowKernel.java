@@ -0,0 +1,120 @@
+package com.ppetrov.game.model;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Bit-parallel step of rows with the Vector API, the same full adders as {@link BitKernel}
+ * are applied to as many words as fit into the widest vector register of the CPU,
+ * e.g. 4 words with AVX2 and 8 with AVX-512.
+ * Western and eastern neighbours of the words are built from unaligned loads shifted by a word,
+ * so only the first and the last word of a row, which wrap around, are left to {@link BitKernel#stepWord}.
+ * It must be loaded only when the module {@code jdk.incubator.vector} is present.
+ */
+final class VectorRowKernel {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private VectorRowKernel() {
+    }
+
+    static String getName() {
+        return "vector " + SPECIES.vectorBitSize() + " bit";
+    }
+
+    static void stepRow(long[] words, int northOffset, int centreOffset, int southOffset,
+                        long[] target, int width, int born, int survives) {
+        int wordsPerRow = BitKernel.getWordsPerRow(width);
+        int lanes = SPECIES.length();
+
+        int word = 1;
+        for (; word + lanes < wordsPerRow; word += lanes) {
+            LongVector nw = west(words, northOffset + word);
+            LongVector n = LongVector.fromArray(SPECIES, words, northOffset + word);
+            LongVector ne = east(words, northOffset + word);
+            LongVector w = west(words, centreOffset + word);
+            LongVector c = LongVector.fromArray(SPECIES, words, centreOffset + word);
+            LongVector e = east(words, centreOffset + word);
+            LongVector sw = west(words, southOffset + word);
+            LongVector s = LongVector.fromArray(SPECIES, words, southOffset + word);
+            LongVector se = east(words, southOffset + word);
+
+            LongVector sum1 = nw.lanewise(VectorOperators.XOR, n).lanewise(VectorOperators.XOR, ne);
+            LongVector carry1 = nw.and(n).or(ne.and(nw.lanewise(VectorOperators.XOR, n)));
+            LongVector sum2 = w.lanewise(VectorOperators.XOR, e).lanewise(VectorOperators.XOR, sw);
+            LongVector carry2 = w.and(e).or(sw.and(w.lanewise(VectorOperators.XOR, e)));
+            LongVector sum3 = s.lanewise(VectorOperators.XOR, se);
+            LongVector carry3 = s.and(se);
+
+            LongVector ones = sum1.lanewise(VectorOperators.XOR, sum2).lanewise(VectorOperators.XOR, sum3);
+            LongVector carryOnes = sum1.and(sum2).or(sum3.and(sum1.lanewise(VectorOperators.XOR, sum2)));
+            LongVector sumTwos = carry1.lanewise(VectorOperators.XOR, carry2).lanewise(VectorOperators.XOR, carry3);
+            LongVector carryTwos = carry1.and(carry2).or(carry3.and(carry1.lanewise(VectorOperators.XOR, carry2)));
+            LongVector twos = sumTwos.lanewise(VectorOperators.XOR, carryOnes);
+            LongVector carryFours = sumTwos.and(carryOnes);
+            LongVector fours = carryTwos.lanewise(VectorOperators.XOR, carryFours);
+            LongVector eights = carryTwos.and(carryFours);
+
+            applyRule(c, ones, twos, fours, eights, born, survives).intoArray(target, centreOffset + word);
+        }
+
+        target[centreOffset] = stepWord(words, northOffset, centreOffset, southOffset, 0, width, born, survives);
+        for (; word < wordsPerRow; word++) {
+            target[centreOffset + word] = stepWord(words, northOffset, centreOffset, southOffset, word, width, born, survives);
+        }
+    }
+
+    /**
+     * Same as {@link BitKernel#applyRule} for every lane
+     */
+    private static LongVector applyRule(LongVector alive, LongVector ones, LongVector twos,
+                                        LongVector fours, LongVector eights, int born, int survives) {
+        LongVector next = LongVector.zero(SPECIES);
+        for (int count = 0; count <= 8; count++) {
+            int bit = 1 << count;
+            if (((born | survives) & bit) != 0) {
+                LongVector matches = ((count & 1) != 0 ? ones : ones.not())
+                        .and((count & 2) != 0 ? twos : twos.not())
+                        .and((count & 4) != 0 ? fours : fours.not())
+                        .and((count & 8) != 0 ? eights : eights.not());
+                if ((born & bit) != 0) {
+                    next = next.or(matches.and(alive.not()));
+                }
+                if ((survives & bit) != 0) {
+                    next = next.or(matches.and(alive));
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @return words starting at the offset where every cell is replaced with its western neighbour,
+     * the word before the offset must belong to the same row
+     */
+    private static LongVector west(long[] words, int offset) {
+        return LongVector.fromArray(SPECIES, words, offset).lanewise(VectorOperators.LSHL, 1)
+                .or(LongVector.fromArray(SPECIES, words, offset - 1).lanewise(VectorOperators.LSHR, 63));
+    }
+
+    /**
+     * @return words starting at the offset where every cell is replaced with its eastern neighbour,
+     * the word after the last one must belong to the same row
+     */
+    private static LongVector east(long[] words, int offset) {
+        return LongVector.fromArray(SPECIES, words, offset).lanewise(VectorOperators.LSHR, 1)
+                .or(LongVector.fromArray(SPECIES, words, offset + 1).lanewise(VectorOperators.LSHL, 63));
+    }
+
+    private static long stepWord(long[] words, int northOffset, int centreOffset, int southOffset,
+                                 int word, int width, int born, int survives) {
+        return BitKernel.stepWord(
+                words, northOffset,
+                words, centreOffset,
+                words, southOffset,
+                word, width, born, survives
+        );
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.ppetrov.game.io;
+
+import com.ppetrov.game.model.BitGrid;
+import com.ppetrov.game.model.ByteGrid;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.Rules;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PatternFilesTest {
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory("patterns");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void plaintextIsReadBack() throws IOException {
+        Map map = getRandomMap(95, 41);
+        Path path = this.directory.resolve("soup.cells");
+        PatternFiles.write(path, map, Rules.parse("B36/S23"));
+
+        Pattern pattern = PatternFiles.read(path);
+        assertNull(pattern.getRules());
+        assertSameStates(map, pattern.getMap());
+    }
+
+    @Test
+    public void rleIsReadBack() throws IOException {
+        Map map = getRandomMap(200, 130);
+        Path path = this.directory.resolve("soup.rle");
+        PatternFiles.write(path, map, Rules.parse("B36/S23"));
+
+        Pattern pattern = PatternFiles.read(path);
+        assertEquals(Rules.parse("B36/S23"), pattern.getRules());
+        assertTrue(pattern.getMap().getGrid() instanceof BitGrid);
+        assertSameStates(map, pattern.getMap());
+    }
+
+    @Test
+    public void statesOfGenerationsRulesAreReadBack() throws IOException {
+        Rules rules = Rules.parse("B2/S/C200");
+        Map map = new Map(new ByteGrid(90, 40));
+        Random random = new Random(4);
+        for (int row = 0; row < map.getHeight(); row++) {
+            for (int column = 0; column < map.getWidth(); column++) {
+                map.setState(row, column, random.nextBoolean() ? random.nextInt(rules.getStates()) : 0);
+            }
+        }
+        map.setState(0, 0, 1);
+        map.setState(map.getHeight() - 1, map.getWidth() - 1, rules.getStates() - 1);
+        Path path = this.directory.resolve("generations.rle");
+        PatternFiles.write(path, map, rules);
+
+        Pattern pattern = PatternFiles.read(path);
+        assertEquals(rules, pattern.getRules());
+        assertTrue(pattern.getMap().getGrid() instanceof ByteGrid);
+        assertSameStates(map, pattern.getMap());
+    }
+
+    @Test
+    public void patternIsPlacedInTheCentre() throws IOException {
+        Pattern rle = new RleReader(new StringReader("#C glider\nx = 3, y = 3\nbo$2bo$3o!\n"), 11, 9).read();
+        Pattern plaintext = new PlaintextReader(new StringReader("!Name: Glider\n.O\n..O\nOOO\n"), 11, 9).read();
+
+        for (Pattern pattern : new Pattern[]{rle, plaintext}) {
+            Map map = pattern.getMap();
+            assertEquals(11, map.getWidth());
+            assertEquals(9, map.getHeight());
+            assertEquals(5, map.getPopulation());
+            assertTrue(map.isSet(3, 5) && map.isSet(4, 6) && map.isSet(5, 4) && map.isSet(5, 5) && map.isSet(5, 6));
+        }
+        assertNull(rle.getRules());
+    }
+
+    @Test
+    public void malformedPatternsAreRejected() {
+        String[] patterns = {"", "bo$2bo$3o!", "x = 3\nbo!", "x = 3, y = 3, rule = B9/S\nbo!", "x = 2, y = 2\n40o!"};
+        for (String text : patterns) {
+            try {
+                new RleReader(new StringReader(text)).read();
+                fail("Pattern '" + text + "' was read");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    private static Map getRandomMap(int width, int height) {
+        Map map = new Map(new BitGrid(width, height));
+        map.fillRandomly(new Random(width), 0.3);
+        map.setCell(0, 0, true);
+        map.setCell(height - 1, width - 1, true);
+        return map;
+    }
+
+    private static void assertSameStates(Map expected, Map actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int row = 0; row < expected.getHeight(); row++) {
+            for (int column = 0; column < expected.getWidth(); column++) {
+                if (expected.getState(row, column) != actual.getState(row, column)) {
+                    fail("Cell " + row + "," + column + " is " + actual.getState(row, column)
+                            + " instead of " + expected.getState(row, column));
+                }
+            }
+        }
+    }
+
+}
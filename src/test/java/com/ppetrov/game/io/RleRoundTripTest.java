@@ -0,0 +1,60 @@
+package com.ppetrov.game.io;
+
+import com.ppetrov.game.model.ByteGrid;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.Rules;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class RleRoundTripTest {
+
+    @Test
+    public void largerThanLifeRulesAreReadBack() throws IOException {
+        assertRoundTrip(Rules.parse("R5,C0,M1,S34..58,B34..45,NM"), 2);
+    }
+
+    @Test
+    public void largerThanLifeRulesWithStatesAreReadBack() throws IOException {
+        assertRoundTrip(Rules.parse("R2,C4,M0,S3..8,B4..6,NN"), 4);
+    }
+
+    @Test
+    public void ruleIsTheRestOfTheHeader() throws IOException {
+        Pattern pattern = new RleReader(new StringReader("x = 3, y = 1, rule = R5,C0,M1,S34..58,B34..45,NM\nobo!\n")).read();
+
+        assertEquals(Rules.parse("R5,C0,M1,S34..58,B34..45,NM"), pattern.getRules());
+        assertEquals(3, pattern.getMap().getWidth());
+        assertEquals(1, pattern.getMap().getState(0, 0));
+        assertEquals(0, pattern.getMap().getState(0, 1));
+    }
+
+    private static void assertRoundTrip(Rules rules, int states) throws IOException {
+        Map map = new Map(new ByteGrid(37, 23));
+        Random random = new Random(7);
+        for (int row = 0; row < map.getHeight(); row++) {
+            for (int column = 0; column < map.getWidth(); column++) {
+                map.setState(row, column, random.nextInt(3) == 0 ? 1 + random.nextInt(states - 1) : 0);
+            }
+        }
+
+        StringWriter text = new StringWriter();
+        new RleWriter(text).write(map, rules);
+        Pattern pattern = new RleReader(new StringReader(text.toString())).read();
+
+        assertEquals(rules, pattern.getRules());
+        assertEquals(map.getWidth(), pattern.getMap().getWidth());
+        assertEquals(map.getHeight(), pattern.getMap().getHeight());
+        for (int row = 0; row < map.getHeight(); row++) {
+            for (int column = 0; column < map.getWidth(); column++) {
+                assertEquals("cell " + row + "," + column, map.getState(row, column), pattern.getMap().getState(row, column));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.ppetrov.game.io;
+
+import com.ppetrov.game.model.BitGrid;
+import com.ppetrov.game.model.ByteGrid;
+import com.ppetrov.game.model.Grid;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.OffHeapGrid;
+import com.ppetrov.game.model.Rules;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SnapshotFilesTest {
+
+    private Path directory;
+    private Path path;
+
+    @Before
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory("snapshots");
+        this.path = this.directory.resolve("field" + SnapshotFiles.EXTENSION);
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void bitGridIsReadBack() throws IOException {
+        Map map = getRandomMap(new BitGrid(130, 70));
+        SnapshotFiles.write(this.path, new Snapshot(map, Rules.parse("B36/S23"), 123456789012L));
+
+        Snapshot snapshot = SnapshotFiles.read(this.path);
+        assertTrue(snapshot.getMap().getGrid() instanceof BitGrid);
+        assertEquals(Rules.parse("B36/S23"), snapshot.getRules());
+        assertEquals(123456789012L, snapshot.getGeneration());
+        assertSameCells(map, snapshot.getMap(), false);
+        assertEquals(map.getStateHash(), snapshot.getMap().getStateHash());
+    }
+
+    @Test
+    public void byteGridIsReadBackWithStatesAndAges() throws IOException {
+        Rules rules = Rules.parse("B2/S345/C5");
+        Map map = getRandomMap(new BitGrid(100, 60));
+        for (int generation = 0; generation < 7; generation++) {
+            map = rules.nextState(map);
+        }
+        SnapshotFiles.write(this.path, new Snapshot(map, rules, 7));
+
+        Snapshot snapshot = SnapshotFiles.read(this.path);
+        assertTrue(snapshot.getMap().getGrid() instanceof ByteGrid);
+        assertEquals(rules, snapshot.getRules());
+        assertSameCells(map, snapshot.getMap(), true);
+    }
+
+    @Test
+    public void agesOfTwoStatesAreReadBack() throws IOException {
+        Rules rules = Rules.parse("B3/S23");
+        Map map = getRandomMap(new ByteGrid(77, 33));
+        for (int generation = 0; generation < 5; generation++) {
+            map = rules.nextState(map);
+        }
+        SnapshotFiles.write(this.path, new Snapshot(map, rules, 5));
+
+        Snapshot snapshot = SnapshotFiles.read(this.path);
+        assertTrue(snapshot.getMap().getGrid() instanceof ByteGrid);
+        assertSameCells(map, snapshot.getMap(), true);
+    }
+
+    @Test
+    public void largerThanLifeRulesAreReadBack() throws IOException {
+        Rules rules = Rules.parse("R5,C0,M1,S34..58,B34..45,NM");
+        Map map = getRandomMap(new BitGrid(65, 64));
+        SnapshotFiles.write(this.path, new Snapshot(map, rules, 0));
+
+        Snapshot snapshot = SnapshotFiles.read(this.path);
+        assertEquals(rules, snapshot.getRules());
+        assertSameCells(map, snapshot.getMap(), false);
+    }
+
+    @Test
+    public void snapshotsAreReadOffHeap() throws IOException {
+        Map map = getRandomMap(new BitGrid(200, 90));
+        SnapshotFiles.write(this.path, new Snapshot(map, Rules.parse("B3/S23"), 42));
+
+        Snapshot direct = SnapshotFiles.readOffHeap(this.path, null);
+        assertTrue(direct.getMap().getGrid() instanceof OffHeapGrid);
+        assertEquals(42, direct.getGeneration());
+        assertSameCells(map, direct.getMap(), false);
+
+        Snapshot mapped = SnapshotFiles.readOffHeap(this.path, this.directory.resolve("grid"));
+        assertEquals(this.directory.resolve("grid"), ((OffHeapGrid) mapped.getMap().getGrid()).getFile());
+        assertSameCells(map, mapped.getMap(), false);
+
+        Path copy = this.directory.resolve("copy" + SnapshotFiles.EXTENSION);
+        SnapshotFiles.write(copy, mapped);
+        assertSameCells(map, SnapshotFiles.read(copy).getMap(), false);
+    }
+
+    @Test(expected = IOException.class)
+    public void statesAreNotReadOffHeap() throws IOException {
+        Map map = new Map(new ByteGrid(10, 10));
+        map.setState(5, 5, 2);
+        SnapshotFiles.write(this.path, new Snapshot(map, Rules.parse("B2/S/C3"), 0));
+
+        SnapshotFiles.readOffHeap(this.path, null);
+    }
+
+    @Test
+    public void snapshotIsReplacedWithoutTemporaryFiles() throws IOException {
+        Map first = getRandomMap(new BitGrid(50, 50));
+        Map second = getRandomMap(new BitGrid(30, 20));
+        SnapshotFiles.write(this.path, new Snapshot(first, Rules.parse("B3/S23"), 1));
+        SnapshotFiles.write(this.path, new Snapshot(second, Rules.parse("B36/S23"), 2));
+
+        Snapshot snapshot = SnapshotFiles.read(this.path);
+        assertEquals(2, snapshot.getGeneration());
+        assertSameCells(second, snapshot.getMap(), false);
+        try (Stream<Path> files = Files.list(this.directory)) {
+            assertArrayEquals(new Object[]{this.path}, files.toArray());
+        }
+    }
+
+    @Test
+    public void brokenFilesAreRejected() throws IOException {
+        SnapshotFiles.write(this.path, new Snapshot(getRandomMap(new BitGrid(40, 40)), Rules.parse("B3/S23"), 3));
+        byte[] bytes = Files.readAllBytes(this.path);
+
+        byte[] foreign = bytes.clone();
+        foreign[0] = 'X';
+        byte[] version = bytes.clone();
+        version[4] = 2;
+        byte[] rule = bytes.clone();
+        rule[26] = 'X';
+        for (byte[] broken : Arrays.asList(foreign, version, rule,
+                Arrays.copyOf(bytes, 10), Arrays.copyOf(bytes, bytes.length - 1), Arrays.copyOf(bytes, bytes.length + 8))) {
+            Files.write(this.path, broken);
+            try {
+                SnapshotFiles.read(this.path);
+                fail("Broken snapshot of " + broken.length + " bytes was read");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    private static Map getRandomMap(Grid grid) {
+        Map map = new Map(grid);
+        map.fillRandomly(new Random(grid.getWidth()), 0.4);
+        return map;
+    }
+
+    private static void assertSameCells(Map expected, Map actual, boolean ages) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int row = 0; row < expected.getHeight(); row++) {
+            for (int column = 0; column < expected.getWidth(); column++) {
+                if (expected.getState(row, column) != actual.getState(row, column)
+                        || ages && expected.getAge(row, column) != actual.getAge(row, column)) {
+                    fail("Cell " + row + "," + column + " is " + actual.getState(row, column)
+                            + " aged " + actual.getAge(row, column) + " instead of " + expected.getState(row, column)
+                            + " aged " + expected.getAge(row, column));
+                }
+            }
+        }
+    }
+
+}
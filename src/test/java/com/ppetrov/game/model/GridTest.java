@@ -0,0 +1,154 @@
+package com.ppetrov.game.model;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.assertEquals;
+
+public class GridTest {
+
+    private static final int[] WIDTHS = {1, 2, 3, 31, 63, 64, 65, 127, 128, 130, 200};
+    private static final int[] HEIGHTS = {1, 2, 3, 17};
+    private static final String[] RULES = {"B3/S23", "B36/S23", "B2/S", "B1357/S1357", "B0123478/S01234678"};
+
+    @Test
+    public void bitGridMatchesNaiveLife() {
+        assertMatchesNaiveLife(BitGrid::new);
+    }
+
+    @Test
+    public void offHeapGridMatchesNaiveLife() {
+        assertMatchesNaiveLife(OffHeapGrid::new);
+    }
+
+    @Test
+    public void byteGridMatchesNaiveLife() {
+        assertMatchesNaiveLife(ByteGrid::new);
+    }
+
+    @Test
+    public void cellGridMatchesNaiveLife() {
+        assertMatchesNaiveLife(CellGrid::new);
+    }
+
+    @Test
+    public void statesAreReadAndWrittenInBulk() {
+        Random random = new Random(5);
+        for (int width : WIDTHS) {
+            BitGrid grid = new BitGrid(width, 3);
+            byte[] states = new byte[width];
+            for (int column = 0; column < width; column++) {
+                states[column] = (byte) random.nextInt(2);
+            }
+            int from = random.nextInt(width);
+            int length = width - from;
+            grid.setStates(1, from, states, from, length);
+
+            byte[] read = new byte[width];
+            grid.getStates(1, from, read, from, length);
+            for (int column = 0; column < width; column++) {
+                int expected = column >= from ? states[column] : 0;
+                assertEquals("cell " + column + " of " + width, expected, read[column]);
+                assertEquals("cell " + column + " of " + width, expected == 1, grid.isAlive(1, column));
+                assertEquals(false, grid.isAlive(0, column) || grid.isAlive(2, column));
+            }
+        }
+    }
+
+    @Test
+    public void aliveCellsAreCountedByWords() {
+        Random random = new Random(9);
+        for (int width : WIDTHS) {
+            assertCountsAlive(new BitGrid(width, 2), random);
+            assertCountsAlive(new OffHeapGrid(width, 2), random);
+        }
+    }
+
+    private static void assertMatchesNaiveLife(BiFunction<Integer, Integer, Grid> factory) {
+        Random random = new Random(1);
+        for (String rule : RULES) {
+            Rules rules = Rules.parse(rule);
+            for (int width : WIDTHS) {
+                for (int height : HEIGHTS) {
+                    Map map = new Map(factory.apply(width, height));
+                    map.fillRandomly(random, 0.4);
+                    map.getStateHash();
+                    for (int generation = 0; generation < 4; generation++) {
+                        long[] changes = new long[2];
+                        Map next = rules.nextState(map, new Map(map.getGrid().copy()),
+                                (births, deaths) -> {
+                                    changes[0] += births;
+                                    changes[1] += deaths;
+                                });
+                        String message = rule + " " + width + "x" + height + " generation " + generation;
+                        assertNextState(message, rules, map, next, changes);
+                        map = next;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertNextState(String message, Rules rules, Map map, Map next, long[] changes) {
+        long births = 0;
+        long deaths = 0;
+        for (int row = 0; row < map.getHeight(); row++) {
+            for (int column = 0; column < map.getWidth(); column++) {
+                boolean alive = map.isSet(row, column);
+                boolean expected = isAliveNext(rules, alive, countNeighbours(map, row, column));
+                assertEquals(message + " cell " + row + "," + column, expected, next.isSet(row, column));
+                births += !alive && expected ? 1 : 0;
+                deaths += alive && !expected ? 1 : 0;
+            }
+        }
+        assertEquals(message + " births", births, changes[0]);
+        assertEquals(message + " deaths", deaths, changes[1]);
+        assertEquals(message + " hash", new Map(next.getGrid().copy()).getStateHash(), next.getStateHash());
+    }
+
+    private static void assertCountsAlive(Grid grid, Random random) {
+        int width = grid.getWidth();
+        Map map = new Map(grid);
+        map.fillRandomly(random, 0.5);
+        int[] columns = new int[width + 1];
+        for (int i = 1; i < columns.length; i++) {
+            columns[i] = columns[i - 1] + random.nextInt(2);
+        }
+        columns[columns.length - 1] = width;
+        int[] counts = new int[width];
+        map.getGrid().countAlive(1, columns, counts, width);
+
+        for (int i = 0; i < width; i++) {
+            int expected = 0;
+            for (int column = columns[i]; column < columns[i + 1]; column++) {
+                expected += map.isSet(1, column) ? 1 : 0;
+            }
+            assertEquals("span " + i + " of " + width, expected, counts[i]);
+        }
+    }
+
+    private static int countNeighbours(Map map, int row, int column) {
+        int count = 0;
+        for (int i = -1; i <= 1; i++) {
+            for (int j = -1; j <= 1; j++) {
+                if ((i != 0 || j != 0) && map.isSet(Math.floorMod(row + i, map.getHeight()),
+                        Math.floorMod(column + j, map.getWidth()))) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static boolean isAliveNext(Rules rules, boolean alive, int neighbours) {
+        for (int count : alive ? rules.getSurvives() : rules.getBorn()) {
+            if (count == neighbours) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
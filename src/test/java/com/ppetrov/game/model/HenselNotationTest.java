@@ -0,0 +1,204 @@
+package com.ppetrov.game.model;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HenselNotationTest {
+
+    private static final int NW = 1;
+    private static final int N = 1 << 1;
+    private static final int NE = 1 << 2;
+    private static final int W = 1 << 3;
+    private static final int E = 1 << 5;
+    private static final int SW = 1 << 6;
+    private static final int S = 1 << 7;
+    private static final int SE = 1 << 8;
+
+    private static final String[] LETTERS = {
+            "", "ce", "ceaikn", "ceaiknjqry", "ceaiknjqrytwz", "ceaiknjqry", "ceaikn", "ce", ""
+    };
+
+    @Test
+    public void lettersSplitTheirCount() {
+        for (int count = 1; count < 8; count++) {
+            boolean[] all = HenselNotation.parse("B" + count + "/S");
+            boolean[] union = new boolean[HenselNotation.SIZE];
+            for (char letter : LETTERS[count].toCharArray()) {
+                boolean[] table = HenselNotation.parse("B" + count + letter + "/S");
+                for (int neighbourhood = 0; neighbourhood < HenselNotation.SIZE; neighbourhood++) {
+                    if (table[neighbourhood]) {
+                        assertFalse(count + "" + letter + " overlaps at " + neighbourhood, union[neighbourhood]);
+                        assertEquals(count, HenselNotation.getCount(neighbourhood));
+                        union[neighbourhood] = true;
+                    }
+                }
+            }
+            assertArrayEquals("letters of " + count, toBytes(all), toBytes(union));
+        }
+    }
+
+    @Test
+    public void lettersSelectTheirConfigurations() {
+        assertBorn("1c", NW);
+        assertBorn("1e", N);
+        assertBorn("2c", NW | NE);
+        assertBorn("2e", N | W);
+        assertBorn("2a", NW | N);
+        assertBorn("2i", W | E);
+        assertBorn("2k", NW | E);
+        assertBorn("2n", NE | SW);
+        assertBorn("3c", NW | NE | SW);
+        assertBorn("3e", N | W | E);
+        assertBorn("3i", NW | N | NE);
+        assertBorn("4c", NW | NE | SW | SE);
+        assertBorn("4e", N | W | E | S);
+        assertBorn("7c", N | NE | W | E | SW | S | SE);
+        assertBorn("7e", NW | NE | W | E | SW | S | SE);
+    }
+
+    @Test
+    public void tablesAreIsotropic() {
+        Random random = new Random(11);
+        for (int i = 0; i < 50; i++) {
+            boolean[] table = HenselNotation.parse(getRandomRule(random));
+            for (int neighbourhood = 0; neighbourhood < HenselNotation.SIZE; neighbourhood++) {
+                assertEquals(table[neighbourhood], table[rotate(neighbourhood)]);
+                assertEquals(table[neighbourhood], table[mirror(neighbourhood)]);
+            }
+        }
+    }
+
+    @Test
+    public void rulesAreFormattedBack() {
+        assertEquals("B3/S23", Rules.parse("B3/S23").toString());
+        assertEquals("B3/S23", Rules.parse("23/3").toString());
+        assertEquals("B2-a/S12", Rules.parse("B2-a/S12").toString());
+        assertEquals(Rules.parse("B2ceikn/S"), Rules.parse("B2-a/S"));
+        assertTrue(Rules.parse("B36/S23").isTotalistic());
+        assertFalse(Rules.parse("B2-a/S12").isTotalistic());
+
+        Random random = new Random(12);
+        for (int i = 0; i < 200; i++) {
+            Rules rules = Rules.parse(getRandomRule(random));
+            assertEquals(rules.toString(), rules, Rules.parse(rules.toString()));
+        }
+    }
+
+    @Test
+    public void malformedRulesAreRejected() {
+        for (String rule : new String[]{"B9/S", "B2z/S", "B1a/S", "B2-/S", "B3", "B3/S23/S", "Bx/S23"}) {
+            try {
+                HenselNotation.parse(rule);
+                fail("Rule " + rule + " was parsed");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void generationsAreIsotropic() {
+        Random random = new Random(13);
+        for (int i = 0; i < 20; i++) {
+            Rules rules = Rules.parse(getRandomRule(random));
+            Map map = new Map(new BitGrid(70, 40));
+            map.fillRandomly(random, 0.3);
+            Map next = rules.nextState(map);
+
+            assertSameStates(rules + " rotated", next.rotate(), rules.nextState(map.rotate()));
+            assertSameStates(rules + " mirrored", next.mirror(), rules.nextState(map.mirror()));
+        }
+    }
+
+    private static void assertBorn(String letters, int configuration) {
+        boolean[] table = HenselNotation.parse("B" + letters + "/S");
+        for (int neighbourhood = 0; neighbourhood < HenselNotation.SIZE; neighbourhood++) {
+            boolean symmetric = false;
+            int transformed = neighbourhood;
+            for (int i = 0; i < 4; i++) {
+                transformed = rotate(transformed);
+                symmetric |= transformed == configuration || mirror(transformed) == configuration;
+            }
+            assertEquals(letters + " at " + neighbourhood, symmetric, table[neighbourhood]);
+        }
+    }
+
+    private static void assertSameStates(String message, Map expected, Map actual) {
+        for (int row = 0; row < expected.getHeight(); row++) {
+            for (int column = 0; column < expected.getWidth(); column++) {
+                assertEquals(message + " cell " + row + "," + column,
+                        expected.getState(row, column), actual.getState(row, column));
+            }
+        }
+    }
+
+    private static String getRandomRule(Random random) {
+        return "B" + getRandomCounts(random) + "/S" + getRandomCounts(random);
+    }
+
+    private static String getRandomCounts(Random random) {
+        StringBuilder counts = new StringBuilder();
+        for (int count = 0; count <= 8; count++) {
+            if (random.nextInt(3) == 0) {
+                continue;
+            }
+            counts.append(count);
+            boolean negated = random.nextBoolean();
+            StringBuilder letters = new StringBuilder();
+            for (char letter : LETTERS[count].toCharArray()) {
+                if (random.nextInt(3) == 0) {
+                    letters.append(letter);
+                }
+            }
+            if (letters.length() > 0 && negated) {
+                counts.append('-');
+            }
+            counts.append(letters);
+        }
+        return counts.toString();
+    }
+
+    /**
+     * @return neighbourhood turned by 90 degrees clockwise
+     */
+    private static int rotate(int neighbourhood) {
+        int rotated = 0;
+        for (int bit = 0; bit < 9; bit++) {
+            if ((neighbourhood & (1 << bit)) != 0) {
+                int row = bit / 3;
+                int column = bit % 3;
+                rotated |= 1 << (column * 3 + 2 - row);
+            }
+        }
+        return rotated;
+    }
+
+    /**
+     * @return neighbourhood flipped from left to right
+     */
+    private static int mirror(int neighbourhood) {
+        int mirrored = 0;
+        for (int bit = 0; bit < 9; bit++) {
+            if ((neighbourhood & (1 << bit)) != 0) {
+                mirrored |= 1 << (bit / 3 * 3 + 2 - bit % 3);
+            }
+        }
+        return mirrored;
+    }
+
+    private static byte[] toBytes(boolean[] table) {
+        byte[] bytes = new byte[table.length];
+        for (int i = 0; i < table.length; i++) {
+            bytes[i] = (byte) (table[i] ? 1 : 0);
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.ppetrov.game.model;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class LargerThanLifeRulesTest {
+
+    @Test
+    public void generationsMatchNaiveCounts() {
+        Random random = new Random(3);
+        for (int i = 0; i < 150; i++) {
+            int range = 1 + random.nextInt(5);
+            LargerThanLifeRules.NeighbourhoodType type = random.nextBoolean()
+                    ? LargerThanLifeRules.NeighbourhoodType.MOORE
+                    : LargerThanLifeRules.NeighbourhoodType.VON_NEUMANN;
+            boolean centreCounted = random.nextBoolean();
+            int states = random.nextInt(3) == 0 ? 3 + random.nextInt(4) : 2;
+            int size = new LargerThanLifeRules(range, type, centreCounted, 0, 0, 0, 0, 2).getNeighbourhoodSize();
+            int minSurvives = random.nextInt(size + 1);
+            int maxSurvives = minSurvives + random.nextInt(size + 1 - minSurvives);
+            int minBorn = 1 + random.nextInt(size);
+            int maxBorn = minBorn + random.nextInt(size + 1 - minBorn);
+            LargerThanLifeRules rules = new LargerThanLifeRules(range, type, centreCounted,
+                    minSurvives, maxSurvives, minBorn, maxBorn, states);
+            assertEquals(rules, Rules.parse(rules.toString()));
+
+            int width = 2 * range + 1 + random.nextInt(40);
+            int height = 2 * range + 1 + random.nextInt(30);
+            Grid grid = states > 2 ? new ByteGrid(width, height)
+                    : random.nextBoolean() ? new BitGrid(width, height) : new CellGrid(width, height);
+            Map map = new Map(grid);
+            for (int row = 0; row < height; row++) {
+                for (int column = 0; column < width; column++) {
+                    int state = random.nextInt(5) < 2 ? 1
+                            : states > 2 && random.nextBoolean() ? 2 + random.nextInt(states - 2) : 0;
+                    map.setState(row, column, state);
+                }
+            }
+            map.getStateHash();
+
+            Rules aged = rules.withMaxAge(1000);
+            for (int generation = 0; generation < 3; generation++) {
+                String message = rules + " " + width + "x" + height + " generation " + generation;
+                int[][] expected = getNextStates(rules, aged, map);
+                long[] changes = new long[2];
+                Map next = aged.nextState(map, new Map(map.getGrid().copy()), (births, deaths) -> {
+                    changes[0] += births;
+                    changes[1] += deaths;
+                });
+                assertStates(message, expected, next);
+                assertEquals(message + " births", countChanges(map, expected, true), changes[0]);
+                assertEquals(message + " deaths", countChanges(map, expected, false), changes[1]);
+                assertEquals(message + " hash", new Map(next.getGrid().copy()).getStateHash(), next.getStateHash());
+
+                Map striped = new Map(map.getGrid().copy());
+                int cut = random.nextInt(height + 1);
+                aged.nextState(map, striped, 0, cut, null);
+                aged.nextState(map, striped, cut, height, null);
+                assertStates(message + " in stripes cut at " + cut, expected, striped);
+                map = next;
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void neighbourhoodsWiderThanTheFieldAreRejected() {
+        Map map = new Map(new BitGrid(10, 100));
+        Rules.parse("R5,C0,M1,S34..58,B34..45,NM").nextState(map);
+    }
+
+    private static int[][] getNextStates(LargerThanLifeRules rules, Rules aged, Map map) {
+        byte[] transitions = aged.getTransitions();
+        int[][] states = new int[map.getHeight()][map.getWidth()];
+        for (int row = 0; row < map.getHeight(); row++) {
+            for (int column = 0; column < map.getWidth(); column++) {
+                int state = map.getState(row, column);
+                int count = countNeighbours(rules, map, row, column);
+                boolean alive = state == 1
+                        ? rules.getMinSurvives() <= count && count <= rules.getMaxSurvives()
+                        : rules.getMinBorn() <= count && count <= rules.getMaxBorn();
+                states[row][column] = transitions[state << 1 | (alive ? 1 : 0)];
+            }
+        }
+        return states;
+    }
+
+    private static int countNeighbours(LargerThanLifeRules rules, Map map, int row, int column) {
+        int range = rules.getRange();
+        int count = 0;
+        for (int i = -range; i <= range; i++) {
+            for (int j = -range; j <= range; j++) {
+                if (rules.getNeighbourhoodType() == LargerThanLifeRules.NeighbourhoodType.VON_NEUMANN
+                        && Math.abs(i) + Math.abs(j) > range || i == 0 && j == 0 && !rules.isCentreCounted()) {
+                    continue;
+                }
+                int state = map.getState(Math.floorMod(row + i, map.getHeight()), Math.floorMod(column + j, map.getWidth()));
+                count += state == 1 ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    private static long countChanges(Map map, int[][] next, boolean births) {
+        long changes = 0;
+        for (int row = 0; row < map.getHeight(); row++) {
+            for (int column = 0; column < map.getWidth(); column++) {
+                boolean alive = map.getState(row, column) == 1;
+                changes += alive != births && (next[row][column] == 1) == births ? 1 : 0;
+            }
+        }
+        return changes;
+    }
+
+    private static void assertStates(String message, int[][] expected, Map map) {
+        for (int row = 0; row < map.getHeight(); row++) {
+            for (int column = 0; column < map.getWidth(); column++) {
+                assertEquals(message + " cell " + row + "," + column, expected[row][column], map.getState(row, column));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.ppetrov.game.model;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class RowKernelTest {
+
+    private static final String VERSIONED = "META-INF/versions/16/";
+    private static final String PACKAGE = RowKernel.class.getPackage().getName();
+
+    private static final int[] WIDTHS = {1, 63, 64, 65, 128, 192, 257, 575, 1088, 2117};
+    private static final String[] RULES = {"B3/S23", "B36/S23", "B1357/S1357", "B0123478/S01234678"};
+
+    @Test
+    public void vectorKernelIsBitIdenticalToStepWord() throws Exception {
+        ClassLoader parent = RowKernelTest.class.getClassLoader();
+        assumeTrue("Classes of src/main/java16 are not compiled",
+                parent.getResource(VERSIONED + getPath(PACKAGE + ".VectorRowKernel")) != null);
+        assumeTrue("Module jdk.incubator.vector is not added", isVectorApiPresent());
+
+        Class<?> kernel = new VersionedClassLoader(parent).loadClass(RowKernel.class.getName());
+        Method getName = kernel.getDeclaredMethod("getName");
+        getName.setAccessible(true);
+        String name = (String) getName.invoke(null);
+        assertTrue("Rows are stepped by " + name, name.startsWith("vector"));
+        Method stepRow = kernel.getDeclaredMethod("stepRow", long[].class, int.class, int.class, int.class,
+                long[].class, int.class, int.class, int.class);
+        stepRow.setAccessible(true);
+
+        Random random = new Random(8);
+        for (String rule : RULES) {
+            Rules rules = Rules.parse(rule);
+            for (int width : WIDTHS) {
+                Map map = new Map(new BitGrid(width, 3));
+                map.fillRandomly(random, 0.4);
+                BitGrid grid = (BitGrid) map.getGrid();
+                long[] words = grid.getWords();
+                int wordsPerRow = grid.getWordsPerRow();
+                int centre = grid.getRowOffset(1);
+
+                long[] expected = new long[words.length];
+                for (int word = 0; word < wordsPerRow; word++) {
+                    expected[centre + word] = BitKernel.stepWord(words, grid.getRowOffset(0), words, centre,
+                            words, grid.getRowOffset(2), word, width, rules.getBornMask(), rules.getSurvivesMask());
+                }
+                long[] actual = new long[words.length];
+                stepRow.invoke(null, words, grid.getRowOffset(0), centre, grid.getRowOffset(2),
+                        actual, width, rules.getBornMask(), rules.getSurvivesMask());
+
+                assertArrayEquals(rule + " width " + width,
+                        Arrays.copyOfRange(expected, centre, centre + wordsPerRow),
+                        Arrays.copyOfRange(actual, centre, centre + wordsPerRow));
+            }
+        }
+    }
+
+    private static String getPath(String className) {
+        return className.replace('.', '/') + ".class";
+    }
+
+    private static boolean isVectorApiPresent() {
+        try {
+            Class.forName("jdk.incubator.vector.LongVector");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Loads classes of the model preferring their Java 16 versions, like a multi-release jar does,
+     * since directories of classes are not multi-release
+     */
+    private static class VersionedClassLoader extends ClassLoader {
+
+        VersionedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(PACKAGE + ".")) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    URL resource = getParent().getResource(VERSIONED + getPath(name));
+                    if (resource == null) {
+                        resource = getParent().getResource(getPath(name));
+                    }
+                    if (resource == null) {
+                        throw new ClassNotFoundException(name);
+                    }
+                    byte[] bytes = read(resource, name);
+                    loaded = defineClass(name, bytes, 0, bytes.length);
+                }
+                return loaded;
+            }
+        }
+
+        private static byte[] read(URL resource, String name) throws ClassNotFoundException {
+            try (InputStream input = resource.openStream()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                    bytes.write(buffer, 0, read);
+                }
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.ppetrov.game.model;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StepperTest {
+
+    @Test
+    public void tileStepperMatchesFullSteps() {
+        TileStepper stepper = new TileStepper(16);
+        Map soup = new Map(new BitGrid(40, 40));
+        soup.fillRandomly(new Random(2), 0.4);
+        Map map = new Map(new BitGrid(300, 200));
+        map.paste(soup, 10, 10);
+        MapBuffer expected = new MapBuffer(new Map(map.getGrid().copy()));
+        MapBuffer actual = new MapBuffer(map);
+
+        boolean skipped = false;
+        for (int generation = 0; generation < 300; generation++) {
+            assertSameStep("generation " + generation, Rules.parse("B3/S23"), expected, actual, stepper);
+            skipped |= stepper.getActiveTiles() < stepper.getTileCount();
+        }
+        assertTrue("no tile was skipped", skipped);
+    }
+
+    @Test
+    public void tileStepperRecalculatesEditedMaps() {
+        TileStepper stepper = new TileStepper(8);
+        Map map = new Map(new BitGrid(130, 70));
+        map.fillRandomly(new Random(3), 0.1);
+        MapBuffer expected = new MapBuffer(new Map(map.getGrid().copy()));
+        MapBuffer actual = new MapBuffer(map);
+        Random random = new Random(4);
+
+        for (int generation = 0; generation < 200; generation++) {
+            assertSameStep("generation " + generation, Rules.parse("B3/S23"), expected, actual, stepper);
+            if (generation % 20 == 0) {
+                int row = random.nextInt(70);
+                int column = random.nextInt(130);
+                expected.getCurrent().fill(row, column, 3, 3, true);
+                actual.getCurrent().fill(row, column, 3, 3, true);
+                stepper.invalidate();
+            }
+        }
+    }
+
+    @Test
+    public void tileStepperFallsBackToRules() {
+        TileStepper stepper = new TileStepper();
+        for (String rule : new String[]{"B2-a/S12", "B2/S/C3", "R2,C0,M1,S6..9,B7..8,NM"}) {
+            Map map = new Map(new BitGrid(100, 90));
+            map.fillRandomly(new Random(5), 0.3);
+            MapBuffer expected = new MapBuffer(new Map(map.getGrid().copy()));
+            MapBuffer actual = new MapBuffer(map);
+            for (int generation = 0; generation < 20; generation++) {
+                assertSameStep(rule + " generation " + generation, Rules.parse(rule), expected, actual, stepper);
+            }
+        }
+    }
+
+    @Test
+    public void parallelStepperMatchesSequentialSteps() {
+        String[] rules = {"B3/S23", "B2-a/S12", "B2/S/C4", "R2,C0,M1,S6..9,B7..8,NM", "R3,C3,M0,S2..8,B3..6,NN"};
+        Grid[] grids = {new BitGrid(130, 100), new OffHeapGrid(130, 100), new ByteGrid(130, 100), new CellGrid(50, 50)};
+        for (int stripeHeight : new int[]{1, 16}) {
+            try (ParallelStepper stepper = new ParallelStepper(4, stripeHeight)) {
+                for (String rule : rules) {
+                    for (Grid grid : grids) {
+                        if (grid instanceof OffHeapGrid && Rules.parse(rule).getStates() > 2) {
+                            continue;
+                        }
+                        Map map = new Map(grid.copy());
+                        map.fillRandomly(new Random(6), 0.3);
+                        MapBuffer expected = new MapBuffer(new Map(map.getGrid().copy()));
+                        MapBuffer actual = new MapBuffer(map);
+                        for (int generation = 0; generation < 8; generation++) {
+                            String message = rule + " " + grid.getClass().getSimpleName()
+                                    + " stripes of " + stripeHeight + " generation " + generation;
+                            assertSameStep(message, Rules.parse(rule), expected, actual, stepper);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertSameStep(String message, Rules rules, MapBuffer expected, MapBuffer actual,
+                                       Stepper stepper) {
+        long[] expectedChanges = new long[2];
+        long[] actualChanges = new long[2];
+        expected.step(rules, (births, deaths) -> {
+            expectedChanges[0] += births;
+            expectedChanges[1] += deaths;
+        });
+        actual.step(rules, stepper, (births, deaths) -> {
+            synchronized (actualChanges) {
+                actualChanges[0] += births;
+                actualChanges[1] += deaths;
+            }
+        });
+
+        Map expectedMap = expected.getCurrent();
+        Map actualMap = actual.getCurrent();
+        for (int row = 0; row < expectedMap.getHeight(); row++) {
+            assertArrayEquals(message + " row " + row, getRow(expectedMap, row), getRow(actualMap, row));
+        }
+        assertEquals(message + " births", expectedChanges[0], actualChanges[0]);
+        assertEquals(message + " deaths", expectedChanges[1], actualChanges[1]);
+        assertEquals(message + " hash", expectedMap.getStateHash(), actualMap.getStateHash());
+    }
+
+    /**
+     * @return states of the cells of the row followed by their ages
+     */
+    private static int[] getRow(Map map, int row) {
+        int[] cells = new int[map.getWidth() * 2];
+        for (int column = 0; column < map.getWidth(); column++) {
+            cells[column] = map.getState(row, column);
+            cells[map.getWidth() + column] = map.getAge(row, column);
+        }
+        return cells;
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.ppetrov.game.model.hashlife;
+
+import com.ppetrov.game.model.BitGrid;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.Rules;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HashLifeTest {
+
+    private static final int FIELD = 512;
+    private static final int OFFSET = 240;
+
+    @Test
+    public void advancesLikeStepsOfAField() {
+        for (String rule : new String[]{"B3/S23", "B36/S23", "B35678/S5678", "B2-a/S12"}) {
+            Rules rules = Rules.parse(rule);
+            Map soup = new Map(new BitGrid(32, 32));
+            soup.fillRandomly(new Random(1), 0.35);
+            HashLife life = new HashLife(soup, rules);
+            Map map = new Map(new BitGrid(FIELD, FIELD));
+            map.paste(soup, OFFSET, OFFSET);
+
+            for (int step : new int[]{0, 0, 1, 2, 3, 4, 5}) {
+                life.advance(step);
+                for (int i = 0; i < 1 << step; i++) {
+                    map = rules.nextState(map);
+                }
+                String message = rule + " generation " + life.getGeneration();
+                assertSameCells(message, map, life.toMap(-OFFSET, -OFFSET, FIELD, FIELD));
+                assertEquals(message + " population", map.getPopulation(), life.getPopulation());
+            }
+            assertEquals(64, life.getGeneration());
+        }
+    }
+
+    @Test
+    public void gliderTravelsFar() {
+        HashLife life = new HashLife(getGlider(), Rules.parse("B3/S23"));
+        life.advance(40);
+
+        long distance = 1L << 38;
+        Map expected = getGlider();
+        for (int row = -1; row <= expected.getHeight(); row++) {
+            for (int column = -1; column <= expected.getWidth(); column++) {
+                boolean alive = row >= 0 && column >= 0 && row < expected.getHeight() && column < expected.getWidth()
+                        && expected.isSet(row, column);
+                assertEquals("cell " + row + "," + column, alive, life.isSet(distance + row, distance + column));
+            }
+        }
+        assertEquals(5, life.getPopulation());
+        assertEquals(1L << 40, life.getGeneration());
+    }
+
+    @Test
+    public void unsupportedRulesAreRejected() {
+        for (String rule : new String[]{"B013/S23", "B2/S/C3", "R2,C0,M1,S6..9,B7..8,NM"}) {
+            try {
+                new HashLife(getGlider(), Rules.parse(rule));
+                fail("Rules " + rule + " were accepted");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    private static Map getGlider() {
+        Map glider = new Map(new BitGrid(3, 3));
+        glider.setCell(0, 1, true);
+        glider.setCell(1, 2, true);
+        glider.setCell(2, 0, true);
+        glider.setCell(2, 1, true);
+        glider.setCell(2, 2, true);
+        return glider;
+    }
+
+    private static void assertSameCells(String message, Map expected, Map actual) {
+        byte[] expectedRow = new byte[expected.getWidth()];
+        byte[] actualRow = new byte[expected.getWidth()];
+        for (int row = 0; row < expected.getHeight(); row++) {
+            expected.getGrid().getStates(row, 0, expectedRow, 0, expectedRow.length);
+            actual.getGrid().getStates(row, 0, actualRow, 0, actualRow.length);
+            assertArrayEquals(message + " row " + row, expectedRow, actualRow);
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.ppetrov.game.model.sparse;
+
+import com.ppetrov.game.model.BitGrid;
+import com.ppetrov.game.model.Map;
+import com.ppetrov.game.model.Rules;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SparseLifeTest {
+
+    private static final int FIELD = 400;
+    private static final int OFFSET = 184;
+
+    @Test
+    public void stepsLikeAField() {
+        for (String rule : new String[]{"B3/S23", "B36/S23", "B35678/S5678", "B2-a/S12"}) {
+            Rules rules = Rules.parse(rule);
+            Map soup = new Map(new BitGrid(32, 32));
+            soup.fillRandomly(new Random(1), 0.35);
+            SparseLife life = new SparseLife(soup, rules);
+            Map map = new Map(new BitGrid(FIELD, FIELD));
+            map.paste(soup, OFFSET, OFFSET);
+
+            for (int generation = 1; generation <= 100; generation++) {
+                life.step();
+                map = rules.nextState(map);
+                String message = rule + " generation " + generation;
+                assertSameCells(message, map, life.toMap(-OFFSET, -OFFSET, FIELD, FIELD));
+                assertEquals(message + " population", map.getPopulation(), life.getPopulation());
+                if (!life.isEmpty()) {
+                    assertSameCells(message + " bounds", map.copy(life.getMinRow() + OFFSET, life.getMinColumn() + OFFSET,
+                            life.getMaxColumn() - life.getMinColumn() + 1, life.getMaxRow() - life.getMinRow() + 1),
+                            life.toMap());
+                }
+            }
+            assertEquals(100, life.getGeneration());
+        }
+    }
+
+    @Test
+    public void gliderTravelsThroughNegativeCoordinates() {
+        SparseLife life = new SparseLife(Rules.parse("B3/S23"));
+        life.setCell(-1000, -1000, true);
+        life.setCell(-999, -999, true);
+        life.setCell(-998, -1001, true);
+        life.setCell(-998, -1000, true);
+        life.setCell(-998, -999, true);
+        life.step(4 * 2000);
+
+        assertEquals(5, life.getPopulation());
+        assertEquals(1000, life.getMinRow());
+        assertEquals(999, life.getMinColumn());
+        assertEquals(1002, life.getMaxRow());
+        assertEquals(1001, life.getMaxColumn());
+        assertTrue(life.isSet(1000, 1000));
+        assertTrue(life.isSet(1001, 1001));
+        assertTrue(life.isSet(1002, 999));
+    }
+
+    @Test
+    public void unsupportedRulesAreRejected() {
+        for (String rule : new String[]{"B013/S23", "B2/S/C3", "R2,C0,M1,S6..9,B7..8,NM"}) {
+            try {
+                new SparseLife(Rules.parse(rule));
+                fail("Rules " + rule + " were accepted");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    private static void assertSameCells(String message, Map expected, Map actual) {
+        assertEquals(message + " width", expected.getWidth(), actual.getWidth());
+        assertEquals(message + " height", expected.getHeight(), actual.getHeight());
+        byte[] expectedRow = new byte[expected.getWidth()];
+        byte[] actualRow = new byte[expected.getWidth()];
+        for (int row = 0; row < expected.getHeight(); row++) {
+            expected.getGrid().getStates(row, 0, expectedRow, 0, expectedRow.length);
+            actual.getGrid().getStates(row, 0, actualRow, 0, actualRow.length);
+            assertArrayEquals(message + " row " + row, expectedRow, actualRow);
+        }
+    }
+
+}